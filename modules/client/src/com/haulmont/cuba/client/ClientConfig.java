@@ -377,4 +377,11 @@ public interface ClientConfig extends Config {
     @Property("cuba.gui.validationNotificationType")
     @Default("TRAY")
     String getValidationNotificationType();
+
+    /**
+     * @return list of screen ids which XML descriptors are loaded and cached on application start
+     */
+    @Property("cuba.gui.preloadedScreens")
+    @Factory(factory = CommaSeparatedStringListTypeFactory.class)
+    List<String> getPreloadedScreens();
 }
\ No newline at end of file
@@ -61,9 +61,32 @@ public interface ClusterConfig extends Config {
     int getClusterMessageSendingThreadPoolSize();
 
     /**
-     * @return Maximum queue capacity which is used  by executor to store messages to the cluster members. By default is unbounded
+     * @return Maximum queue capacity which is used  by executor to store messages to the cluster members. By default is unbounded.
+     * If the queue is full, the message is sent in the calling thread.
      */
     @Property("cuba.cluster.messageSendingQueueCapacity")
     @DefaultInt(Integer.MAX_VALUE)
     int getClusterMessageSendingQueueCapacity();
+
+    /**
+     * @return whether asynchronously sent messages of the same class are coalesced into batches sent as one frame.
+     * Must have the same value on all cluster nodes.
+     */
+    @Property("cuba.cluster.messageBatchingEnabled")
+    @DefaultBoolean(false)
+    boolean getMessageBatchingEnabled();
+
+    /**
+     * @return maximum time in milliseconds a message waits for other messages to be sent in the same batch
+     */
+    @Property("cuba.cluster.messageBatchWindowMs")
+    @DefaultInt(10)
+    int getMessageBatchWindowMs();
+
+    /**
+     * @return maximum number of messages collected in one batching window
+     */
+    @Property("cuba.cluster.messageBatchMaxSize")
+    @DefaultInt(100)
+    int getMessageBatchMaxSize();
 }
@@ -43,9 +43,7 @@ import javax.inject.Inject;
 import javax.management.MBeanServer;
 import java.io.*;
 import java.lang.management.ManagementFactory;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -65,6 +63,10 @@ public class ClusterManager implements ClusterManagerAPI {
 
     protected ThreadPoolExecutor executor;
 
+    protected BlockingQueue<PendingMessage> batchQueue;
+
+    protected Thread batchSender;
+
     @Inject
     protected Resources resources;
 
@@ -93,9 +95,22 @@ public class ClusterManager implements ClusterManagerAPI {
                     @Override
                     public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
                         SendMessageRunnable sendMessageRunnable = (SendMessageRunnable) r;
-                        log.info("Queue capacity is exceeded. Message: {}: {}", sendMessageRunnable.message.getClass(), sendMessageRunnable.message);
+                        if (executor.isShutdown()) {
+                            log.info("Executor is shut down. Message: {}: {}", sendMessageRunnable.message.getClass(), sendMessageRunnable.message);
+                            return;
+                        }
+                        log.debug("Queue capacity is exceeded, sending in the current thread. Message: {}: {}",
+                                sendMessageRunnable.message.getClass(), sendMessageRunnable.message);
+                        sendMessageRunnable.run();
                     }
                 });
+
+        if (clusterConfig.getMessageBatchingEnabled()) {
+            batchQueue = new LinkedBlockingQueue<>(clusterConfig.getClusterMessageSendingQueueCapacity());
+            batchSender = new Thread(new BatchSendingRunnable(), "ClusterManagerBatchSender");
+            batchSender.setDaemon(true);
+            batchSender.start();
+        }
     }
 
     @EventListener(AppContextInitializedEvent.class)
@@ -109,6 +124,20 @@ public class ClusterManager implements ClusterManagerAPI {
     @EventListener(AppContextStoppedEvent.class)
     protected void applicationStopped() {
         executor.shutdown();
+        if (batchSender != null) {
+            batchSender.interrupt();
+            try {
+                batchSender.join(clusterConfig.getMessageBatchWindowMs() * 10L + 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // send the messages queued before stopping
+            List<PendingMessage> pending = new ArrayList<>();
+            batchQueue.drainTo(pending);
+            if (!pending.isEmpty() && channel != null) {
+                sendBatches(pending);
+            }
+        }
         stop();
     }
 
@@ -120,6 +149,13 @@ public class ClusterManager implements ClusterManagerAPI {
         Boolean sync = forceSyncSending.get();
         if (sync != null && sync) {
             internalSend(message, true);
+        } else if (batchQueue != null) {
+            log.trace("Queueing message: {}: {} to send in batch", message.getClass(), message);
+            if (!batchQueue.offer(new PendingMessage(message))) {
+                log.debug("Queue capacity is exceeded, sending in the current thread. Message: {}: {}",
+                        message.getClass(), message);
+                internalSend(message, false);
+            }
         } else {
             log.trace("Submitting message: {}: {} to send asynchronously", message.getClass(), message);
             executor.execute(new SendMessageRunnable(message));
@@ -163,6 +199,76 @@ public class ClusterManager implements ClusterManagerAPI {
         }
     }
 
+    /**
+     * Sends each run of consecutive messages of the same class as a single frame, removing duplicate
+     * {@link IdempotentClusterMessage}s of the run. Runs are sent in the order of submission, so receivers apply
+     * messages of different classes in the same order as they were sent.
+     */
+    protected void sendBatches(List<PendingMessage> pending) {
+        int runStart = 0;
+        for (int i = 1; i <= pending.size(); i++) {
+            if (i == pending.size()
+                    || pending.get(i).message.getClass() != pending.get(runStart).message.getClass()) {
+                sendRun(pending.subList(runStart, i));
+                runStart = i;
+            }
+        }
+    }
+
+    protected void sendRun(List<PendingMessage> run) {
+        String className = run.get(0).message.getClass().getName();
+        List<Serializable> messages = new ArrayList<>(run.size());
+        Set<Serializable> idempotentMessages = new HashSet<>();
+        for (PendingMessage pendingMessage : run) {
+            Serializable message = pendingMessage.message;
+            if (!(message instanceof IdempotentClusterMessage) || idempotentMessages.add(message)) {
+                messages.add(message);
+            }
+        }
+        try {
+            if (messages.size() == 1) {
+                internalSend(messages.get(0), false);
+            } else {
+                internalSendBatch(className, messages);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error sending messages batch", e);
+        }
+
+        MessageStat stat = messagesStat.get(className);
+        if (stat != null) {
+            long now = System.nanoTime();
+            for (PendingMessage pendingMessage : run) {
+                stat.updateSendLatency(now - pendingMessage.queuedNanos);
+            }
+        }
+    }
+
+    protected void internalSendBatch(String className, List<Serializable> messages) {
+        StopWatch sw = new Slf4JStopWatch(String.format("sendClusterMessageBatch(%s)", className));
+        try {
+            byte[] bytes;
+            try {
+                bytes = SerializationSupport.serialize(new MessageBatch(className, messages));
+            } catch (Exception e) {
+                log.error("Cluster message serialization error", e);
+                throw new RuntimeException("Cluster message serialization error", e);
+            }
+            log.debug("Sending batch of {} messages: {} ({} bytes)", messages.size(), className, bytes.length);
+            MessageStat stat = messagesStat.get(className);
+            if (stat != null) {
+                stat.updateSentBatch(messages.size(), bytes.length);
+            }
+            try {
+                channel.send(new Message(null, null, bytes));
+            } catch (Exception e) {
+                log.error("Error sending message", e);
+            }
+        } finally {
+            sw.stop();
+        }
+    }
+
     @Override
     public boolean getSyncSendingForCurrentThread() {
         return forceSyncSending.get() == null ? false : forceSyncSending.get();
@@ -277,7 +383,7 @@ public class ClusterManager implements ClusterManagerAPI {
 
     @Override
     public int getMessagesCount() {
-        return executor.getQueue().size();
+        return executor.getQueue().size() + (batchQueue != null ? batchQueue.size() : 0);
     }
 
     @Override
@@ -344,9 +450,11 @@ public class ClusterManager implements ClusterManagerAPI {
             MessageStat stat = entry.getValue();
             if (stat != null) {
                 messagesStats
-                        .append(String.format("Class: %s; received: %s, %s bytes; sent: %s, %s bytes\n",
+                        .append(String.format("Class: %s; received: %s, %s bytes; sent: %s, %s bytes; " +
+                                        "batches sent: %s, average batch size: %.1f, average send latency: %s us\n",
                                 entry.getKey(), stat.getReceivedMessages(), stat.getReceivedBytes(),
-                                stat.getSentMessages(), stat.getSentBytes()));
+                                stat.getSentMessages(), stat.getSentBytes(),
+                                stat.getSentBatches(), stat.getAverageBatchSize(), stat.getAverageSendLatencyMicros()));
             }
         }
         return messagesStats.toString();
@@ -392,6 +500,26 @@ public class ClusterManager implements ClusterManagerAPI {
         return 0;
     }
 
+    @Override
+    public long getSentBatches(String className) {
+        Preconditions.checkNotNullArgument(className, "Message class is null");
+        MessageStat stat = messagesStat.get(className);
+        if (stat != null) {
+            return stat.getSentBatches();
+        }
+        return 0;
+    }
+
+    @Override
+    public long getAverageSendLatencyMicros(String className) {
+        Preconditions.checkNotNullArgument(className, "Message class is null");
+        MessageStat stat = messagesStat.get(className);
+        if (stat != null) {
+            return stat.getAverageSendLatencyMicros();
+        }
+        return 0;
+    }
+
     protected class ClusterReceiver implements Receiver {
 
         @Override
@@ -411,6 +539,23 @@ public class ClusterManager implements ClusterManagerAPI {
                     log.error("Cluster message deserialization error", e);
                     throw new RuntimeException("Cluster message deserialization error", e);
                 }
+                if (data instanceof MessageBatch) {
+                    MessageBatch batch = (MessageBatch) data;
+                    simpleClassName = batch.className;
+                    log.debug("Received batch of {} messages: {} ({} bytes)", batch.messages.size(), batch.className, bytes.length);
+                    MessageStat stat = messagesStat.get(batch.className);
+                    if (stat != null) {
+                        stat.updateReceivedBatch(batch.messages.size(), bytes.length);
+                    }
+                    @SuppressWarnings("unchecked")
+                    ClusterListener<Serializable> listener = listeners.get(batch.className);
+                    if (listener != null) {
+                        for (Serializable message : batch.messages) {
+                            listener.receive(message);
+                        }
+                    }
+                    return;
+                }
                 String className = data.getClass().getName();
                 simpleClassName = data.getClass().getSimpleName();
                 log.debug("Received message: {}: {} ({} bytes)", data.getClass(), data, bytes.length);
@@ -534,11 +679,75 @@ public class ClusterManager implements ClusterManagerAPI {
         }
     }
 
+    protected class BatchSendingRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            long windowNanos = TimeUnit.MILLISECONDS.toNanos(clusterConfig.getMessageBatchWindowMs());
+            int maxSize = clusterConfig.getMessageBatchMaxSize();
+            List<PendingMessage> pending = new ArrayList<>();
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    PendingMessage first = batchQueue.take();
+                    pending.add(first);
+                    long deadline = first.queuedNanos + windowNanos;
+                    while (pending.size() < maxSize) {
+                        long timeout = deadline - System.nanoTime();
+                        PendingMessage next = timeout > 0 ? batchQueue.poll(timeout, TimeUnit.NANOSECONDS) : batchQueue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        pending.add(next);
+                    }
+                    if (channel != null) {
+                        sendBatches(pending);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    pending.forEach(batchQueue::offer);
+                } catch (RuntimeException e) {
+                    log.error("Error sending cluster messages", e);
+                } finally {
+                    pending.clear();
+                }
+            }
+        }
+    }
+
+    protected static class PendingMessage {
+        protected final Serializable message;
+        protected final long queuedNanos;
+
+        public PendingMessage(Serializable message) {
+            this.message = message;
+            this.queuedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Frame containing several messages of the same class.
+     */
+    protected static class MessageBatch implements Serializable {
+        private static final long serialVersionUID = -1843281460632658571L;
+
+        protected final String className;
+        protected final List<Serializable> messages;
+
+        public MessageBatch(String className, List<Serializable> messages) {
+            this.className = className;
+            this.messages = messages;
+        }
+    }
+
     protected static class MessageStat {
         protected LongAdder sentBytes = new LongAdder();
         protected LongAdder receivedBytes = new LongAdder();
         protected LongAdder receivedMessages = new LongAdder();
         protected LongAdder sentMessages = new LongAdder();
+        protected LongAdder sentBatches = new LongAdder();
+        protected LongAdder batchedMessages = new LongAdder();
+        protected LongAdder sendLatencyNanos = new LongAdder();
+        protected LongAdder latencyMeasurements = new LongAdder();
 
         public void updateReceived(int bytes) {
             receivedMessages.increment();
@@ -550,6 +759,37 @@ public class ClusterManager implements ClusterManagerAPI {
             sentBytes.add(bytes);
         }
 
+        public void updateReceivedBatch(int messages, int bytes) {
+            receivedMessages.add(messages);
+            receivedBytes.add(bytes);
+        }
+
+        public void updateSentBatch(int messages, int bytes) {
+            sentMessages.add(messages);
+            sentBytes.add(bytes);
+            sentBatches.increment();
+            batchedMessages.add(messages);
+        }
+
+        public void updateSendLatency(long nanos) {
+            sendLatencyNanos.add(nanos);
+            latencyMeasurements.increment();
+        }
+
+        public long getSentBatches() {
+            return sentBatches.longValue();
+        }
+
+        public double getAverageBatchSize() {
+            long batches = sentBatches.longValue();
+            return batches == 0 ? 0 : (double) batchedMessages.longValue() / batches;
+        }
+
+        public long getAverageSendLatencyMicros() {
+            long count = latencyMeasurements.longValue();
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(sendLatencyNanos.longValue() / count);
+        }
+
         public long getSentBytes() {
             return sentBytes.longValue();
         }
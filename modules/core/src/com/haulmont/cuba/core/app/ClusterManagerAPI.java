@@ -151,4 +151,18 @@ public interface ClusterManagerAPI {
      * @return size in bytes
      */
     long getReceivedBytes(String className);
-}
\ No newline at end of file
+
+    /**
+     * Get count of batches sent for specified {@code className}
+     *
+     * @return batches count
+     */
+    long getSentBatches(String className);
+
+    /**
+     * Get average time between submitting a message of specified {@code className} and sending it to the cluster
+     *
+     * @return time in microseconds
+     */
+    long getAverageSendLatencyMicros(String className);
+}
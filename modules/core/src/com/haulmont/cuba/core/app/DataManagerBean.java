@@ -31,6 +31,7 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component(DataManager.NAME)
 public class DataManagerBean implements DataManager {
@@ -76,6 +77,16 @@ public class DataManagerBean implements DataManager {
         return entities;
     }
 
+    @Override
+    public <E extends Entity> void stream(LoadContext<E> context, Consumer<? super E> consumer) {
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+        DataStore storage = storeFactory.get(getStoreName(metaClass));
+        storage.stream(context, chunk -> {
+            readCrossDataStoreReferences(chunk, context.getView(), metaClass, context.isJoinTransaction());
+            chunk.forEach(consumer);
+        });
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
@@ -381,6 +392,12 @@ public class DataManagerBean implements DataManager {
             return dataManager.loadList(context);
         }
 
+        @Override
+        public <E extends Entity> void stream(LoadContext<E> context, Consumer<? super E> consumer) {
+            context.setAuthorizationRequired(true);
+            dataManager.stream(context, consumer);
+        }
+
         @Override
         public List<KeyValueEntity> loadValues(ValueLoadContext context) {
             context.setAuthorizationRequired(true);
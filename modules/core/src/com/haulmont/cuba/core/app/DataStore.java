@@ -25,6 +25,7 @@ import com.haulmont.cuba.core.global.ValueLoadContext;
 import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Interface defining methods for storing and loading entities in a persistent storage.
@@ -47,6 +48,17 @@ public interface DataStore {
      */
     <E extends Entity> List<E> loadList(LoadContext<E> context);
 
+    /**
+     * Loads entity instances and passes them to the consumer in chunks.
+     * <p>The default implementation loads all instances by {@link #loadList(LoadContext)} and passes them as a single chunk.
+     */
+    default <E extends Entity> void stream(LoadContext<E> context, Consumer<List<E>> chunkConsumer) {
+        List<E> list = loadList(context);
+        if (!list.isEmpty()) {
+            chunkConsumer.accept(list);
+        }
+    }
+
     /**
      * Returns the number of entity instances for the given query passed in the {@link LoadContext}.
      * @return number of instances in the storage
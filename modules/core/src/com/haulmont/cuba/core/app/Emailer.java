@@ -184,6 +184,8 @@ public class Emailer implements EmailerAPI {
 
     protected void sendSendingMessage(SendingMessage sendingMessage) {
         Objects.requireNonNull(sendingMessage, "sendingMessage is null");
+        // body and attachments of queued messages are loaded by the sending threads in parallel
+        loadBodyAndAttachments(sendingMessage);
         Objects.requireNonNull(sendingMessage.getAddress(), "sendingMessage.address is null");
         Objects.requireNonNull(sendingMessage.getCaption(), "sendingMessage.caption is null");
         Objects.requireNonNull(sendingMessage.getContentText(), "sendingMessage.contentText is null");
@@ -341,10 +343,17 @@ public class Emailer implements EmailerAPI {
         }
     }
 
+    /**
+     * Claims queued messages for sending by this server. A message is claimed by the update conditioned on its
+     * version, so if several middleware blocks poll the queue, each message is taken by only one of them. Each
+     * message is claimed in a separate short transaction, so concurrent claims cannot deadlock.
+     * Messages whose sending has not completed in {@link EmailerConfig#getSendingTimeoutSec()} are claimed again.
+     */
     protected List<SendingMessage> loadEmailsToSend() {
         Date sendTimeoutTime = DateUtils.addSeconds(timeSource.currentTimestamp(), -config.getSendingTimeoutSec());
 
         List<SendingMessage> emailsToSend = new ArrayList<>();
+        List<SendingMessage> candidates;
 
         try (Transaction tx = persistence.createTransaction()) {
             EntityManager em = persistence.getEntityManager();
@@ -364,25 +373,65 @@ public class Emailer implements EmailerAPI {
 
             query.setMaxResults(config.getMessageQueueCapacity());
 
-            List<SendingMessage> resList = query.getResultList();
-
-            for (SendingMessage msg : resList) {
-                if (shouldMarkNotSent(msg)) {
-                    msg.setStatus(SendingStatus.NOTSENT);
-                } else {
-                    msg.setStatus(SendingStatus.SENDING);
-                    emailsToSend.add(msg);
-                }
-            }
+            candidates = query.getResultList();
             tx.commit();
         }
 
-        for (SendingMessage message : emailsToSend) {
-            loadBodyAndAttachments(message);
+        if (candidates.isEmpty()) {
+            return emailsToSend;
         }
+
+        // servers polling the queue at the same time start claiming from different messages
+        candidates = new ArrayList<>(candidates);
+        Collections.shuffle(candidates);
+
+        Date now = timeSource.currentTimestamp();
+        for (SendingMessage msg : candidates) {
+            SendingStatus status = shouldMarkNotSent(msg) ? SendingStatus.NOTSENT : SendingStatus.SENDING;
+            // each message is claimed in its own transaction, so a server holds a single row lock at a time
+            boolean claimed;
+            try (Transaction tx = persistence.createTransaction()) {
+                claimed = claimMessage(persistence.getEntityManager(), msg, status, now);
+                tx.commit();
+            } catch (Exception e) {
+                log.warn("Unable to claim message {}: {}", msg.getId(), e.toString());
+                continue;
+            }
+            if (claimed && status == SendingStatus.SENDING) {
+                emailsToSend.add(msg);
+            }
+        }
+
+        emailsToSend.sort(Comparator.comparing(SendingMessage::getCreateTs));
         return emailsToSend;
     }
 
+    /**
+     * Sets the status of the message if it has not been changed since it was loaded.
+     *
+     * @return true if the message is claimed by the current server
+     */
+    protected boolean claimMessage(EntityManager em, SendingMessage msg, SendingStatus status, Date updateTs) {
+        int count = em.createQuery(
+                "update sys$SendingMessage sm set sm.status = :status, sm.updateTs = :updateTs," +
+                        " sm.version = sm.version + 1" +
+                        " where sm.id = :id and sm.version = :version")
+                .setParameter("status", status.getId())
+                .setParameter("updateTs", updateTs)
+                .setParameter("id", msg.getId())
+                .setParameter("version", msg.getVersion())
+                .executeUpdate();
+        if (count == 0) {
+            log.debug("Message {} has been claimed by another server", msg.getId());
+            return false;
+        }
+        // the instance is detached, keep it consistent with the database for the subsequent merge
+        msg.setStatus(status);
+        msg.setUpdateTs(updateTs);
+        msg.setVersion(msg.getVersion() + 1);
+        return true;
+    }
+
     @Override
     public String loadContentText(SendingMessage sendingMessage) {
         SendingMessage msg;
@@ -116,6 +116,21 @@ public interface EmailerConfig extends Config {
 
     void setSmtpTimeoutSec(int smtpTimeoutSec);
 
+    /**
+     * Maximum number of open SMTP connections reused for sending messages. Set to 0 to open a new connection
+     * for each message.
+     */
+    @Property("cuba.email.smtpConnectionPoolSize")
+    @DefaultInt(10)
+    int getSmtpConnectionPoolSize();
+
+    /**
+     * Time in seconds after which an idle SMTP connection is closed.
+     */
+    @Property("cuba.email.smtpConnectionIdleTimeoutSec")
+    @DefaultInt(60)
+    int getSmtpConnectionIdleTimeoutSec();
+
     /**
      * How many scheduler ticks to skip after server startup.
      * Actual sending will start with the next call.
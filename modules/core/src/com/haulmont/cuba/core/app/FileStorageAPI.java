@@ -18,8 +18,14 @@ package com.haulmont.cuba.core.app;
 
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.FileStorageException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Interface to store and load files defined by {@link FileDescriptor}s.
@@ -79,4 +85,94 @@ public interface FileStorageAPI {
      * @throws IllegalArgumentException if arguments are incorrect
      */
     boolean fileExists(FileDescriptor fileDescr) throws FileStorageException;
-}
\ No newline at end of file
+
+    /**
+     * Return an input stream to load a part of a file contents.
+     * @param fileDescr             file descriptor
+     * @param offset                position of the first byte to read
+     * @param length                maximum number of bytes to read
+     * @return                      input stream, must be closed after use
+     * @throws IllegalArgumentException if arguments are incorrect
+     * @throws FileStorageException     if something goes wrong
+     */
+    default InputStream openStream(FileDescriptor fileDescr, long offset, long length) throws FileStorageException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Negative offset or length");
+        }
+        InputStream inputStream = openStream(fileDescr);
+        try {
+            IOUtils.skipFully(inputStream, offset);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(inputStream);
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
+        }
+        return new BoundedInputStream(inputStream, length);
+    }
+
+    /**
+     * Write a part of a file contents to the channel.
+     * @param fileDescr             file descriptor
+     * @param offset                position of the first byte to write
+     * @param length                maximum number of bytes to write
+     * @param target                channel, must be closed in the calling code
+     * @return                      number of bytes written
+     * @throws IllegalArgumentException if arguments are incorrect
+     * @throws FileStorageException     if something goes wrong
+     */
+    default long transferTo(FileDescriptor fileDescr, long offset, long length, WritableByteChannel target)
+            throws FileStorageException {
+        try (InputStream inputStream = openStream(fileDescr, offset, length)) {
+            return IOUtils.copyLarge(inputStream, Channels.newOutputStream(target));
+        } catch (IOException e) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
+        }
+    }
+
+    /**
+     * @return true if the storage implements {@link #saveChunk(FileDescriptor, long, InputStream, String)},
+     * {@link #commitChunks(FileDescriptor, long)} and {@link #abortChunks(FileDescriptor)}
+     */
+    default boolean supportsChunkedUpload() {
+        return false;
+    }
+
+    /**
+     * Save a chunk of a file uploaded in parts. Chunks can be saved in any order, a failed chunk can be saved again.
+     * The file becomes available after {@link #commitChunks(FileDescriptor, long)}.
+     * @param fileDescr             file descriptor
+     * @param offset                position of the chunk in the file
+     * @param inputStream           chunk contents, must be closed in the calling code
+     * @param checksum              hex-encoded {@link FileStorageService#CHUNK_CHECKSUM_ALGORITHM} digest of the chunk contents,
+     *                              not checked if null
+     * @return                      number of bytes saved
+     * @throws IllegalArgumentException if arguments are incorrect
+     * @throws FileStorageException     if something goes wrong, the checksum doesn't match
+     *                                  or the storage doesn't {@link #supportsChunkedUpload() support} chunks
+     */
+    default long saveChunk(FileDescriptor fileDescr, long offset, InputStream inputStream, @Nullable String checksum)
+            throws FileStorageException {
+        throw new FileStorageException(FileStorageException.Type.UNSUPPORTED_OPERATION, fileDescr.getId().toString());
+    }
+
+    /**
+     * Complete the chunked upload of a file.
+     * @param fileDescr             file descriptor
+     * @param size                  expected size of the file
+     * @return                      number of bytes saved
+     * @throws IllegalArgumentException if arguments are incorrect
+     * @throws FileStorageException     if something goes wrong or not all chunks are saved
+     */
+    default long commitChunks(FileDescriptor fileDescr, long size) throws FileStorageException {
+        throw new FileStorageException(FileStorageException.Type.UNSUPPORTED_OPERATION, fileDescr.getId().toString());
+    }
+
+    /**
+     * Discard the chunks saved for a file.
+     * @param fileDescr             file descriptor
+     * @throws IllegalArgumentException if arguments are incorrect
+     * @throws FileStorageException     if something goes wrong
+     */
+    default void abortChunks(FileDescriptor fileDescr) throws FileStorageException {
+        throw new FileStorageException(FileStorageException.Type.UNSUPPORTED_OPERATION, fileDescr.getId().toString());
+    }
+}
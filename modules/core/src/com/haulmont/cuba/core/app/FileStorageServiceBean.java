@@ -18,9 +18,15 @@ package com.haulmont.cuba.core.app;
 
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.FileStorageException;
+import com.haulmont.cuba.core.global.FileStorageException.Type;
+import org.apache.commons.io.IOUtils;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 @Service(FileStorageService.NAME)
 public class FileStorageServiceBean implements FileStorageService {
@@ -47,4 +53,43 @@ public class FileStorageServiceBean implements FileStorageService {
     public boolean fileExists(FileDescriptor fileDescr) throws FileStorageException {
         return fileStorageAPI.fileExists(fileDescr);
     }
-}
\ No newline at end of file
+
+    @Override
+    public byte[] loadFile(FileDescriptor fileDescr, long offset, int length) throws FileStorageException {
+        try (InputStream inputStream = fileStorageAPI.openStream(fileDescr, offset, length)) {
+            return IOUtils.toByteArray(inputStream);
+        } catch (IOException e) {
+            throw new FileStorageException(Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
+        }
+    }
+
+    @Override
+    public boolean supportsChunkedUpload() {
+        return fileStorageAPI.supportsChunkedUpload();
+    }
+
+    @Override
+    public void saveChunk(FileDescriptor fileDescr, long offset, byte[] data, @Nullable String checksum)
+            throws FileStorageException {
+        checkChunkedUploadSupported(fileDescr);
+        fileStorageAPI.saveChunk(fileDescr, offset, new ByteArrayInputStream(data), checksum);
+    }
+
+    @Override
+    public void commitChunks(FileDescriptor fileDescr, long size) throws FileStorageException {
+        checkChunkedUploadSupported(fileDescr);
+        fileStorageAPI.commitChunks(fileDescr, size);
+    }
+
+    @Override
+    public void abortChunks(FileDescriptor fileDescr) throws FileStorageException {
+        checkChunkedUploadSupported(fileDescr);
+        fileStorageAPI.abortChunks(fileDescr);
+    }
+
+    protected void checkChunkedUploadSupported(FileDescriptor fileDescr) throws FileStorageException {
+        if (!fileStorageAPI.supportsChunkedUpload()) {
+            throw new FileStorageException(Type.UNSUPPORTED_OPERATION, fileDescr.getId().toString());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import java.io.Serializable;
+
+/**
+ * Marker interface for cluster messages which have the same effect when received once or several times,
+ * for example cache invalidations.
+ * <p>
+ * When message batching is enabled, equal idempotent messages sent within one batching window
+ * are delivered once. Implementations must define {@code equals()} and {@code hashCode()}.
+ *
+ * @see ClusterConfig#getMessageBatchingEnabled()
+ */
+public interface IdempotentClusterMessage extends Serializable {
+}
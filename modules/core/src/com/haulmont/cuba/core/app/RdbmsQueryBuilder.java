@@ -20,6 +20,7 @@ package com.haulmont.cuba.core.app;
 import com.haulmont.bali.util.StringHelper;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
+import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.PersistenceSecurity;
 import com.haulmont.cuba.core.Query;
@@ -67,6 +68,9 @@ public class RdbmsQueryBuilder {
     @Inject
     protected SortJpqlGenerator sortJpqlGenerator;
 
+    @Inject
+    protected JpqlSortExpressionProvider jpqlSortExpressionProvider;
+
     public void init(@Nullable String queryString, Condition condition, Sort sort,
                      Map<String, Object> queryParams, String[] noConversionParams,
                      @Nullable Object id, String entityName) {
@@ -137,6 +141,72 @@ public class RdbmsQueryBuilder {
         this.queryParams.put("_qr_sessionId", sessionId);
     }
 
+    /**
+     * Orders the query by the given sort and the primary key and, if the position is specified,
+     * restricts it by the seek predicate selecting rows located after the position.
+     * Should be invoked after {@link #init} which received null sort.
+     */
+    public void applyKeyset(@Nullable Sort sort, @Nullable KeysetPosition position) {
+        MetaClass metaClass = metadata.getClassNN(entityName);
+        MetadataTools metadataTools = metadata.getTools();
+        MetaProperty primaryKey = metadataTools.getPrimaryKeyProperty(metaClass);
+        if (primaryKey == null || !primaryKey.getRange().isDatatype())
+            throw new DevelopmentException(String.format("Keyset pagination is not supported for entity %s", entityName));
+
+        List<Sort.Order> orders = sort == null ? Collections.emptyList() : sort.getOrders();
+        Sort.Direction direction = orders.isEmpty() ? Sort.Direction.ASC : orders.get(0).getDirection();
+        boolean asc = direction == Sort.Direction.ASC;
+
+        List<String> expressions = new ArrayList<>(orders.size() + 1);
+        for (Sort.Order order : orders) {
+            MetaPropertyPath propertyPath = metaClass.getPropertyPath(order.getProperty());
+            if (propertyPath == null)
+                throw new DevelopmentException(String.format("Could not resolve property path '%s' in '%s'",
+                        order.getProperty(), entityName));
+            if (order.getDirection() != direction
+                    || !metadataTools.isPersistent(propertyPath)
+                    || propertyPath.getRange().isClass()
+                    || metadataTools.isLob(propertyPath.getMetaProperty()))
+                throw new DevelopmentException(String.format("Keyset pagination does not support sorting by '%s' in '%s'",
+                        order.getProperty(), entityName));
+            expressions.add(jpqlSortExpressionProvider.getDatatypeSortExpression(propertyPath, asc));
+        }
+        expressions.add("{E}." + primaryKey.getName());
+
+        QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
+        transformer.replaceOrderByExpressions(!asc, expressions.toArray(new String[0]));
+
+        if (position != null) {
+            List<Object> values = new ArrayList<>(position.getSortValues());
+            values.add(position.getId());
+            if (values.size() != expressions.size())
+                throw new DevelopmentException("Keyset position does not correspond to the query sort");
+
+            this.queryParams = new HashMap<>(queryParams);
+            // (e1 > :p1) or (e1 = :p1 and e2 > :p2) or ... for ascending direction
+            List<String> disjuncts = new ArrayList<>(expressions.size());
+            for (int i = 0; i < expressions.size(); i++) {
+                StringBuilder sb = new StringBuilder("(");
+                for (int j = 0; j < i; j++) {
+                    sb.append(expressions.get(j)).append(" = :").append(keysetParamName(j)).append(" and ");
+                }
+                sb.append(expressions.get(i)).append(asc ? " > :" : " < :").append(keysetParamName(i)).append(")");
+                disjuncts.add(sb.toString());
+
+                Object value = values.get(i);
+                if (value == null)
+                    throw new DevelopmentException("Keyset pagination does not support null values of sort attributes");
+                queryParams.put(keysetParamName(i), value);
+            }
+            transformer.addWhere("(" + String.join(" or ", disjuncts) + ")");
+        }
+        queryString = transformer.getResult();
+    }
+
+    protected String keysetParamName(int index) {
+        return "_ks_" + index;
+    }
+
     public String getQueryString() {
         return queryString;
     }
@@ -35,6 +35,9 @@ import com.haulmont.cuba.security.entity.EntityAttrAccess;
 import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.cuba.security.entity.PermissionType;
 import org.apache.commons.lang3.StringUtils;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.queries.CursoredStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Scope;
@@ -44,6 +47,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.persistence.NoResultException;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -257,6 +261,100 @@ public class RdbmsStore implements DataStore {
         return resultList;
     }
 
+    /**
+     * Reads the results from a database cursor inside a single transaction. Each chunk of
+     * {@link LoadContext.Query#getFetchSize()} instances is detached and released from the persistence context
+     * before passing to the consumer.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <E extends Entity> void stream(LoadContext<E> context, Consumer<List<E>> chunkConsumer) {
+        if (log.isDebugEnabled())
+            log.debug("stream: metaClass=" + context.getMetaClass() + ", view=" + context.getView()
+                    + (context.getPrevQueries().isEmpty() ? "" : ", from selected")
+                    + ", query=" + (context.getQuery() == null ? null : RdbmsQueryBuilder.printQuery(context.getQuery().getQueryString())));
+
+        MetaClass metaClass = metadata.getClassNN(context.getMetaClass());
+
+        if (isAuthorizationRequired(context) && !isEntityOpPermitted(metaClass, EntityOp.READ)) {
+            log.debug("reading of {} not permitted, returning nothing", metaClass);
+            return;
+        }
+
+        queryResultsManager.savePreviousQueryResults(context);
+
+        int fetchSize = context.getQuery() == null ? LoadContext.Query.DEFAULT_FETCH_SIZE : context.getQuery().getFetchSize();
+        boolean needToApplyInMemoryReadConstraints = needToApplyInMemoryReadConstraints(context);
+        boolean needToFilterByInMemoryReadConstraints = needToFilterByInMemoryReadConstraints(context);
+        try (Transaction tx = getLoadTransaction(context.isJoinTransaction())) {
+            EntityManager em = persistence.getEntityManager(storeName);
+            em.setSoftDeletion(context.isSoftDeletion());
+            persistence.getEntityManagerContext(storeName).setDbHints(context.getDbHints());
+
+            boolean ensureDistinct = false;
+            if (serverConfig.getInMemoryDistinct() && context.getQuery() != null
+                    && context.getQuery().getQueryString() != null) {
+                QueryTransformer transformer = queryTransformerFactory.transformer(
+                        context.getQuery().getQueryString());
+                ensureDistinct = transformer.removeDistinct();
+                if (ensureDistinct) {
+                    context.getQuery().setQueryString(transformer.getResult());
+                }
+            }
+            View view = createRestrictedView(context);
+            Query query = createQuery(em, context, false);
+            query.setView(view);
+
+            Set<Object> loadedIds = ensureDistinct ? new HashSet<>() : null;
+            CursoredStream cursor = openCursor(query, fetchSize);
+            try {
+                while (cursor.hasNext()) {
+                    List<E> chunk = new ArrayList<>((List<E>) cursor.next(fetchSize));
+                    if (loadedIds != null) {
+                        chunk.removeIf(entity -> !loadedIds.add(entity.getId()));
+                    }
+                    for (E entity : chunk) {
+                        entityFetcher.fetch(entity, view);
+                    }
+                    if (needToFilterByInMemoryReadConstraints) {
+                        security.filterByConstraints((Collection<Entity>) chunk);
+                    }
+                    if (!chunk.isEmpty() && chunk.get(0) instanceof BaseGenericIdEntity && context.isLoadDynamicAttributes()) {
+                        dynamicAttributesManagerAPI.fetchDynamicAttributes((List<BaseGenericIdEntity>) chunk,
+                                collectEntityClassesWithDynamicAttributes(context.getView()));
+                    }
+                    if (needToApplyInMemoryReadConstraints) {
+                        security.calculateFilteredData((Collection<Entity>) chunk);
+                    }
+                    attributeSecurity.onLoad(chunk, view);
+
+                    if (context.isJoinTransaction()) {
+                        em.flush();
+                    }
+                    for (E entity : chunk) {
+                        detachEntity(em, entity, view);
+                    }
+                    // release the instances read so far from the cursor
+                    cursor.clear();
+
+                    if (needToApplyInMemoryReadConstraints) {
+                        security.applyConstraints((Collection<Entity>) chunk);
+                    }
+                    if (context.isAuthorizationRequired()) {
+                        attributeSecurity.afterLoad(chunk);
+                    }
+                    if (!chunk.isEmpty()) {
+                        chunkConsumer.accept(chunk);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+
+            tx.commit();
+        }
+    }
+
     @Override
     public long getCount(LoadContext<? extends Entity> context) {
         if (log.isDebugEnabled())
@@ -280,6 +378,7 @@ public class RdbmsStore implements DataStore {
         if (StringUtils.isBlank(context.getQuery().getQueryString())) {
             context.getQuery().setQueryString("select e from " + metaClass.getName() + " e");
         }
+        context.getQuery().setKeysetPosition(null).setKeysetPagination(false);
 
         if (security.hasInMemoryConstraints(metaClass, ConstraintOperationType.READ, ConstraintOperationType.ALL)) {
             List resultList;
@@ -410,8 +509,8 @@ public class RdbmsStore implements DataStore {
                 }
             }
 
-            for (BaseGenericIdEntity entity : entitiesToStoreDynamicAttributes) {
-                dynamicAttributesManagerAPI.storeDynamicAttributes(entity);
+            if (!entitiesToStoreDynamicAttributes.isEmpty()) {
+                dynamicAttributesManagerAPI.storeDynamicAttributes(entitiesToStoreDynamicAttributes);
             }
 
             // remove
@@ -486,9 +585,7 @@ public class RdbmsStore implements DataStore {
 
         if (!identityEntitiesToStoreDynamicAttributes.isEmpty()) {
             try (Transaction tx = getSaveTransaction(storeName, context.isJoinTransaction())) {
-                for (BaseGenericIdEntity entity : identityEntitiesToStoreDynamicAttributes) {
-                    dynamicAttributesManagerAPI.storeDynamicAttributes(entity);
-                }
+                dynamicAttributesManagerAPI.storeDynamicAttributes(identityEntitiesToStoreDynamicAttributes);
                 tx.commit();
             }
         }
@@ -615,15 +712,19 @@ public class RdbmsStore implements DataStore {
 
     protected Query createQuery(EntityManager em, LoadContext context, boolean singleResult) {
         LoadContext.Query contextQuery = context.getQuery();
+        boolean keysetPagination = isKeysetPagination(context) && !singleResult;
         RdbmsQueryBuilder queryBuilder = AppBeans.get(RdbmsQueryBuilder.NAME);
         queryBuilder.init(
                 contextQuery == null ? null : contextQuery.getQueryString(),
                 contextQuery == null ? null : contextQuery.getCondition(),
-                contextQuery == null ? null : contextQuery.getSort(),
+                contextQuery == null || keysetPagination ? null : contextQuery.getSort(),
                 contextQuery == null ? null : contextQuery.getParameters(),
                 contextQuery == null ? null : contextQuery.getNoConversionParams(),
                 context.getId(), context.getMetaClass()
         );
+        if (keysetPagination) {
+            queryBuilder.applyKeyset(contextQuery.getSort(), contextQuery.getKeysetPosition());
+        }
 
         queryBuilder.setSingleResult(singleResult);
 
@@ -634,7 +735,8 @@ public class RdbmsStore implements DataStore {
         Query query = queryBuilder.getQuery(em);
 
         if (contextQuery != null) {
-            if (contextQuery.getFirstResult() != 0)
+            // the keyset position selects the page, an offset would skip rows after it
+            if (contextQuery.getFirstResult() != 0 && !keysetPagination)
                 query.setFirstResult(contextQuery.getFirstResult());
             if (contextQuery.getMaxResults() != 0)
                 query.setMaxResults(contextQuery.getMaxResults());
@@ -666,11 +768,19 @@ public class RdbmsStore implements DataStore {
         if (initialSize == 0) {
             return list;
         }
+        E lastLoaded = list.get(initialSize - 1);
         boolean needToFilterByInMemoryReadConstraints = needToFilterByInMemoryReadConstraints(context);
         boolean filteredByConstraints = false;
         if (needToFilterByInMemoryReadConstraints) {
             filteredByConstraints = security.filterByConstraints((Collection<Entity>) list);
         }
+        if (isKeysetPagination(context)) {
+            if (!filteredByConstraints && !ensureDistinct) {
+                return list;
+            }
+            return getResultListByKeyset(context, list, initialSize, lastLoaded, ensureDistinct,
+                    needToFilterByInMemoryReadConstraints);
+        }
         if (!ensureDistinct) {
             return filteredByConstraints ? getResultListIteratively(context, query, list, initialSize, true) : list;
         }
@@ -740,6 +850,67 @@ public class RdbmsStore implements DataStore {
         return result;
     }
 
+    /**
+     * Refills the page loaded in the keyset pagination mode if some rows were dropped by in-memory distinct
+     * or read constraints. Each subsequent chunk is selected by the seek predicate starting after the last loaded row,
+     * so the rows already read are never scanned again.
+     */
+    @SuppressWarnings("unchecked")
+    protected <E extends Entity> List<E> getResultListByKeyset(LoadContext<E> context, List<E> firstChunk,
+                                                               int firstChunkSize, E lastLoaded, boolean ensureDistinct,
+                                                               boolean needToFilterByInMemoryReadConstraints) {
+        int requestedMax = context.getQuery().getMaxResults();
+
+        Collection<E> filteredCollection = ensureDistinct ? new LinkedHashSet<>(firstChunk) : new ArrayList<>(firstChunk);
+        if (requestedMax == 0) {
+            return new ArrayList<>(filteredCollection);
+        }
+
+        View view = createRestrictedView(context);
+        int chunkSize = firstChunkSize;
+        int i = 0;
+        while (filteredCollection.size() < requestedMax && chunkSize >= requestedMax) {
+            if (i++ > 10000) {
+                log.warn("Keyset pagination: endless loop detected for " + context);
+                break;
+            }
+            LoadContext<E> chunkContext = (LoadContext<E>) context.copy();
+            chunkContext.getQuery().setKeysetPosition(KeysetPosition.of(lastLoaded, context.getQuery().getSort()));
+
+            Query query = createQuery(persistence.getEntityManager(storeName), chunkContext, false);
+            query.setView(view);
+            List<E> list = executeQuery(query, false);
+            chunkSize = list.size();
+            if (chunkSize == 0) {
+                break;
+            }
+            lastLoaded = list.get(chunkSize - 1);
+            if (needToFilterByInMemoryReadConstraints) {
+                security.filterByConstraints((Collection<Entity>) list);
+            }
+            filteredCollection.addAll(list);
+        }
+
+        // Copy by iteration because subList() returns non-serializable class
+        int max = Math.min(requestedMax, filteredCollection.size());
+        List<E> result = new ArrayList<>(max);
+        for (E item : filteredCollection) {
+            if (result.size() >= max)
+                break;
+            result.add(item);
+        }
+        return result;
+    }
+
+    protected CursoredStream openCursor(Query query, int fetchSize) {
+        javax.persistence.Query jpaQuery = query.getDelegate();
+        jpaQuery.setHint(QueryHints.CURSOR, HintValues.TRUE);
+        jpaQuery.setHint(QueryHints.CURSOR_INITIAL_SIZE, fetchSize);
+        jpaQuery.setHint(QueryHints.CURSOR_PAGE_SIZE, fetchSize);
+        jpaQuery.setHint(QueryHints.JDBC_FETCH_SIZE, fetchSize);
+        return (CursoredStream) jpaQuery.getSingleResult();
+    }
+
     @SuppressWarnings("unchecked")
     protected <E extends Entity> List<E> executeQuery(Query query, boolean singleResult) {
         List<E> list;
@@ -945,6 +1116,10 @@ public class RdbmsStore implements DataStore {
         }
     }
 
+    protected boolean isKeysetPagination(LoadContext context) {
+        return context.getQuery() != null && context.getQuery().isKeysetPagination();
+    }
+
     protected boolean needToFilterByInMemoryReadConstraints(LoadContext context) {
         return userSessionSource.getUserSession().hasConstraints()
                 && security.hasInMemoryConstraints(metadata.getClassNN(context.getMetaClass()),
@@ -21,8 +21,12 @@ import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.*;
+import com.haulmont.cuba.core.config.type.CommaSeparatedStringListTypeFactory;
+import com.haulmont.cuba.core.config.type.Factory;
 import com.haulmont.cuba.security.app.UserSessionsAPI;
 
+import java.util.List;
+
 /**
  * Configuration parameters interface used by the CORE layer.
  */
@@ -131,6 +135,43 @@ public interface ServerConfig extends Config {
     @DefaultBoolean(true)
     boolean getImmutableFileStorage();
 
+    /**
+     * @return interval in seconds between attempts to replicate files to inaccessible secondary storages
+     * of {@link FileStorageAPI}
+     */
+    @Property("cuba.fileStorageReplicationRetryInterval")
+    @DefaultInt(30)
+    int getFileStorageReplicationRetryInterval();
+
+    /**
+     * @return names of user session attributes indexed by {@link UserSessionsAPI} to find sessions by attribute
+     * values without scanning all sessions
+     */
+    @Property("cuba.userSessionIndexedAttributes")
+    @Factory(factory = CommaSeparatedStringListTypeFactory.class)
+    List<String> getUserSessionIndexedAttributes();
+
+    /**
+     * @return whether {@link UserSessionsAPI} indexes sessions by user id
+     */
+    @Property("cuba.userSessionUserIndexEnabled")
+    @DefaultBoolean(false)
+    boolean getUserSessionUserIndexEnabled();
+
+    /**
+     * @return maximum number of fetch groups calculated for combinations of queries and views kept for reuse
+     */
+    @Property("cuba.fetchGroupCacheMaxSize")
+    @DefaultInt(1000)
+    int getFetchGroupCacheMaxSize();
+
+    /**
+     * @return maximum number of query strings with applied row-level constraints kept for reuse
+     */
+    @Property("cuba.constraintQueryCacheMaxSize")
+    @DefaultInt(1000)
+    int getConstraintQueryCacheMaxSize();
+
     /**
      * @return Scheduled tasks execution control.
      */
@@ -300,4 +341,11 @@ public interface ServerConfig extends Config {
     @Property("cuba.implicitConversionOfJpqlParams")
     @DefaultBoolean(false)
     boolean getImplicitConversionOfJpqlParams();
+
+    /**
+     * @return number of threads executing service invocations of batches sent by clients in the parallel mode
+     */
+    @Property("cuba.batchInvocationThreads")
+    @DefaultInt(4)
+    int getBatchInvocationThreads();
 }
\ No newline at end of file
@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.app.dynamicattributes;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
@@ -27,6 +28,7 @@ import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.TypedQuery;
 import com.haulmont.cuba.core.app.ClusterListenerAdapter;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.IdempotentClusterMessage;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
 import org.apache.commons.collections4.CollectionUtils;
@@ -38,7 +40,6 @@ import org.springframework.stereotype.Component;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
-import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -48,6 +49,7 @@ import static java.lang.String.format;
 @Component(DynamicAttributesManagerAPI.NAME)
 public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
     public static final int MAX_ENTITIES_FOR_ATTRIBUTE_VALUES_BATCH = 100;
+    public static final int MAX_ATTRIBUTE_VALUES_FOR_STORE_BATCH = 500;
 
     private static final Logger log = LoggerFactory.getLogger(DynamicAttributesManager.class);
 
@@ -190,12 +192,66 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
 
     @Override
     public void storeDynamicAttributes(BaseGenericIdEntity entity) {
+        storeDynamicAttributes(Collections.singletonList(entity));
+    }
+
+    @Override
+    public void storeDynamicAttributes(Collection<? extends BaseGenericIdEntity> entities) {
         try (Transaction tx = persistence.getTransaction()) {
-            doStoreDynamicAttributes(entity);
+            Set<UUID> storedIds = loadStoredAttributeValues(entities);
+            for (BaseGenericIdEntity entity : entities) {
+                doStoreDynamicAttributes(entity, storedIds);
+            }
             tx.commit();
         }
     }
 
+    /**
+     * Loads attribute values of the entities that exist in the database into the persistence context, so the
+     * subsequent merge of each value doesn't read it separately.
+     *
+     * @return identifiers of the stored attribute values
+     */
+    protected Set<UUID> loadStoredAttributeValues(Collection<? extends BaseGenericIdEntity> entities) {
+        List<UUID> ids = new ArrayList<>();
+        for (BaseGenericIdEntity entity : entities) {
+            Map<String, CategoryAttributeValue> dynamicAttributes = entity.getDynamicAttributes();
+            if (dynamicAttributes != null) {
+                for (CategoryAttributeValue categoryAttributeValue : dynamicAttributes.values()) {
+                    if (!PersistenceHelper.isManaged(categoryAttributeValue)) {
+                        ids.add(categoryAttributeValue.getId());
+                    }
+                }
+            }
+        }
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        EntityManager em = persistence.getEntityManager();
+
+        View categoryAttributeValueLocalView = viewRepository.getView(CategoryAttributeValue.class, View.LOCAL);
+        View view = new View(categoryAttributeValueLocalView, null, false)
+                .addProperty("childValues", categoryAttributeValueLocalView);
+
+        Set<UUID> storedIds = new HashSet<>();
+        for (List<UUID> batch : Lists.partition(ids, MAX_ATTRIBUTE_VALUES_FOR_STORE_BATCH)) {
+            List<CategoryAttributeValue> values = em.createQuery(
+                    "select cav from sys$CategoryAttributeValue cav where cav.id in :ids", CategoryAttributeValue.class)
+                    .setParameter("ids", batch)
+                    .setView(view)
+                    .getResultList();
+            for (CategoryAttributeValue value : values) {
+                storedIds.add(value.getId());
+            }
+        }
+        return storedIds;
+    }
+
+    protected void doStoreDynamicAttributes(BaseGenericIdEntity entity) {
+        doStoreDynamicAttributes(entity, null);
+    }
+
     @Override
     public <E extends BaseGenericIdEntity> void fetchDynamicAttributes(List<E> entities, @Nonnull Set<Class> dependentClasses) {
         Set<BaseGenericIdEntity> toProcess = new HashSet<>();
@@ -243,8 +299,11 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
         }
     }
 
+    /**
+     * @param storedIds identifiers of the values existing in the database, or null if they are not known
+     */
     @SuppressWarnings("unchecked")
-    protected void doStoreDynamicAttributes(BaseGenericIdEntity entity) {
+    protected void doStoreDynamicAttributes(BaseGenericIdEntity entity, @Nullable Set<UUID> storedIds) {
         final EntityManager em = persistence.getEntityManager();
         Map<String, CategoryAttributeValue> dynamicAttributes = entity.getDynamicAttributes();
         if (dynamicAttributes != null) {
@@ -263,21 +322,32 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
                     if (entity instanceof BaseDbGeneratedIdEntity && categoryAttributeValue.getObjectEntityId() == null) {
                         categoryAttributeValue.setObjectEntityId(referenceToEntitySupport.getReferenceId(entity));
                     }
-                    CategoryAttributeValue mergedCategoryAttributeValue = em.merge(categoryAttributeValue);
+                    CategoryAttributeValue mergedCategoryAttributeValue;
+                    if (storedIds != null && PersistenceHelper.isNew(categoryAttributeValue)
+                            && !storedIds.contains(categoryAttributeValue.getId())) {
+                        // the value doesn't exist in the database, persisting avoids the lookup performed by merge
+                        em.persist(categoryAttributeValue);
+                        mergedCategoryAttributeValue = categoryAttributeValue;
+                    } else {
+                        mergedCategoryAttributeValue = em.merge(categoryAttributeValue);
+                    }
                     mergedCategoryAttributeValue.setCategoryAttribute(categoryAttributeValue.getCategoryAttribute());
 
                     //copy transient fields (for nested CAVs as well)
                     mergedCategoryAttributeValue.setTransientEntityValue(categoryAttributeValue.getTransientEntityValue());
                     mergedCategoryAttributeValue.setTransientCollectionValue(categoryAttributeValue.getTransientCollectionValue());
-                    if (BooleanUtils.isTrue(categoryAttributeValue.getCategoryAttribute().getIsCollection()) && categoryAttributeValue.getChildValues() != null) {
+                    if (BooleanUtils.isTrue(categoryAttributeValue.getCategoryAttribute().getIsCollection())
+                            && categoryAttributeValue.getChildValues() != null
+                            && mergedCategoryAttributeValue != categoryAttributeValue) {
+                        Map<UUID, CategoryAttributeValue> mergedChildValues = new HashMap<>();
+                        for (CategoryAttributeValue mergedChildCAV : mergedCategoryAttributeValue.getChildValues()) {
+                            mergedChildValues.put(mergedChildCAV.getId(), mergedChildCAV);
+                        }
                         for (CategoryAttributeValue childCAV : categoryAttributeValue.getChildValues()) {
-                            for (CategoryAttributeValue mergedChildCAV : mergedCategoryAttributeValue.getChildValues()) {
-                                if (mergedChildCAV.getId().equals(childCAV.getId())) {
-                                    mergedChildCAV.setTransientEntityValue(childCAV.getTransientEntityValue());
-                                    break;
-                                }
+                            CategoryAttributeValue mergedChildCAV = mergedChildValues.get(childCAV.getId());
+                            if (mergedChildCAV != null) {
+                                mergedChildCAV.setTransientEntityValue(childCAV.getTransientEntityValue());
                             }
-
                         }
                     }
 
@@ -524,7 +594,17 @@ public class DynamicAttributesManager implements DynamicAttributesManagerAPI {
                 .getResultList();
     }
 
-    private static class ReloadCacheMsg implements Serializable {
+    private static class ReloadCacheMsg implements IdempotentClusterMessage {
         private static final long serialVersionUID = -3116358584797500962L;
+
+        @Override
+        public boolean equals(Object o) {
+            return o != null && getClass() == o.getClass();
+        }
+
+        @Override
+        public int hashCode() {
+            return getClass().hashCode();
+        }
     }
 }
\ No newline at end of file
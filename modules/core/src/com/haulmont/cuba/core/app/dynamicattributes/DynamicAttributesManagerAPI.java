@@ -65,4 +65,10 @@ public interface DynamicAttributesManagerAPI {
      * Store dynamic attributes from the entity to database
      */
     void storeDynamicAttributes(BaseGenericIdEntity entity);
+
+    /**
+     * Store dynamic attributes from the entities to database. Stored values of all entities are read by a few
+     * queries instead of a query for each value.
+     */
+    void storeDynamicAttributes(Collection<? extends BaseGenericIdEntity> entities);
 }
\ No newline at end of file
@@ -18,30 +18,44 @@ package com.haulmont.cuba.core.app.filestorage;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.haulmont.cuba.core.app.FileStorageAPI;
+import com.haulmont.cuba.core.app.FileStorageService;
 import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.*;
-import com.haulmont.cuba.core.sys.AppContext;
-import com.haulmont.cuba.core.sys.SecurityContext;
 import com.haulmont.cuba.security.global.UserSession;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static com.haulmont.bali.util.Preconditions.checkNotNullArgument;
 
@@ -66,9 +80,34 @@ public class FileStorage implements FileStorageAPI {
 
     protected volatile File[] storageRoots;
 
+    protected volatile ReplicationJournal journal;
+
+    protected ScheduledExecutorService replicationRetryExecutor;
+
+    protected final ConcurrentMap<File, StorageLog> storageLogs = new ConcurrentHashMap<>();
+
     @PostConstruct
     public void init() {
         this.isImmutableFileStorage = configuration.getConfig(ServerConfig.class).getImmutableFileStorage();
+        if (getStorageRoots().length > 1) {
+            initReplication();
+        }
+    }
+
+    protected void initReplication() {
+        File dir = new File(configuration.getConfig(GlobalConfig.class).getDataDir(), "filestorage-journal");
+        try {
+            journal = new ReplicationJournal(dir);
+        } catch (IOException e) {
+            log.error("Unable to open replication journal in {}, replication to secondary storages will not survive restart",
+                    dir, e);
+            return;
+        }
+
+        int interval = configuration.getConfig(ServerConfig.class).getFileStorageReplicationRetryInterval();
+        replicationRetryExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("FileStorageReplication-%d").setDaemon(true).build());
+        replicationRetryExecutor.scheduleWithFixedDelay(this::processPendingReplication, 0, interval, TimeUnit.SECONDS);
     }
 
     /**
@@ -133,36 +172,233 @@ public class FileStorage implements FileStorageAPI {
         }
 
         // Copy file to secondary storages asynchronously
+        replicate(fileDescr, roots, file);
+
+        return size;
+    }
 
-        final SecurityContext securityContext = AppContext.getSecurityContext();
+    protected void replicate(FileDescriptor fileDescr, File[] roots, File file) {
+        String user = getCurrentUser();
+        List<ReplicationJournal.Entry> entries = new ArrayList<>(roots.length - 1);
         for (int i = 1; i < roots.length; i++) {
-            if (!roots[i].exists()) {
-                log.error("Error saving {} into {} : directory doesn't exist", fileDescr, roots[i]);
-                continue;
+            File fileCopy = new File(getStorageDir(roots[i], fileDescr), getFileName(fileDescr));
+            entries.add(createReplicationEntry(ReplicationJournal.Type.COPY, roots[i], fileCopy, file, user));
+        }
+        submitReplication(entries);
+    }
+
+    protected ReplicationJournal.Entry createReplicationEntry(ReplicationJournal.Type type, File root, File target,
+                                                              @Nullable File source, String user) {
+        if (journal != null) {
+            return journal.createEntry(type, root, target, source, user);
+        } else {
+            return new ReplicationJournal.Entry(-1, System.currentTimeMillis(), type, root, target, source, user);
+        }
+    }
+
+    /**
+     * Records the operations in the journal and starts those whose storage roots are accessible.
+     * The others are started by {@link #processPendingReplication()} when their roots become accessible.
+     */
+    protected void submitReplication(List<ReplicationJournal.Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            try {
+                journal.add(entries);
+            } catch (IOException e) {
+                log.error("Unable to record replication of {}", entries, e);
+            }
+        }
+        for (ReplicationJournal.Entry entry : entries) {
+            if (entry.getRoot().exists()) {
+                scheduleReplication(entry);
+            } else if (journal != null) {
+                log.warn("Storage {} is not accessible, postponing {}", entry.getRoot(), entry);
+            } else {
+                log.error("Error replicating {} : directory {} doesn't exist", entry, entry.getRoot());
             }
+        }
+    }
 
-            File copyDir = getStorageDir(roots[i], fileDescr);
-            final File fileCopy = new File(copyDir, getFileName(fileDescr));
-
-            writeExecutor.submit(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        AppContext.setSecurityContext(securityContext);
-                        FileUtils.copyFile(file, fileCopy, true);
-                        writeLog(fileCopy, false);
-                    } catch (Exception e) {
-                        log.error("Error saving {} into {} : {}", fileDescr, fileCopy.getAbsolutePath(), e.getMessage());
-                    } finally {
-                        AppContext.setSecurityContext(null);
-                    }
+    protected void scheduleReplication(ReplicationJournal.Entry entry) {
+        if (entry.schedule()) {
+            writeExecutor.submit(() -> executeReplication(entry));
+        }
+    }
+
+    protected void executeReplication(ReplicationJournal.Entry entry) {
+        try {
+            File target = entry.getTarget();
+            if (entry.getType() == ReplicationJournal.Type.COPY) {
+                File source = entry.getSource();
+                if (source != null && source.exists()) {
+                    FileUtils.copyFile(source, target, true);
+                    writeLog(target, false, entry.getUser());
+                } else {
+                    log.debug("Skipping {} : source file has been removed", entry);
+                }
+            } else if (target.exists()) {
+                if (!target.delete()) {
+                    throw new IOException("Unable to delete file " + target.getAbsolutePath());
+                }
+                writeLog(target, true, entry.getUser());
+            }
+            if (journal != null) {
+                journal.done(entry);
+            }
+        } catch (Exception e) {
+            log.error("Error replicating {} : {}", entry, e.getMessage());
+            entry.unschedule();
+        }
+    }
+
+    /**
+     * Starts pending operations recorded in the replication journal, including those replayed after restart,
+     * if their storage roots are accessible.
+     */
+    protected void processPendingReplication() {
+        try {
+            for (ReplicationJournal.Entry entry : journal.getPendingEntries()) {
+                if (entry.getRoot().exists()) {
+                    scheduleReplication(entry);
                 }
-            });
+            }
+        } catch (Exception e) {
+            log.error("Error processing pending replication", e);
+        }
+    }
+
+    /**
+     * @return number of operations waiting to be replicated to the secondary storages
+     */
+    public int getReplicationPendingCount() {
+        return journal != null ? journal.getPendingCount() : 0;
+    }
+
+    /**
+     * @return age of the oldest operation waiting to be replicated to the secondary storages, in milliseconds
+     */
+    public long getReplicationLag() {
+        return journal != null ? journal.getLag() : 0;
+    }
+
+    @Override
+    public boolean supportsChunkedUpload() {
+        return true;
+    }
+
+    @Override
+    public long saveChunk(FileDescriptor fileDescr, long offset, InputStream inputStream, @Nullable String checksum)
+            throws FileStorageException {
+        checkFileDescriptor(fileDescr);
+        checkNotNullArgument(inputStream, "Chunk content is null");
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset");
+        }
+
+        File[] roots = getStorageRoots();
+        checkStorageDefined(roots, fileDescr);
+        checkPrimaryStorageAccessible(roots, fileDescr);
+
+        File dir = getStorageDir(roots[0], fileDescr);
+        dir.mkdirs();
+        checkDirectoryExists(dir);
+        checkFileExists(new File(dir, getFileName(fileDescr)));
+
+        File partFile = new File(dir, getPartFileName(fileDescr));
+        MessageDigest digest = createChunkDigest();
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            byte[] buffer = new byte[IOUtils.DEFAULT_BUFFER_SIZE];
+            int n;
+            while ((n = inputStream.read(buffer)) != IOUtils.EOF) {
+                digest.update(buffer, 0, n);
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, n);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer, offset + size + byteBuffer.position());
+                }
+                size += n;
+            }
+            if (checksum != null) {
+                // don't force the data if it is going to be sent again
+                String actual = Hex.encodeHexString(digest.digest());
+                if (!actual.equalsIgnoreCase(checksum)) {
+                    throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION,
+                            String.format("Checksum mismatch for chunk at %s of %s: expected %s, actual %s",
+                                    offset, partFile.getAbsolutePath(), checksum, actual));
+                }
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, partFile.getAbsolutePath(), e);
+        }
+        return size;
+    }
+
+    @Override
+    public long commitChunks(FileDescriptor fileDescr, long size) throws FileStorageException {
+        checkFileDescriptor(fileDescr);
+
+        File[] roots = getStorageRoots();
+        checkStorageDefined(roots, fileDescr);
+        checkPrimaryStorageAccessible(roots, fileDescr);
+
+        File dir = getStorageDir(roots[0], fileDescr);
+        File partFile = new File(dir, getPartFileName(fileDescr));
+        if (!partFile.exists()) {
+            throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND, partFile.getAbsolutePath());
+        }
+        if (partFile.length() != size) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION,
+                    String.format("Size of %s is %s, expected %s", partFile.getAbsolutePath(), partFile.length(), size));
+        }
+
+        File file = new File(dir, getFileName(fileDescr));
+        checkFileExists(file);
+        try {
+            try {
+                Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(partFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            writeLog(file, false);
+        } catch (IOException e) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, file.getAbsolutePath(), e);
         }
 
+        replicate(fileDescr, roots, file);
+
         return size;
     }
 
+    @Override
+    public void abortChunks(FileDescriptor fileDescr) throws FileStorageException {
+        checkFileDescriptor(fileDescr);
+
+        File[] roots = getStorageRoots();
+        checkStorageDefined(roots, fileDescr);
+
+        File partFile = new File(getStorageDir(roots[0], fileDescr), getPartFileName(fileDescr));
+        if (partFile.exists() && !partFile.delete()) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION,
+                    "Unable to delete file " + partFile.getAbsolutePath());
+        }
+    }
+
+    protected MessageDigest createChunkDigest() {
+        try {
+            return MessageDigest.getInstance(FileStorageService.CHUNK_CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected String getPartFileName(FileDescriptor fileDescriptor) {
+        return getFileName(fileDescriptor) + ".part";
+    }
+
     protected void checkFileExists(File file) throws FileStorageException {
         if (file.exists() && isImmutableFileStorage)
             throw new FileStorageException(FileStorageException.Type.FILE_ALREADY_EXISTS, file.getAbsolutePath());
@@ -193,7 +429,11 @@ public class FileStorage implements FileStorageAPI {
         saveStream(fileDescr, new ByteArrayInputStream(data));
     }
 
-    protected synchronized void writeLog(File file, boolean remove) {
+    protected void writeLog(File file, boolean remove) {
+        writeLog(file, remove, getCurrentUser());
+    }
+
+    protected void writeLog(File file, boolean remove, String user) {
         File rootDir;
         try {
             rootDir = file.getParentFile().getParentFile().getParentFile().getParentFile();
@@ -204,25 +444,20 @@ public class FileStorage implements FileStorageAPI {
 
         SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
 
-        UserSession userSession = userSessionSource.getUserSession();
-        String userLogin = userSession.getUser().getLogin();
-        String userId = userSession.getUser().getId().toString();
-
         StringBuilder sb = new StringBuilder();
         sb.append(df.format(timeSource.currentTimestamp())).append(" ");
 
-        sb.append("[").append(userLogin).append("--").append(userId).append("] ");
+        sb.append("[").append(user).append("] ");
         sb.append(remove ? "REMOVE" : "CREATE").append(" ");
         sb.append("\"").append(file.getAbsolutePath()).append("\"\n");
 
         File logFile = new File(rootDir, "storage.log");
-        try {
-            try (FileOutputStream fos = new FileOutputStream(logFile, true)) {
-                IOUtils.write(sb.toString(), fos, StandardCharsets.UTF_8);
-            }
-        } catch (IOException e) {
-            log.error("Unable to write log", e);
-        }
+        storageLogs.computeIfAbsent(logFile, StorageLog::new).write(sb.toString());
+    }
+
+    protected String getCurrentUser() {
+        UserSession userSession = userSessionSource.getUserSession();
+        return userSession.getUser().getLogin() + "--" + userSession.getUser().getId();
     }
 
     @Override
@@ -235,10 +470,14 @@ public class FileStorage implements FileStorageAPI {
             return;
         }
 
-        for (File root : roots) {
-            File dir = getStorageDir(root, fileDescr);
+        List<ReplicationJournal.Entry> postponed = new ArrayList<>();
+        for (int i = 0; i < roots.length; i++) {
+            File dir = getStorageDir(roots[i], fileDescr);
             File file = new File(dir, getFileName(fileDescr));
-            if (file.exists()) {
+            if (i > 0 && journal != null && !roots[i].exists()) {
+                // remove the file when the storage becomes accessible
+                postponed.add(createReplicationEntry(ReplicationJournal.Type.DELETE, roots[i], file, null, getCurrentUser()));
+            } else if (file.exists()) {
                 if (!file.delete()) {
                     throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, "Unable to delete file " + file.getAbsolutePath());
                 } else {
@@ -246,6 +485,7 @@ public class FileStorage implements FileStorageAPI {
                 }
             }
         }
+        submitReplication(postponed);
     }
 
     protected void checkFileDescriptor(FileDescriptor fd) {
@@ -287,6 +527,70 @@ public class FileStorage implements FileStorageAPI {
             throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND, fileDescr.getId().toString());
     }
 
+    @Override
+    public InputStream openStream(FileDescriptor fileDescr, long offset, long length) throws FileStorageException {
+        checkRange(offset, length);
+        FileChannel channel = openChannel(fileDescr);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            IOUtils.closeQuietly(channel);
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
+        }
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public long transferTo(FileDescriptor fileDescr, long offset, long length, WritableByteChannel target)
+            throws FileStorageException {
+        checkRange(offset, length);
+        try (FileChannel channel = openChannel(fileDescr)) {
+            long end = Math.min(channel.size(), offset + length);
+            long position = offset;
+            while (position < end) {
+                long n = channel.transferTo(position, end - position, target);
+                if (n <= 0) {
+                    break;
+                }
+                position += n;
+            }
+            return Math.max(position - offset, 0);
+        } catch (IOException e) {
+            throw new FileStorageException(FileStorageException.Type.IO_EXCEPTION, fileDescr.getId().toString(), e);
+        }
+    }
+
+    protected void checkRange(long offset, long length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Negative offset or length");
+        }
+    }
+
+    protected FileChannel openChannel(FileDescriptor fileDescr) throws FileStorageException {
+        checkFileDescriptor(fileDescr);
+
+        File[] roots = getStorageRoots();
+        if (roots.length == 0) {
+            log.error("No storage directories available");
+            throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND, fileDescr.getId().toString());
+        }
+
+        for (File root : roots) {
+            File file = new File(getStorageDir(root, fileDescr), getFileName(fileDescr));
+            if (!file.exists()) {
+                log.error("File " + file + " not found");
+                continue;
+            }
+
+            try {
+                return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            } catch (IOException e) {
+                log.error("Error opening channel for " + file, e);
+            }
+        }
+        throw new FileStorageException(FileStorageException.Type.FILE_NOT_FOUND, fileDescr.getId().toString());
+    }
+
     @Override
     public byte[] loadFile(FileDescriptor fileDescr) throws FileStorageException {
         InputStream inputStream = openStream(fileDescr);
@@ -305,8 +609,10 @@ public class FileStorage implements FileStorageAPI {
 
         File[] roots = getStorageRoots();
         for (File root : roots) {
-            File dir = getStorageDir(root, fileDescr);
-            File file = new File(dir, getFileName(fileDescr));
+            if (!root.exists()) {
+                continue;
+            }
+            File file = new File(getStorageDir(root, fileDescr), getFileName(fileDescr));
             if (file.exists()) {
                 return true;
             }
@@ -338,6 +644,47 @@ public class FileStorage implements FileStorageAPI {
 
     @PreDestroy
     protected void stopWriteExecutor() {
+        if (replicationRetryExecutor != null) {
+            replicationRetryExecutor.shutdownNow();
+        }
         writeExecutor.shutdown();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Appends records to the storage log. Writers don't wait for each other: the thread that holds the lock
+     * writes the records of all threads queued at the moment.
+     */
+    protected static class StorageLog {
+
+        protected final File file;
+        protected final Queue<String> records = new ConcurrentLinkedQueue<>();
+        protected final Lock lock = new ReentrantLock();
+
+        public StorageLog(File file) {
+            this.file = file;
+        }
+
+        public void write(String record) {
+            records.add(record);
+            while (!records.isEmpty() && lock.tryLock()) {
+                try {
+                    StringBuilder sb = new StringBuilder();
+                    String next;
+                    while ((next = records.poll()) != null) {
+                        sb.append(next);
+                    }
+                    try (FileOutputStream fos = new FileOutputStream(file, true)) {
+                        IOUtils.write(sb.toString(), fos, StandardCharsets.UTF_8);
+                    } catch (IOException e) {
+                        log.error("Unable to write log", e);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
     }
 }
\ No newline at end of file
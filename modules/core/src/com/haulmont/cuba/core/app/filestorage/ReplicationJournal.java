@@ -0,0 +1,463 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.app.filestorage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only journal of pending replication operations of {@link FileStorage}.
+ * <p>
+ * Operations are recorded in segment files before they are executed and marked as done after that. Records of
+ * concurrent writers are written by a single thread and flushed to disk by one {@code fsync} per batch. On startup,
+ * the journal is replayed and operations that have not been marked as done become pending again.
+ * A segment file is deleted when all its operations are done. Operations must be idempotent, as an operation
+ * can be repeated if the process stops before its completion is flushed.
+ */
+public class ReplicationJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationJournal.class);
+
+    public static final int MAX_SEGMENT_RECORDS = 10000;
+
+    protected static final String SEGMENT_PREFIX = "segment-";
+    protected static final String SEGMENT_SUFFIX = ".log";
+    protected static final String ADD = "A";
+    protected static final String DONE = "D";
+    protected static final String SEPARATOR = "\t";
+
+    public enum Type {
+        COPY,
+        DELETE
+    }
+
+    /**
+     * Pending replication operation.
+     */
+    public static class Entry {
+
+        protected final long seq;
+        protected final long timestamp;
+        protected final Type type;
+        protected final File root;
+        protected final File target;
+        protected final File source;
+        protected final String user;
+
+        protected final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // segment containing the record, accessed by the writer thread only
+        protected Segment segment;
+
+        protected Entry(long seq, long timestamp, Type type, File root, File target, @Nullable File source, String user) {
+            this.seq = seq;
+            this.timestamp = timestamp;
+            this.type = type;
+            this.root = root;
+            this.target = target;
+            this.source = source;
+            this.user = user;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        /**
+         * @return time when the operation was recorded
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return storage root of the target file
+         */
+        public File getRoot() {
+            return root;
+        }
+
+        public File getTarget() {
+            return target;
+        }
+
+        /**
+         * @return file to copy, null for {@link Type#DELETE}
+         */
+        @Nullable
+        public File getSource() {
+            return source;
+        }
+
+        /**
+         * @return login and id of the user who initiated the operation
+         */
+        public String getUser() {
+            return user;
+        }
+
+        /**
+         * Marks the entry as submitted for execution.
+         *
+         * @return false if the entry is already submitted
+         */
+        public boolean schedule() {
+            return scheduled.compareAndSet(false, true);
+        }
+
+        /**
+         * Allows the entry to be submitted again after a failed execution.
+         */
+        public void unschedule() {
+            scheduled.set(false);
+        }
+
+        protected String toRecord() {
+            return StringUtils.join(new Object[]{ADD, seq, timestamp, type, root.getPath(), target.getPath(),
+                    source == null ? "" : source.getPath(), user}, SEPARATOR);
+        }
+
+        protected static Entry fromRecord(String[] parts) {
+            return new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), Type.valueOf(parts[3]),
+                    new File(parts[4]), new File(parts[5]), parts[6].isEmpty() ? null : new File(parts[6]), parts[7]);
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + (source != null ? source + " -> " : "") + target;
+        }
+    }
+
+    protected static class Record {
+        protected final String line;
+        protected final Entry added;
+        protected final Entry done;
+        protected final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        protected Record(String line, @Nullable Entry added, @Nullable Entry done) {
+            this.line = line;
+            this.added = added;
+            this.done = done;
+        }
+    }
+
+    protected static class Segment {
+        protected final long number;
+        protected final File file;
+        protected int records;
+        protected int pending;
+
+        protected Segment(long number, File file) {
+            this.number = number;
+            this.file = file;
+        }
+    }
+
+    // stops the writer after the records queued before it are written
+    protected static final Record CLOSE = new Record("", null, null);
+
+    protected final File dir;
+
+    protected final ConcurrentNavigableMap<Long, Entry> pending = new ConcurrentSkipListMap<>();
+
+    protected final AtomicLong nextSeq = new AtomicLong();
+
+    protected final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+
+    // accessed by the writer thread only
+    protected final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    protected Segment activeSegment;
+    protected FileChannel activeChannel;
+
+    protected final ExecutorService writer = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("FileStorageJournal-%d").setDaemon(true).build());
+
+    protected volatile boolean closed;
+
+    /**
+     * Opens the journal in the given directory and replays existing segments.
+     */
+    public ReplicationJournal(File dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir.toPath());
+        replay();
+        writer.submit(this::writeLoop);
+    }
+
+    /**
+     * Records new operations and waits until the records are flushed to disk.
+     */
+    public void add(Collection<Entry> entries) throws IOException {
+        List<Record> records = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            pending.put(entry.seq, entry);
+            records.add(new Record(entry.toRecord(), entry, null));
+        }
+        if (closed) {
+            throw new IOException("Journal " + dir + " is closed");
+        }
+        queue.addAll(records);
+        try {
+            for (Record record : records) {
+                record.future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing to journal " + dir, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Unable to write to journal " + dir, e.getCause());
+        }
+    }
+
+    /**
+     * Creates a new entry to be passed to {@link #add(Collection)}.
+     */
+    public Entry createEntry(Type type, File root, File target, @Nullable File source, String user) {
+        return new Entry(nextSeq.getAndIncrement(), System.currentTimeMillis(), type, root, target, source,
+                user.replace(SEPARATOR, " "));
+    }
+
+    /**
+     * Marks the operation as done. Doesn't wait for the record to be flushed: if it is lost, the operation
+     * is repeated after restart.
+     */
+    public void done(Entry entry) {
+        if (pending.remove(entry.seq) != null && !closed) {
+            queue.add(new Record(DONE + SEPARATOR + entry.seq, null, entry));
+        }
+    }
+
+    /**
+     * @return pending operations in the order they were recorded
+     */
+    public Collection<Entry> getPendingEntries() {
+        return Collections.unmodifiableCollection(pending.values());
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return age of the oldest pending operation in milliseconds, 0 if nothing is pending
+     */
+    public long getLag() {
+        Map.Entry<Long, Entry> oldest = pending.firstEntry();
+        return oldest == null ? 0 : Math.max(System.currentTimeMillis() - oldest.getValue().timestamp, 0);
+    }
+
+    /**
+     * Writes queued records and closes the journal.
+     */
+    public void close() {
+        closed = true;
+        queue.add(CLOSE);
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Journal writer {} has not been stopped in time", dir);
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void replay() throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            throw new IOException("Unable to list journal directory " + dir);
+        }
+
+        long maxSeq = -1;
+        for (File file : files) {
+            String name = file.getName();
+            long number;
+            try {
+                number = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring unknown file {} in journal directory", file);
+                continue;
+            }
+            segments.put(number, new Segment(number, file));
+        }
+
+        for (Segment segment : segments.values()) {
+            try (BufferedReader reader = Files.newBufferedReader(segment.file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(SEPARATOR, -1);
+                    try {
+                        if (ADD.equals(parts[0]) && parts.length == 8) {
+                            Entry entry = Entry.fromRecord(parts);
+                            entry.segment = segment;
+                            pending.put(entry.seq, entry);
+                            maxSeq = Math.max(maxSeq, entry.seq);
+                        } else if (DONE.equals(parts[0]) && parts.length == 2) {
+                            pending.remove(Long.parseLong(parts[1]));
+                        } else {
+                            // the tail of a record which was being written on crash
+                            log.warn("Ignoring malformed record in {}: {}", segment.file, line);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Ignoring malformed record in {}: {}", segment.file, line);
+                    }
+                }
+            }
+        }
+
+        for (Entry entry : pending.values()) {
+            entry.segment.pending++;
+        }
+        for (Iterator<Segment> it = segments.values().iterator(); it.hasNext(); ) {
+            Segment segment = it.next();
+            if (segment.pending == 0) {
+                Files.deleteIfExists(segment.file.toPath());
+                it.remove();
+            }
+        }
+        nextSeq.set(maxSeq + 1);
+
+        if (!pending.isEmpty()) {
+            log.info("Replayed {} pending replication operations from {}", pending.size(), dir);
+        }
+    }
+
+    protected void writeLoop() {
+        List<Record> batch = new ArrayList<>();
+        boolean stop = false;
+        try {
+            while (!stop) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                stop = batch.remove(CLOSE);
+                try {
+                    write(batch);
+                    for (Record record : batch) {
+                        record.future.complete(null);
+                    }
+                } catch (IOException e) {
+                    log.error("Unable to write to journal " + dir, e);
+                    closeActiveSegment();
+                    for (Record record : batch) {
+                        record.future.completeExceptionally(e);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } finally {
+            closeActiveSegment();
+            for (Record record : queue) {
+                record.future.completeExceptionally(new IOException("Journal " + dir + " is closed"));
+            }
+        }
+    }
+
+    protected void write(List<Record> batch) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Record record : batch) {
+            if (activeSegment == null || activeSegment.records >= MAX_SEGMENT_RECORDS) {
+                flush(sb);
+                openNextSegment();
+            }
+            sb.append(record.line).append('\n');
+            activeSegment.records++;
+            if (record.added != null) {
+                record.added.segment = activeSegment;
+                activeSegment.pending++;
+            }
+        }
+        flush(sb);
+
+        for (Record record : batch) {
+            Segment segment = record.done != null ? record.done.segment : null;
+            if (segment != null) {
+                segment.pending--;
+                if (segment.pending <= 0 && segment != activeSegment) {
+                    deleteSegment(segment);
+                }
+            }
+        }
+    }
+
+    protected void flush(StringBuilder sb) throws IOException {
+        if (sb.length() == 0) {
+            return;
+        }
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(sb.toString());
+        while (buffer.hasRemaining()) {
+            activeChannel.write(buffer);
+        }
+        activeChannel.force(false);
+        sb.setLength(0);
+    }
+
+    protected void openNextSegment() throws IOException {
+        Segment previous = activeSegment;
+        closeActiveSegment();
+        if (previous != null && previous.pending <= 0) {
+            deleteSegment(previous);
+        }
+
+        long number = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        File file = new File(dir, SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+        activeChannel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSegment = new Segment(number, file);
+        segments.put(number, activeSegment);
+    }
+
+    protected void deleteSegment(Segment segment) throws IOException {
+        Files.deleteIfExists(segment.file.toPath());
+        segments.remove(segment.number);
+    }
+
+    protected void closeActiveSegment() {
+        if (activeChannel != null) {
+            try {
+                activeChannel.close();
+            } catch (IOException e) {
+                log.warn("Unable to close journal segment {}", activeSegment.file, e);
+            }
+            activeChannel = null;
+            activeSegment = null;
+        }
+    }
+}
@@ -42,7 +42,10 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
 import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Handles file download requests to the middleware.
@@ -54,6 +57,8 @@ public class FileDownloadController {
 
     private static final Logger log = LoggerFactory.getLogger(FileDownloadController.class);
 
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
     @Inject
     private UserSessionsAPI userSessions;
 
@@ -85,6 +90,11 @@ public class FileDownloadController {
             response.setIntHeader("Expires", -1);
             response.setHeader("Content-Type", FileTypesHelper.DEFAULT_MIME_TYPE);
 
+            if (fd != null && fd.getSize() != null && request.getHeader("Range") != null) {
+                downloadRange(fd, request.getHeader("Range"), response);
+                return;
+            }
+
             InputStream is = null;
             ServletOutputStream os = null;
             try {
@@ -107,6 +117,52 @@ public class FileDownloadController {
         }
     }
 
+    protected void downloadRange(FileDescriptor fd, String rangeHeader, HttpServletResponse response)
+            throws IOException {
+        long size = fd.getSize();
+        response.setHeader("Accept-Ranges", "bytes");
+
+        Matcher matcher = RANGE_PATTERN.matcher(rangeHeader.trim());
+        long start;
+        long end;
+        if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            if (matcher.group(1).isEmpty()) {
+                // suffix range: the last N bytes
+                start = Math.max(size - Long.parseLong(matcher.group(2)), 0);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(matcher.group(1));
+                end = matcher.group(2).isEmpty() ? size - 1 : Math.min(Long.parseLong(matcher.group(2)), size - 1);
+            }
+        } else {
+            start = end = -1;
+        }
+        if (start < 0 || start > end) {
+            response.setHeader("Content-Range", "bytes */" + size);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+        response.setHeader("Content-Length", String.valueOf(end - start + 1));
+
+        ServletOutputStream os = null;
+        try {
+            os = response.getOutputStream();
+            fileStorage.transferTo(fd, start, end - start + 1, Channels.newChannel(os));
+            os.flush();
+        } catch (FileStorageException e) {
+            log.error("Unable to download file", e);
+            response.sendError(e.getType().getHttpStatus());
+        } catch (Exception ex) {
+            log.error("Unable to download file", ex);
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+    }
+
     protected UserSession getSession(HttpServletRequest request, HttpServletResponse response) throws IOException {
         UUID sessionId;
         try {
@@ -111,4 +111,14 @@ public class ClusterManager implements ClusterManagerMBean {
     public long getReceivedBytes(String className) {
         return className == null ? -1 : clusterManager.getReceivedBytes(className);
     }
+
+    @Override
+    public long getSentBatches(String className) {
+        return className == null ? -1 : clusterManager.getSentBatches(className);
+    }
+
+    @Override
+    public long getAverageSendLatencyMicros(String className) {
+        return className == null ? -1 : clusterManager.getAverageSendLatencyMicros(className);
+    }
 }
@@ -78,4 +78,10 @@ public interface ClusterManagerMBean {
 
     @ManagedOperation(description = "Get received bytes for specified class")
     long getReceivedBytes(String className);
+
+    @ManagedOperation(description = "Get sent batches count for specified class")
+    long getSentBatches(String className);
+
+    @ManagedOperation(description = "Get average send latency in microseconds for specified class")
+    long getAverageSendLatencyMicros(String className);
 }
@@ -148,4 +148,24 @@ public class FileStorage implements FileStorageMBean {
 
         return sb.toString();
     }
+
+    @Override
+    public int getReplicationPendingCount() {
+        FileStorageAPI fileStorageAPI = AppBeans.get(FileStorageAPI.class);
+        if (fileStorageAPI instanceof com.haulmont.cuba.core.app.filestorage.FileStorage) {
+            return ((com.haulmont.cuba.core.app.filestorage.FileStorage) fileStorageAPI).getReplicationPendingCount();
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    public long getReplicationLagMs() {
+        FileStorageAPI fileStorageAPI = AppBeans.get(FileStorageAPI.class);
+        if (fileStorageAPI instanceof com.haulmont.cuba.core.app.filestorage.FileStorage) {
+            return ((com.haulmont.cuba.core.app.filestorage.FileStorage) fileStorageAPI).getReplicationLag();
+        } else {
+            return 0;
+        }
+    }
 }
\ No newline at end of file
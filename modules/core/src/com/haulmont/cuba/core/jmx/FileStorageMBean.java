@@ -38,4 +38,14 @@ public interface FileStorageMBean {
      * @return the list of files in the storage which have no corresponding descriptors in the database
      */
     String findOrphanFiles();
+
+    /**
+     * @return number of files waiting to be copied to or removed from the secondary storages
+     */
+    int getReplicationPendingCount();
+
+    /**
+     * @return age in milliseconds of the oldest operation waiting for replication to the secondary storages
+     */
+    long getReplicationLagMs();
 }
@@ -22,6 +22,7 @@ import com.haulmont.cuba.core.sys.entitycache.QueryCache;
 import com.haulmont.cuba.core.sys.entitycache.QueryCacheManager;
 import com.haulmont.cuba.core.sys.entitycache.QueryKey;
 import com.haulmont.cuba.core.sys.entitycache.QueryResult;
+import com.haulmont.cuba.core.sys.jpql.QueryTreeCache;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
@@ -34,6 +35,8 @@ public class QueryCacheSupport implements QueryCacheSupportMBean {
     protected QueryCache queryCache;
     @Inject
     protected QueryCacheManager queryCacheMgr;
+    @Inject
+    protected QueryTreeCache queryTreeCache;
 
     @Override
     public long getMaxSize() {
@@ -45,6 +48,27 @@ public class QueryCacheSupport implements QueryCacheSupportMBean {
         return queryCache.size();
     }
 
+    @Override
+    public long getParsedQueryCacheSize() {
+        return queryTreeCache.getSize();
+    }
+
+    @Override
+    public long getParsedQueryCacheHitCount() {
+        return queryTreeCache.getHitCount();
+    }
+
+    @Override
+    public long getParsedQueryCacheMissCount() {
+        return queryTreeCache.getMissCount();
+    }
+
+    @Override
+    public String evictParsedQueries() {
+        queryTreeCache.invalidateAll();
+        return "Done";
+    }
+
     @Override
     public String evictAll() {
         queryCacheMgr.invalidateAll(true);
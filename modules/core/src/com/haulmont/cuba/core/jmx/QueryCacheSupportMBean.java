@@ -27,9 +27,21 @@ public interface QueryCacheSupportMBean {
     @ManagedAttribute(description = "Current number of cached queries")
     long getSize();
 
+    @ManagedAttribute(description = "Current number of parsed JPQL queries")
+    long getParsedQueryCacheSize();
+
+    @ManagedAttribute(description = "Number of parsed JPQL queries taken from the cache")
+    long getParsedQueryCacheHitCount();
+
+    @ManagedAttribute(description = "Number of JPQL queries parsed because of cache miss")
+    long getParsedQueryCacheMissCount();
+
     @ManagedOperation(description = "Discard all query results in the cache")
     String evictAll();
 
+    @ManagedOperation(description = "Discard all parsed JPQL queries")
+    String evictParsedQueries();
+
     @ManagedOperation(description = "Discard cached query results for entity")
     @ManagedOperationParameters({
             @ManagedOperationParameter(name = "metaClass", description = "Entity name, e.g. sec$User")
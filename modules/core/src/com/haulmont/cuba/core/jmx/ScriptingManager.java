@@ -18,6 +18,7 @@ package com.haulmont.cuba.core.jmx;
 
 import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.SecurityImpl;
 import com.haulmont.cuba.security.app.Authenticated;
 import groovy.lang.Binding;
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -26,6 +27,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Component("cuba_ScriptingManagerMBean")
 public class ScriptingManager implements ScriptingManagerMBean {
@@ -47,6 +50,9 @@ public class ScriptingManager implements ScriptingManagerMBean {
     @Inject
     protected DataManager dataManager;
 
+    @Inject
+    protected Security security;
+
     @Override
     public String getRootPath() {
         return configuration.getConfig(GlobalConfig.class).getConfDir();
@@ -68,4 +74,25 @@ public class ScriptingManager implements ScriptingManagerMBean {
             return ExceptionUtils.getStackTrace(e);
         }
     }
+
+    @Override
+    public String printConstraintStatistics() {
+        if (!(security instanceof SecurityImpl)) {
+            return "Constraint statistics are not supported by " + security.getClass().getName();
+        }
+        List<SecurityImpl.ConstraintStatistics> statistics = ((SecurityImpl) security).getConstraintStatistics();
+        if (statistics.isEmpty()) {
+            return "No in-memory constraints have been checked";
+        }
+        return statistics.stream()
+                .map(Object::toString)
+                .collect(Collectors.joining("\n"));
+    }
+
+    @Override
+    public void resetConstraintStatistics() {
+        if (security instanceof SecurityImpl) {
+            ((SecurityImpl) security).resetConstraintStatistics();
+        }
+    }
 }
\ No newline at end of file
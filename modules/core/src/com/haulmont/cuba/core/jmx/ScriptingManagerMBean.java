@@ -35,4 +35,10 @@ public interface ScriptingManagerMBean {
             {@ManagedOperationParameter(name = "scriptName",
                     description = "path to the script relative to conf dir or to the classpath root")})
     String runGroovyScript(String scriptName);
+
+    @ManagedOperation(description = "Print execution statistics of in-memory row-level constraints, slowest first")
+    String printConstraintStatistics();
+
+    @ManagedOperation(description = "Reset execution statistics of in-memory row-level constraints")
+    void resetConstraintStatistics();
 }
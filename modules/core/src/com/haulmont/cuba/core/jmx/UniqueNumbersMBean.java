@@ -36,4 +36,19 @@ public interface UniqueNumbersMBean {
 
     @ManagedOperationParameters({@ManagedOperationParameter(name = "domain", description = "")})
     long getNextNumber(String domain);
+
+    /**
+     * @return number of blocks of entity ids requested from the database sequences
+     */
+    long getNumberIdBlockRefillsCount();
+
+    /**
+     * @return number of times entity id generation had to wait for the next block of ids
+     */
+    long getNumberIdBlockWaitsCount();
+
+    /**
+     * @return total time in milliseconds spent waiting for the next blocks of entity ids
+     */
+    long getNumberIdBlockWaitTimeMs();
 }
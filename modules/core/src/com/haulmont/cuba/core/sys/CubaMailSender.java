@@ -20,24 +20,42 @@ package com.haulmont.cuba.core.sys;
 import com.haulmont.cuba.core.app.EmailerConfig;
 import com.haulmont.cuba.core.global.Configuration;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 
 import org.springframework.stereotype.Component;
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import javax.mail.Address;
+import javax.mail.AuthenticationFailedException;
 import javax.mail.Session;
-import java.util.HashSet;
-import java.util.Properties;
-import java.util.Set;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.*;
 
 @Component(CubaMailSender.NAME)
 public class CubaMailSender extends JavaMailSenderImpl {
 
     public static final String NAME = "cuba_MailSender";
 
+    private static final Logger log = LoggerFactory.getLogger(CubaMailSender.class);
+
     protected EmailerConfig config;
 
     private boolean propertiesInitialized;
 
+    protected GenericObjectPool<Transport> transportPool;
+
     @Inject
     public void setConfiguration(Configuration configuration) {
         config = configuration.getConfig(EmailerConfig.class);
@@ -95,6 +113,128 @@ public class CubaMailSender extends JavaMailSenderImpl {
         return super.getSession();
     }
 
+    /**
+     * Sends messages through a connection taken from the pool of open SMTP connections, so the connection setup,
+     * TLS handshake and authentication are not repeated for each message.
+     */
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        GenericObjectPool<Transport> pool = getTransportPool();
+        if (pool == null) {
+            super.doSend(mimeMessages, originalMessages);
+            return;
+        }
+
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+
+        Transport transport;
+        try {
+            transport = pool.borrowObject();
+        } catch (AuthenticationFailedException e) {
+            throw new MailAuthenticationException(e);
+        } catch (Exception e) {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                Object original = originalMessages != null ? originalMessages[i] : mimeMessages[i];
+                failedMessages.put(original, e);
+            }
+            throw new MailSendException("Mail server connection failed", e, failedMessages);
+        }
+
+        boolean broken = false;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                MimeMessage mimeMessage = mimeMessages[i];
+                try {
+                    if (mimeMessage.getSentDate() == null) {
+                        mimeMessage.setSentDate(new Date());
+                    }
+                    String messageId = mimeMessage.getMessageID();
+                    mimeMessage.saveChanges();
+                    if (messageId != null) {
+                        // preserve explicitly specified message id
+                        mimeMessage.setHeader("Message-ID", messageId);
+                    }
+                    Address[] addresses = mimeMessage.getAllRecipients();
+                    transport.sendMessage(mimeMessage, addresses != null ? addresses : new Address[0]);
+                } catch (Exception e) {
+                    // the state of the SMTP conversation is unknown, don't give the connection to the next sender
+                    broken = true;
+                    Object original = originalMessages != null ? originalMessages[i] : mimeMessage;
+                    failedMessages.put(original, e);
+                }
+            }
+        } finally {
+            if (broken) {
+                invalidateTransport(pool, transport);
+            } else {
+                pool.returnObject(transport);
+            }
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    @Nullable
+    protected synchronized GenericObjectPool<Transport> getTransportPool() {
+        int poolSize = config.getSmtpConnectionPoolSize();
+        if (poolSize <= 0) {
+            return null;
+        }
+        if (transportPool == null) {
+            GenericObjectPoolConfig<Transport> poolConfig = new GenericObjectPoolConfig<>();
+            poolConfig.setMaxTotal(poolSize);
+            poolConfig.setMaxIdle(poolSize);
+            poolConfig.setMinIdle(0);
+            // SMTP servers drop idle connections, check the connection with NOOP before use
+            poolConfig.setTestOnBorrow(true);
+            long idleTimeoutMillis = config.getSmtpConnectionIdleTimeoutSec() * 1000L;
+            poolConfig.setMinEvictableIdleTimeMillis(idleTimeoutMillis);
+            poolConfig.setTimeBetweenEvictionRunsMillis(Math.max(idleTimeoutMillis / 2, 1000L));
+            poolConfig.setJmxEnabled(false);
+
+            transportPool = new GenericObjectPool<>(new BasePooledObjectFactory<Transport>() {
+                @Override
+                public Transport create() throws Exception {
+                    return connectTransport();
+                }
+
+                @Override
+                public PooledObject<Transport> wrap(Transport transport) {
+                    return new DefaultPooledObject<>(transport);
+                }
+
+                @Override
+                public boolean validateObject(PooledObject<Transport> p) {
+                    return p.getObject().isConnected();
+                }
+
+                @Override
+                public void destroyObject(PooledObject<Transport> p) throws Exception {
+                    p.getObject().close();
+                }
+            }, poolConfig);
+        }
+        return transportPool;
+    }
+
+    protected void invalidateTransport(GenericObjectPool<Transport> pool, Transport transport) {
+        try {
+            pool.invalidateObject(transport);
+        } catch (Exception e) {
+            log.debug("Error closing SMTP connection", e);
+        }
+    }
+
+    @PreDestroy
+    protected synchronized void closeTransportPool() {
+        if (transportPool != null) {
+            transportPool.close();
+            transportPool = null;
+        }
+    }
+
     protected Properties createJavaMailProperties() {
         long connectionTimeoutMillis = config.getSmtpConnectionTimeoutSec() * 1000;
         long timeoutMillis = config.getSmtpTimeoutSec() * 1000;
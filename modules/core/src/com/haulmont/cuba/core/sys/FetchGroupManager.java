@@ -17,11 +17,14 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.haulmont.bali.util.Preconditions;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
 import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.chile.core.model.Range;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.BaseUuidEntity;
 import com.haulmont.cuba.core.entity.EmbeddableEntity;
 import com.haulmont.cuba.core.entity.Entity;
@@ -39,6 +42,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.ClassUtils;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -60,11 +64,22 @@ public class FetchGroupManager {
     @Inject
     private ViewRepository viewRepository;
 
+    @Inject
+    private ServerConfig serverConfig;
+
+    private Cache<FetchGroupKey, FetchGroupPlan> planCache;
+
+    @PostConstruct
+    private void init() {
+        planCache = CacheBuilder.newBuilder()
+                .maximumSize(serverConfig.getFetchGroupCacheMaxSize())
+                .build();
+    }
+
     public void setView(JpaQuery query, String queryString, @Nullable View view, boolean singleResultExpected) {
         Preconditions.checkNotNullArgument(query, "query is null");
         if (view != null) {
-            AttributeGroup ag = view.loadPartialEntities() ? new FetchGroup() : new LoadGroup();
-            applyView(query, queryString, ag, view, singleResultExpected);
+            applyView(query, queryString, null, view, singleResultExpected);
         } else {
             query.setHint(QueryHints.FETCH_GROUP, null);
         }
@@ -76,37 +91,48 @@ public class FetchGroupManager {
 
         Map<String, Object> hints = query.getHints();
         AttributeGroup ag = null;
-        if (view.loadPartialEntities()) {
-            if (hints != null)
+        if (hints != null) {
+            if (view.loadPartialEntities()) {
                 ag = (FetchGroup) hints.get(QueryHints.FETCH_GROUP);
-            if (ag == null)
-                ag = new FetchGroup();
-        } else {
-            if (hints != null)
+            } else {
                 ag = (LoadGroup) hints.get(QueryHints.LOAD_GROUP);
-            if (ag == null)
-                ag = new LoadGroup();
+            }
         }
 
         applyView(query, queryString, ag, view, singleResultExpected);
     }
 
-    private void applyView(JpaQuery query, String queryString, AttributeGroup attrGroup, View view,
-                           boolean singleResultExpected) {
+    /**
+     * Discards calculated fetch groups. Invoked when views are redeployed.
+     */
+    public void invalidateCache() {
+        if (planCache != null) {
+            planCache.invalidateAll();
+        }
+    }
 
-        boolean useFetchGroup = attrGroup instanceof FetchGroup;
+    private void applyView(JpaQuery query, String queryString, @Nullable AttributeGroup attrGroup, View view,
+                           boolean singleResultExpected) {
 
-        FetchGroupDescription description = calculateFetchGroup(queryString, view, singleResultExpected, useFetchGroup);
+        boolean useFetchGroup = view.loadPartialEntities();
 
-        if (attrGroup instanceof FetchGroup)
-            ((FetchGroup) attrGroup).setShouldLoadAll(true);
+        FetchGroupPlan plan = getPlan(queryString, view, singleResultExpected, useFetchGroup);
+        FetchGroupDescription description = plan.description;
 
         if (log.isTraceEnabled())
             log.trace((useFetchGroup ? "Fetch" : "Load") + " group for " + view + ":\n" + description.getAttributes().stream().collect(Collectors.joining("\n")));
-        for (String attribute : description.getAttributes()) {
-            attrGroup.addAttribute(attribute);
+        if (attrGroup == null) {
+            // the query gets its own copy of the group, as the group is bound to the query on execution
+            attrGroup = plan.attributeGroup.clone();
+        } else {
+            for (String attribute : description.getAttributes()) {
+                attrGroup.addAttribute(attribute);
+            }
         }
 
+        if (attrGroup instanceof FetchGroup)
+            ((FetchGroup) attrGroup).setShouldLoadAll(true);
+
         MetaClass metaClass = metadata.getClassNN(view.getEntityClass());
         if (!metadataTools.isCacheable(metaClass)) {
             query.setHint(useFetchGroup ? QueryHints.FETCH_GROUP : QueryHints.LOAD_GROUP, attrGroup);
@@ -128,10 +154,66 @@ public class FetchGroupManager {
         }
     }
 
+    /**
+     * Returns the fetch group description for the query and view. Descriptions are calculated once for a combination
+     * of the query string, view structure and flags, and then taken from the cache.
+     *
+     * @return read-only description
+     */
     public FetchGroupDescription calculateFetchGroup(String queryString,
                                                      View view,
                                                      boolean singleResultExpected,
                                                      boolean useFetchGroup) {
+        return getPlan(queryString, view, singleResultExpected, useFetchGroup).description;
+    }
+
+    private FetchGroupPlan getPlan(String queryString, View view, boolean singleResultExpected, boolean useFetchGroup) {
+        FetchGroupKey key = new FetchGroupKey(queryString, getViewSignature(view), singleResultExpected, useFetchGroup);
+        FetchGroupPlan plan = planCache.getIfPresent(key);
+        if (plan == null) {
+            FetchGroupDescription description = doCalculateFetchGroup(queryString, view, singleResultExpected, useFetchGroup);
+
+            AttributeGroup attributeGroup = useFetchGroup ? new FetchGroup() : new LoadGroup();
+            for (String attribute : description.getAttributes()) {
+                attributeGroup.addAttribute(attribute);
+            }
+
+            plan = new FetchGroupPlan(description.makeReadOnly(), attributeGroup);
+            planCache.put(key, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Returns the string identifying the view structure: views are copied on each retrieval from the repository and
+     * created in code, so they can't be compared by identity or by name.
+     */
+    private String getViewSignature(View view) {
+        StringBuilder sb = new StringBuilder();
+        appendViewSignature(sb, view);
+        return sb.toString();
+    }
+
+    private void appendViewSignature(StringBuilder sb, View view) {
+        sb.append(view.getEntityClass().getName());
+        if (view.loadPartialEntities()) {
+            sb.append('!');
+        }
+        sb.append('{');
+        for (ViewProperty property : view.getProperties()) {
+            sb.append(property.getName()).append(':').append(property.getFetchMode());
+            if (property.getView() != null) {
+                appendViewSignature(sb, property.getView());
+            }
+            sb.append(',');
+        }
+        sb.append('}');
+    }
+
+    private FetchGroupDescription doCalculateFetchGroup(String queryString,
+                                                        View view,
+                                                        boolean singleResultExpected,
+                                                        boolean useFetchGroup) {
         Set<FetchGroupField> fetchGroupFields = new LinkedHashSet<>();
         processView(view, null, fetchGroupFields, useFetchGroup);
 
@@ -454,6 +536,53 @@ public class FetchGroupManager {
         return metadataTools.isCacheable(metaClass) ? FetchMode.UNDEFINED : fetchMode;
     }
 
+    private static class FetchGroupKey {
+        private final String queryString;
+        private final String viewSignature;
+        private final boolean singleResultExpected;
+        private final boolean useFetchGroup;
+
+        private FetchGroupKey(String queryString, String viewSignature, boolean singleResultExpected, boolean useFetchGroup) {
+            this.queryString = queryString;
+            this.viewSignature = viewSignature;
+            this.singleResultExpected = singleResultExpected;
+            this.useFetchGroup = useFetchGroup;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            FetchGroupKey that = (FetchGroupKey) o;
+
+            return singleResultExpected == that.singleResultExpected
+                    && useFetchGroup == that.useFetchGroup
+                    && queryString.equals(that.queryString)
+                    && viewSignature.equals(that.viewSignature);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = queryString.hashCode();
+            result = 31 * result + viewSignature.hashCode();
+            result = 31 * result + (singleResultExpected ? 1 : 0);
+            result = 31 * result + (useFetchGroup ? 1 : 0);
+            return result;
+        }
+    }
+
+    private static class FetchGroupPlan {
+        private final FetchGroupDescription description;
+        // template copied for each query
+        private final AttributeGroup attributeGroup;
+
+        private FetchGroupPlan(FetchGroupDescription description, AttributeGroup attributeGroup) {
+            this.description = description;
+            this.attributeGroup = attributeGroup;
+        }
+    }
+
     protected static class FetchGroupField {
         private final MetaClass metaClass;
         private FetchMode fetchMode;
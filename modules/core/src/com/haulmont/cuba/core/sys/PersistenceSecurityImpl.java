@@ -17,6 +17,9 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaProperty;
@@ -25,6 +28,7 @@ import com.haulmont.cuba.core.Persistence;
 import com.haulmont.cuba.core.PersistenceSecurity;
 import com.haulmont.cuba.core.Query;
 import com.haulmont.cuba.core.app.AttributeSecuritySupport;
+import com.haulmont.cuba.core.app.ServerConfig;
 import com.haulmont.cuba.core.entity.BaseEntityInternalAccess;
 import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
 import com.haulmont.cuba.core.entity.Entity;
@@ -38,6 +42,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import java.io.Serializable;
 import java.util.*;
@@ -70,6 +75,16 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     @Inject
     protected GlobalConfig globalConfig;
 
+    // rewritten queries keyed by the source query and the constraints applied to it
+    protected Cache<ConstrainedQueryKey, ConstrainedQuery> constrainedQueries;
+
+    @PostConstruct
+    protected void init() {
+        constrainedQueries = CacheBuilder.newBuilder()
+                .maximumSize(configuration.getConfig(ServerConfig.class).getConstraintQueryCacheMaxSize())
+                .build();
+    }
+
     @Override
     public boolean applyConstraints(Query query) {
         QueryParser parser = QueryTransformerFactory.createParser(query.getQueryString());
@@ -83,19 +98,33 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
         if (constraints.isEmpty())
             return false;
 
-        QueryTransformer transformer = QueryTransformerFactory.createTransformer(query.getQueryString());
-
-        for (ConstraintData constraint : constraints) {
-            processConstraint(transformer, constraint, entityName);
-        }
-        query.setQueryString(transformer.getResult());
+        ConstrainedQuery constrainedQuery = getConstrainedQuery(query.getQueryString(), entityName, constraints);
+        query.setQueryString(constrainedQuery.queryString);
 
-        for (String paramName : transformer.getAddedParams()) {
+        for (String paramName : constrainedQuery.addedParams) {
             setQueryParam(query, paramName);
         }
         return true;
     }
 
+    protected ConstrainedQuery getConstrainedQuery(String queryString, String entityName,
+                                                   List<ConstraintData> constraints) {
+        // the key contains the constraint expressions, so changed constraints of the access group lead to new entries
+        ConstrainedQueryKey key = new ConstrainedQueryKey(queryString, constraints);
+        ConstrainedQuery constrainedQuery = constrainedQueries.getIfPresent(key);
+        if (constrainedQuery == null) {
+            QueryTransformer transformer = QueryTransformerFactory.createTransformer(queryString);
+
+            for (ConstraintData constraint : constraints) {
+                processConstraint(transformer, constraint, entityName);
+            }
+
+            constrainedQuery = new ConstrainedQuery(transformer.getResult(), transformer.getAddedParams());
+            constrainedQueries.put(key, constrainedQuery);
+        }
+        return constrainedQuery;
+    }
+
     @Override
     public void setQueryParam(Query query, String paramName) {
         if (paramName.startsWith(CONSTRAINT_PARAM_SESSION_ATTR)) {
@@ -130,10 +159,14 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
 
     @Override
     public boolean filterByConstraints(Collection<Entity> entities) {
+        Set<Entity> notPermitted = getNotPermitted(entities, this::isInMemoryReadConstraint);
+        if (notPermitted.isEmpty()) {
+            return false;
+        }
         boolean filtered = false;
         for (Iterator<Entity> iterator = entities.iterator(); iterator.hasNext(); ) {
             Entity entity = iterator.next();
-            if (!isPermittedInMemory(entity)) {
+            if (notPermitted.contains(entity)) {
                 //we ignore situations when the collection is immutable
                 iterator.remove();
                 filtered = true;
@@ -375,10 +408,53 @@ public class PersistenceSecurityImpl extends SecurityImpl implements Persistence
     }
 
     protected boolean isPermittedInMemory(Entity entity) {
-        return isPermitted(entity, constraint ->
-                constraint.getCheckType().memory()
-                        && (constraint.getOperationType() == ConstraintOperationType.READ
-                        || constraint.getOperationType() == ConstraintOperationType.ALL));
+        return isPermitted(entity, this::isInMemoryReadConstraint);
+    }
+
+    protected boolean isInMemoryReadConstraint(ConstraintData constraint) {
+        return constraint.getCheckType().memory()
+                && (constraint.getOperationType() == ConstraintOperationType.READ
+                || constraint.getOperationType() == ConstraintOperationType.ALL);
+    }
+
+    protected static class ConstrainedQueryKey {
+        protected final String queryString;
+        protected final List<String> constraints;
+
+        public ConstrainedQueryKey(String queryString, List<ConstraintData> constraints) {
+            this.queryString = queryString;
+            List<String> list = new ArrayList<>(constraints.size() * 2);
+            for (ConstraintData constraint : constraints) {
+                list.add(StringUtils.defaultString(constraint.getJoin()));
+                list.add(StringUtils.defaultString(constraint.getWhereClause()));
+            }
+            this.constraints = list;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ConstrainedQueryKey that = (ConstrainedQueryKey) o;
+
+            return queryString.equals(that.queryString) && constraints.equals(that.constraints);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * queryString.hashCode() + constraints.hashCode();
+        }
+    }
+
+    protected static class ConstrainedQuery {
+        protected final String queryString;
+        protected final List<String> addedParams;
+
+        public ConstrainedQuery(String queryString, Collection<String> addedParams) {
+            this.queryString = queryString;
+            this.addedParams = ImmutableList.copyOf(addedParams);
+        }
     }
 
     protected static class EntityId {
@@ -17,10 +17,32 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.View;
 import com.haulmont.cuba.core.global.ViewRepository;
 
 import org.springframework.stereotype.Component;
 
 @Component(ViewRepository.NAME)
 public class ViewRepositoryImpl extends AbstractViewRepository implements ViewRepository {
+
+    @Override
+    protected void init() {
+        super.init();
+        invalidateFetchGroups();
+    }
+
+    @Override
+    protected void storeView(MetaClass metaClass, View view) {
+        super.storeView(metaClass, view);
+        invalidateFetchGroups();
+    }
+
+    protected void invalidateFetchGroups() {
+        // fetch groups depend on the views of related entities
+        if (AppContext.getApplicationContext() != null) {
+            AppBeans.get(FetchGroupManager.class).invalidateCache();
+        }
+    }
 }
\ No newline at end of file
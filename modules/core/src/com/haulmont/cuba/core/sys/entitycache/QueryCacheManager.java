@@ -17,14 +17,19 @@
 package com.haulmont.cuba.core.sys.entitycache;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetadataObject;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Persistence;
+import com.haulmont.cuba.core.Query;
 import com.haulmont.cuba.core.app.ClusterListenerAdapter;
 import com.haulmont.cuba.core.app.ClusterManagerAPI;
+import com.haulmont.cuba.core.app.IdempotentClusterMessage;
 import com.haulmont.cuba.core.entity.BaseGenericIdEntity;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.entity.IdProxy;
 import com.haulmont.cuba.core.global.Metadata;
 import com.haulmont.cuba.core.global.View;
 import org.slf4j.Logger;
@@ -33,9 +38,9 @@ import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.persistence.Cache;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.TypedQuery;
-import java.io.Serializable;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -44,6 +49,11 @@ public class QueryCacheManager {
 
     public static final String NAME = "cuba_QueryCacheManager";
 
+    /**
+     * Maximum number of identifiers in the IN clause of a query loading cached results missing in the entity cache.
+     */
+    public static final int LOAD_BATCH_SIZE = 500;
+
     @Inject
     protected QueryCacheConfig queryCacheConfig;
     @Inject
@@ -96,8 +106,12 @@ public class QueryCacheManager {
             if (!metadata.getTools().isCacheable(metaClass)) {
                 log.warn("Using cacheable query without entity cache for {}", queryResult.getType());
             }
-            for (Object id : queryResult.getResult()) {
-                resultList.add(em.find(metaClass.getJavaClass(), id, views.toArray(new View[views.size()])));
+            if (metadata.getTools().hasCompositePrimaryKey(metaClass)) {
+                for (Object id : queryResult.getResult()) {
+                    resultList.add(em.find(metaClass.getJavaClass(), id, views.toArray(new View[views.size()])));
+                }
+            } else {
+                resultList.addAll((List<T>) loadByIds(em, metaClass, queryResult.getResult(), views));
             }
         } else {
             log.debug("Query results are not found in cache: {}", queryKey.printDescription());
@@ -105,6 +119,62 @@ public class QueryCacheManager {
         return resultList;
     }
 
+    /**
+     * Loads entities by the cached identifiers. Entities present in the entity cache are found one by one without
+     * database round trips, the rest are loaded by queries with up to {@link #LOAD_BATCH_SIZE} identifiers.
+     *
+     * @return entities in the order of {@code ids}, with nulls in place of entities which no longer exist
+     */
+    @SuppressWarnings("unchecked")
+    protected List<Entity> loadByIds(EntityManager em, MetaClass metaClass, List ids, List<View> views) {
+        Class<Entity> javaClass = metaClass.getJavaClass();
+        View[] viewArray = views.toArray(new View[views.size()]);
+        Cache cache = em.getDelegate().getEntityManagerFactory().getCache();
+
+        Map<Object, Entity> loaded = new HashMap<>();
+        List<Object> missed = new ArrayList<>();
+        for (Object id : ids) {
+            Object realId = getRealId(id);
+            if (loaded.containsKey(realId)) {
+                continue;
+            }
+            if (cache.contains(javaClass, realId)) {
+                loaded.put(realId, em.find(javaClass, id, viewArray));
+            } else {
+                loaded.put(realId, null);
+                missed.add(realId);
+            }
+        }
+
+        if (!missed.isEmpty()) {
+            log.debug("Loading {} of {} cached query results missing in entity cache", missed.size(), ids.size());
+            String pkName = metadata.getTools().getPrimaryKeyName(metaClass);
+            if (pkName == null)
+                throw new IllegalStateException("Cannot determine PK name for entity " + metaClass);
+            String queryString = String.format("select e from %s e where e.%s in :ids", metaClass.getName(), pkName);
+            for (List<Object> batch : Lists.partition(missed, LOAD_BATCH_SIZE)) {
+                Query query = em.createQuery(queryString);
+                query.setParameter("ids", batch);
+                for (View view : views) {
+                    query.addView(view);
+                }
+                for (Object entity : query.getResultList()) {
+                    loaded.put(getRealId(((Entity) entity).getId()), (Entity) entity);
+                }
+            }
+        }
+
+        List<Entity> result = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            result.add(loaded.get(getRealId(id)));
+        }
+        return result;
+    }
+
+    protected Object getRealId(Object id) {
+        return id instanceof IdProxy ? ((IdProxy) id).getNN() : id;
+    }
+
     /**
      * Get single query results from query cache by specified {@code queryKey}
      * If query is cached and no results found exception is thrown
@@ -272,7 +342,7 @@ public class QueryCacheManager {
         return newRelatedTypes;
     }
 
-    protected static class InvalidateQueryCacheMsg implements Serializable {
+    protected static class InvalidateQueryCacheMsg implements IdempotentClusterMessage {
         private static final long serialVersionUID = -9099037380378341477L;
 
         protected Set<String> typeNames;
@@ -290,5 +360,22 @@ public class QueryCacheManager {
         public InvalidateQueryCacheMsg(QueryKey queryKey) {
             this.queryKey = queryKey;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            InvalidateQueryCacheMsg that = (InvalidateQueryCacheMsg) o;
+
+            return invalidateAll == that.invalidateAll
+                    && Objects.equals(typeNames, that.typeNames)
+                    && Objects.equals(queryKey, that.queryKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(typeNames, queryKey, invalidateAll);
+        }
     }
 }
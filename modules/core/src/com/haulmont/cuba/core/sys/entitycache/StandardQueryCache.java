@@ -18,8 +18,10 @@ package com.haulmont.cuba.core.sys.entitycache;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -29,16 +31,23 @@ import javax.inject.Inject;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+/**
+ * Standard implementation of {@link QueryCache} based on Guava cache.
+ * <p>
+ * Keeps two secondary indexes: related entity type &rarr; query keys and query id &rarr; query key.
+ * Both indexes are pruned by the cache removal listener, so entries evicted by the cache
+ * do not remain in the indexes.
+ */
 @Component(QueryCache.NAME)
 public class StandardQueryCache implements QueryCache {
 
     protected Cache<QueryKey, QueryResult> data;
-    protected ConcurrentMap<String, CopyOnWriteArrayList<QueryKey>> typeIndex = new ConcurrentHashMap<>();
+    protected ConcurrentMap<String, Set<QueryKey>> typeIndex = new ConcurrentHashMap<>();
+    protected ConcurrentMap<UUID, QueryKey> idIndex = new ConcurrentHashMap<>();
     protected ReadWriteLock lock = new ReentrantReadWriteLock();
 
     @Inject
@@ -48,7 +57,11 @@ public class StandardQueryCache implements QueryCache {
 
     @PostConstruct
     protected void init() {
-        data = CacheBuilder.newBuilder().maximumSize(queryCacheConfig.getQueryCacheMaxSize()).build();
+        RemovalListener<QueryKey, QueryResult> removalListener = this::onRemoval;
+        data = CacheBuilder.newBuilder()
+                .maximumSize(queryCacheConfig.getQueryCacheMaxSize())
+                .removalListener(removalListener)
+                .build();
     }
 
     @Override
@@ -61,16 +74,11 @@ public class StandardQueryCache implements QueryCache {
         Lock readLock = lock.readLock();
         readLock.lock();
         try {
-            data.put(queryKey, queryResult);
+            // drop the previous entry with the same key, so that its index records are removed by the listener
+            data.invalidate(queryKey);
 
-            for (String type : queryResult.getRelatedTypes()) {
-                CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(type);
-                if (keys == null) {
-                    typeIndex.putIfAbsent(type, new CopyOnWriteArrayList<>());
-                    keys = typeIndex.get(type);
-                }
-                keys.add(queryKey);
-            }
+            addToIndex(queryKey, queryResult);
+            data.put(queryKey, queryResult);
         } finally {
             readLock.unlock();
         }
@@ -78,13 +86,8 @@ public class StandardQueryCache implements QueryCache {
 
     @Override
     public QueryKey findQueryKeyById(UUID queryId) {
-        Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
-        for (QueryKey key : keys) {
-            if (Objects.equals(queryId, key.getId())) {
-                return key;
-            }
-        }
-        return null;
+        if (queryId == null) return null;
+        return idIndex.get(queryId);
     }
 
     @Override
@@ -104,10 +107,7 @@ public class StandardQueryCache implements QueryCache {
         Lock readLock = lock.readLock();
         readLock.lock();
         try {
-            CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-            if (keys == null) return;
-            log.debug("Invalidate cache for type {}", typeName);
-            Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
+            invalidateByType(typeName);
         } finally {
             readLock.unlock();
         }
@@ -118,13 +118,7 @@ public class StandardQueryCache implements QueryCache {
         Lock readLock = lock.readLock();
         readLock.lock();
         try {
-            typeNames.forEach(typeName -> {
-                        CopyOnWriteArrayList<QueryKey> keys = typeIndex.get(typeName);
-                        if (keys == null) return;
-                        log.debug("Invalidate cache for type {}", typeName);
-                        Arrays.stream(keys.toArray()).forEach(it -> data.invalidate(it));
-                    }
-            );
+            typeNames.forEach(this::invalidateByType);
         } finally {
             readLock.unlock();
         }
@@ -135,18 +129,15 @@ public class StandardQueryCache implements QueryCache {
         Lock readLock = lock.readLock();
         readLock.lock();
         try {
-            Set<QueryKey> keys = Sets.newHashSet(data.asMap().keySet());
-            for (QueryKey key : keys) {
-                if (Objects.equals(queryId, key.getId())) {
-                    log.debug("Invalidate query by identifier {}", queryId);
-                    data.invalidate(key);
-                    return key;
-                }
+            QueryKey key = findQueryKeyById(queryId);
+            if (key != null) {
+                log.debug("Invalidate query by identifier {}", queryId);
+                data.invalidate(key);
             }
+            return key;
         } finally {
             readLock.unlock();
         }
-        return null;
     }
 
     @Override
@@ -157,6 +148,7 @@ public class StandardQueryCache implements QueryCache {
             log.debug("Invalidate all cache");
             data.invalidateAll();
             typeIndex.clear();
+            idIndex.clear();
         } finally {
             writeLock.unlock();
         }
@@ -176,4 +168,49 @@ public class StandardQueryCache implements QueryCache {
     public Map<QueryKey, QueryResult> asMap() {
         return Maps.newHashMap(data.asMap());
     }
+
+    protected void invalidateByType(String typeName) {
+        Set<QueryKey> keys = typeIndex.get(typeName);
+        if (keys == null) return;
+        log.debug("Invalidate cache for type {}", typeName);
+        // removal listener modifies the index set, so invalidate a snapshot of it
+        data.invalidateAll(new ArrayList<>(keys));
+    }
+
+    protected void addToIndex(QueryKey queryKey, QueryResult queryResult) {
+        if (queryKey.getId() != null) {
+            idIndex.put(queryKey.getId(), queryKey);
+        }
+        for (String type : queryResult.getRelatedTypes()) {
+            typeIndex.compute(type, (t, keys) -> {
+                if (keys == null) {
+                    keys = ConcurrentHashMap.newKeySet();
+                }
+                keys.add(queryKey);
+                return keys;
+            });
+        }
+    }
+
+    protected void removeFromIndex(QueryKey queryKey, QueryResult queryResult) {
+        if (queryKey.getId() != null) {
+            idIndex.remove(queryKey.getId(), queryKey);
+        }
+        if (queryResult != null) {
+            for (String type : queryResult.getRelatedTypes()) {
+                typeIndex.computeIfPresent(type, (t, keys) -> {
+                    keys.remove(queryKey);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+        }
+    }
+
+    protected void onRemoval(RemovalNotification<QueryKey, QueryResult> notification) {
+        // the entry is still present in the cache if its value was replaced
+        if (notification.getCause() == RemovalCause.REPLACED || notification.getKey() == null) {
+            return;
+        }
+        removeFromIndex(notification.getKey(), notification.getValue());
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.SecurityContext;
+import com.haulmont.cuba.core.sys.UserInvocationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Executes batches of service invocations on middleware. Exported as {@code cuba_BatchInvoker} in
+ * {@code remoting-spring.xml}.
+ * <p>
+ * The bean is not a service itself, so each invocation in a batch is handled by the service interceptor as a separate
+ * client request: the user session is checked and exceptions are wrapped in {@code RemoteException}.
+ */
+public class BatchInvokerBean implements BatchInvoker {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchInvokerBean.class);
+
+    protected ExecutorService executor;
+
+    public BatchInvokerBean() {
+        Configuration configuration = AppBeans.get(Configuration.NAME);
+        int threads = configuration.getConfig(ServerConfig.class).getBatchInvocationThreads();
+        executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("BatchInvoker-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public List<RemoteInvocationResult> invoke(List<BatchedInvocation> invocations, boolean parallel) {
+        log.trace("Invoking batch of {} invocations, parallel={}", invocations.size(), parallel);
+
+        List<RemoteInvocationResult> results = new ArrayList<>(invocations.size());
+        if (!parallel || invocations.size() < 2) {
+            for (BatchedInvocation invocation : invocations) {
+                results.add(invoke(invocation));
+            }
+            return results;
+        }
+
+        SecurityContext securityContext = AppContext.getSecurityContext();
+        UUID sessionId = securityContext != null ? securityContext.getSessionId() : null;
+        Locale locale = UserInvocationContext.getRequestScopeLocale(sessionId);
+        TimeZone timeZone = UserInvocationContext.getRequestScopeTimeZone(sessionId);
+        String address = UserInvocationContext.getRequestScopeAddress(sessionId);
+        String clientInfo = UserInvocationContext.getRequestScopeClientInfo(sessionId);
+        boolean hasRequestScopeInfo = locale != null || timeZone != null || address != null || clientInfo != null;
+
+        List<Future<RemoteInvocationResult>> futures = new ArrayList<>(invocations.size());
+        for (BatchedInvocation invocation : invocations) {
+            futures.add(executor.submit(() -> {
+                AppContext.setSecurityContext(sessionId != null ? new SecurityContext(sessionId) : null);
+                if (hasRequestScopeInfo) {
+                    UserInvocationContext.setRequestScopeInfo(sessionId, locale, timeZone, address, clientInfo);
+                }
+                try {
+                    return invoke(invocation);
+                } finally {
+                    AppContext.setSecurityContext(null);
+                    UserInvocationContext.clearRequestScopeInfo();
+                }
+            }));
+        }
+
+        try {
+            for (Future<RemoteInvocationResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    results.add(new RemoteInvocationResult(e.getCause()));
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for batch invocation results", e);
+        }
+        return results;
+    }
+
+    protected RemoteInvocationResult invoke(BatchedInvocation invocation) {
+        try {
+            Object service = getService(invocation.getServiceName());
+            return new RemoteInvocationResult(invocation.getInvocation().invoke(service));
+        } catch (Throwable e) {
+            return new RemoteInvocationResult(e);
+        }
+    }
+
+    protected Object getService(String name) {
+        ApplicationContext context = AppContext.getApplicationContext();
+        // only services can be invoked remotely
+        if (!context.containsBean(name) || context.findAnnotationOnBean(name, Service.class) == null) {
+            throw new IllegalArgumentException("Service not found: " + name);
+        }
+        return context.getBean(name);
+    }
+}
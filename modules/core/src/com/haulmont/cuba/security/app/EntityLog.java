@@ -77,6 +77,8 @@ public class EntityLog implements EntityLogAPI {
     protected DataManager dataManager;
     @Inject
     protected ServerConfig serverConfig;
+    @Inject
+    protected EntityLogWriter entityLogWriter;
 
     protected volatile boolean loaded;
     protected EntityLogConfig config;
@@ -194,6 +196,10 @@ public class EntityLog implements EntityLogAPI {
     }
 
     protected void saveItem(EntityLogItem item) {
+        if (entityLogWriter.isAsync() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueueItem(item);
+            return;
+        }
         String storeName = metadataTools.getStoreName(metadata.getClassNN(item.getEntity()));
         if (item.getDbGeneratedIdEntity() == null) {
             if (Stores.isMain(storeName)) {
@@ -223,6 +229,23 @@ public class EntityLog implements EntityLogAPI {
         }
     }
 
+    /**
+     * Passes the item to {@link EntityLogWriter} after the transaction is committed.
+     */
+    protected void enqueueItem(EntityLogItem item) {
+        String createdBy = auditInfoProvider.getCurrentUserLogin();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                if (item.getDbGeneratedIdEntity() != null) {
+                    Number id = item.getDbGeneratedIdEntity().getId().getNN();
+                    item.setObjectEntityId(id);
+                }
+                entityLogWriter.enqueue(item, createdBy);
+            }
+        });
+    }
+
     @Override
     public synchronized boolean isEnabled() {
         return config.getEnabled() && isLoggingForCurrentThread();
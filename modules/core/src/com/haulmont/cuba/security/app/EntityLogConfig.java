@@ -21,6 +21,7 @@ import com.haulmont.cuba.core.config.Property;
 import com.haulmont.cuba.core.config.Source;
 import com.haulmont.cuba.core.config.SourceType;
 import com.haulmont.cuba.core.config.defaults.DefaultBoolean;
+import com.haulmont.cuba.core.config.defaults.DefaultInt;
 
 /**
  * {@link com.haulmont.cuba.security.app.EntityLog} configuration parameters
@@ -35,4 +36,38 @@ public interface EntityLogConfig extends Config {
     @DefaultBoolean(true)
     boolean getEnabled();
     void setEnabled(boolean value);
-}
\ No newline at end of file
+
+    /**
+     * @return Whether entity log items are written to the database in background by JDBC batches after the
+     * transaction is committed. See {@link EntityLogWriter}.
+     */
+    @Source(type = SourceType.APP)
+    @Property("cuba.entityLog.asyncMode")
+    @DefaultBoolean(false)
+    boolean getAsyncMode();
+
+    /**
+     * @return Maximum number of entity log items waiting to be written in async mode
+     */
+    @Source(type = SourceType.APP)
+    @Property("cuba.entityLog.asyncQueueCapacity")
+    @DefaultInt(10000)
+    int getAsyncQueueCapacity();
+
+    /**
+     * @return Maximum number of entity log items inserted by one JDBC batch in async mode
+     */
+    @Source(type = SourceType.APP)
+    @Property("cuba.entityLog.asyncBatchSize")
+    @DefaultInt(500)
+    int getAsyncBatchSize();
+
+    /**
+     * @return Time in milliseconds a committing thread waits for free space in the full queue before the item
+     * is saved to the spill file
+     */
+    @Source(type = SourceType.APP)
+    @Property("cuba.entityLog.asyncEnqueueTimeoutMs")
+    @DefaultInt(1000)
+    int getAsyncEnqueueTimeoutMs();
+}
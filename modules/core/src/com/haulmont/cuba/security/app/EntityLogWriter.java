@@ -0,0 +1,486 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.bali.db.QueryRunner;
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.Persistence;
+import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.entity.ReferenceToEntity;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.GlobalConfig;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.persistence.DbTypeConverter;
+import com.haulmont.cuba.security.entity.EntityLogItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes entity log items to the database in the background when {@link EntityLogConfig#getAsyncMode()} is on.
+ * <p>
+ * Items of committed transactions are put to a bounded in-memory queue and inserted by a single thread with JDBC
+ * batches. If the queue is full, the committing thread waits for {@link EntityLogConfig#getAsyncEnqueueTimeoutMs()}
+ * and then appends the item to the spill file in the data directory. Items that could not be written to the
+ * database and items remaining in the queue on shutdown are also saved to the spill file. The spill file is written
+ * to the database when the queue is empty, including after restart. After a failure the spill file is retried with
+ * a growing delay, and items that fail {@link #MAX_SPILL_ATTEMPTS} times are moved to the rejected file.
+ */
+@Component(EntityLogWriter.NAME)
+public class EntityLogWriter {
+
+    public static final String NAME = "cuba_EntityLogWriter";
+
+    private static final Logger log = LoggerFactory.getLogger(EntityLogWriter.class);
+
+    protected static final String SPILL_FILE_NAME = "entitylog-spill.dat";
+    protected static final String PROCESSING_FILE_NAME = "entitylog-spill.processing";
+    protected static final String REJECTED_FILE_NAME = "entitylog-spill.rejected";
+
+    protected static final int MAX_SPILL_ATTEMPTS = 10;
+    protected static final long MAX_SPILL_RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    protected static final String INSERT_SQL = "insert into SEC_ENTITY_LOG (ID, CREATE_TS, CREATED_BY, EVENT_TS, " +
+            "USER_ID, CHANGE_TYPE, ENTITY, ENTITY_ID, STRING_ENTITY_ID, INT_ENTITY_ID, LONG_ENTITY_ID, CHANGES) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Inject
+    protected Persistence persistence;
+
+    @Inject
+    protected TimeSource timeSource;
+
+    protected EntityLogConfig config;
+
+    protected GlobalConfig globalConfig;
+
+    protected volatile BlockingQueue<Record> queue;
+
+    protected volatile Thread writerThread;
+
+    protected volatile boolean stopped;
+
+    protected final Object spillLock = new Object();
+
+    protected final AtomicLong writtenCount = new AtomicLong();
+    protected final AtomicLong spilledCount = new AtomicLong();
+    protected volatile long lastFlushLatency;
+    protected volatile long maxFlushLatency;
+
+    // accessed by the writer thread only
+    protected int spillFailures;
+    protected long nextSpillAttemptTime;
+
+    @Inject
+    public void setConfiguration(Configuration configuration) {
+        config = configuration.getConfig(EntityLogConfig.class);
+        globalConfig = configuration.getConfig(GlobalConfig.class);
+    }
+
+    @PostConstruct
+    protected void initSpillFileListener() {
+        AppContext.addListener(new AppContext.Listener() {
+            @Override
+            public void applicationStarted() {
+                File dir = new File(globalConfig.getDataDir());
+                if (new File(dir, SPILL_FILE_NAME).exists() || new File(dir, PROCESSING_FILE_NAME).exists()) {
+                    log.info("Found entity log spill file, starting the writer to save the items");
+                    getQueue();
+                }
+            }
+
+            @Override
+            public void applicationStopped() {
+                // do nothing
+            }
+        });
+    }
+
+    /**
+     * @return true if entity log items should be passed to the writer instead of persisting them in the transaction
+     */
+    public boolean isAsync() {
+        return config.getAsyncMode() && !stopped;
+    }
+
+    /**
+     * Puts the item of a committed transaction to the write queue.
+     */
+    public void enqueue(EntityLogItem item, String createdBy) {
+        Record record = new Record(item, createdBy, timeSource.currentTimestamp());
+
+        BlockingQueue<Record> queue = getQueue();
+        boolean queued;
+        try {
+            queued = queue.offer(record, config.getAsyncEnqueueTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            log.debug("Entity log queue is full, writing the item to the spill file");
+            spill(Collections.singletonList(record));
+        }
+    }
+
+    /**
+     * @return number of items waiting in the queue
+     */
+    public int getQueueSize() {
+        BlockingQueue<Record> queue = this.queue;
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * @return time in milliseconds between enqueueing the oldest item of the last written batch and its insertion
+     */
+    public long getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    public long getMaxFlushLatency() {
+        return maxFlushLatency;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * @return number of items saved to the spill file since the start
+     */
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    protected BlockingQueue<Record> getQueue() {
+        if (queue == null) {
+            synchronized (this) {
+                if (queue == null) {
+                    queue = new ArrayBlockingQueue<>(config.getAsyncQueueCapacity());
+                    writerThread = new Thread(this::run, "EntityLogWriter");
+                    writerThread.setDaemon(true);
+                    writerThread.start();
+                }
+            }
+        }
+        return queue;
+    }
+
+    protected void run() {
+        int batchSize = config.getAsyncBatchSize();
+        List<Record> batch = new ArrayList<>(batchSize);
+        while (!stopped) {
+            try {
+                Record record = queue.poll(1, TimeUnit.SECONDS);
+                if (record == null) {
+                    processSpillFile();
+                    continue;
+                }
+                batch.add(record);
+                queue.drainTo(batch, batchSize - 1);
+                writeOrSpill(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable e) {
+                log.error("Error in entity log writer", e);
+            }
+        }
+    }
+
+    protected void writeOrSpill(List<Record> batch) {
+        try {
+            write(batch);
+        } catch (Exception e) {
+            log.error("Unable to write {} entity log items, saving them to the spill file", batch.size(), e);
+            spill(batch);
+        }
+    }
+
+    protected void write(List<Record> batch) throws SQLException {
+        DbTypeConverter converter = persistence.getDbTypeConverter();
+        int uuidType = converter.getSqlType(UUID.class);
+        int[] paramTypes = new int[]{uuidType, Types.TIMESTAMP, Types.VARCHAR, Types.TIMESTAMP, uuidType,
+                Types.VARCHAR, Types.VARCHAR, uuidType, Types.VARCHAR, Types.INTEGER, Types.BIGINT, Types.VARCHAR};
+
+        Object[][] params = new Object[batch.size()][];
+        for (int i = 0; i < batch.size(); i++) {
+            Record record = batch.get(i);
+            params[i] = new Object[]{
+                    sqlObject(converter, record.id),
+                    sqlObject(converter, record.createTs),
+                    record.createdBy,
+                    sqlObject(converter, record.eventTs),
+                    sqlObject(converter, record.userId),
+                    record.type,
+                    record.entity,
+                    sqlObject(converter, record.entityId),
+                    record.stringEntityId,
+                    record.intEntityId,
+                    record.longEntityId,
+                    record.changes
+            };
+        }
+
+        try (Transaction tx = persistence.createTransaction()) {
+            EntityManager em = persistence.getEntityManager();
+            new QueryRunner().batch(em.getConnection(), INSERT_SQL, params, paramTypes);
+            tx.commit();
+        }
+
+        // records read from the spill file have no enqueue time
+        long enqueueTime = batch.get(0).enqueueTime;
+        if (enqueueTime != 0) {
+            long latency = System.currentTimeMillis() - enqueueTime;
+            lastFlushLatency = latency;
+            if (latency > maxFlushLatency) {
+                maxFlushLatency = latency;
+            }
+        }
+        writtenCount.addAndGet(batch.size());
+    }
+
+    @Nullable
+    protected Object sqlObject(DbTypeConverter converter, @Nullable Object value) {
+        return value == null ? null : converter.getSqlObject(value);
+    }
+
+    protected void spill(List<Record> records) {
+        synchronized (spillLock) {
+            File file = new File(getSpillDir(), SPILL_FILE_NAME);
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                writeRecords(out, records);
+                spilledCount.addAndGet(records.size());
+            } catch (IOException e) {
+                log.error("Unable to save {} entity log items to {}, the items are lost", records.size(), file, e);
+            }
+        }
+    }
+
+    /**
+     * Writes the items saved in the spill file to the database. The file is renamed before processing, so new
+     * items can be spilled in the meantime.
+     */
+    protected void processSpillFile() {
+        if (System.currentTimeMillis() < nextSpillAttemptTime) {
+            return;
+        }
+        File dir = getSpillDir();
+        File processingFile = new File(dir, PROCESSING_FILE_NAME);
+        if (!processingFile.exists()) {
+            synchronized (spillLock) {
+                File file = new File(dir, SPILL_FILE_NAME);
+                if (!file.exists()) {
+                    return;
+                }
+                try {
+                    Files.move(file.toPath(), processingFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    log.error("Unable to move entity log spill file {}", file, e);
+                    return;
+                }
+            }
+        }
+
+        List<Record> records = readSpillFile(processingFile);
+        int batchSize = config.getAsyncBatchSize();
+        for (int i = 0; i < records.size(); i += batchSize) {
+            List<Record> batch = records.subList(i, Math.min(i + batchSize, records.size()));
+            try {
+                write(batch);
+            } catch (Exception e) {
+                spillFailures++;
+                long delay = Math.min(MAX_SPILL_RETRY_DELAY_MS, TimeUnit.SECONDS.toMillis(1L << Math.min(spillFailures, 16)));
+                nextSpillAttemptTime = System.currentTimeMillis() + delay;
+                log.error("Unable to write entity log items from {}, next attempt in {} ms", processingFile, delay, e);
+
+                List<Record> rejected = new ArrayList<>();
+                List<Record> remaining = new ArrayList<>();
+                for (Record record : batch) {
+                    if (++record.attempts >= MAX_SPILL_ATTEMPTS) {
+                        rejected.add(record);
+                    } else {
+                        remaining.add(record);
+                    }
+                }
+                if (!rejected.isEmpty()) {
+                    reject(rejected);
+                }
+                // keep only the items that are not written yet, the file is processed again later
+                remaining.addAll(records.subList(i + batch.size(), records.size()));
+                rewriteSpillFile(processingFile, remaining);
+                return;
+            }
+        }
+        spillFailures = 0;
+        log.info("Written {} entity log items from the spill file", records.size());
+        if (!processingFile.delete()) {
+            log.warn("Unable to delete {}", processingFile);
+        }
+    }
+
+    /**
+     * Moves the items that could not be written in {@link #MAX_SPILL_ATTEMPTS} attempts to the rejected file.
+     * The file is not processed automatically: rename it to the spill file to retry the items.
+     */
+    protected void reject(List<Record> records) {
+        File file = new File(getSpillDir(), REJECTED_FILE_NAME);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            writeRecords(out, records);
+            log.error("{} entity log items failed {} times and are moved to {}", records.size(), MAX_SPILL_ATTEMPTS, file);
+        } catch (IOException e) {
+            log.error("Unable to save {} entity log items to {}, the items are lost", records.size(), file, e);
+        }
+    }
+
+    protected void rewriteSpillFile(File file, List<Record> records) {
+        try (FileOutputStream out = new FileOutputStream(file, false)) {
+            writeRecords(out, records);
+        } catch (IOException e) {
+            log.error("Unable to rewrite entity log spill file {}", file, e);
+        }
+    }
+
+    protected void writeRecords(FileOutputStream out, List<Record> records) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out));
+        for (Record record : records) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                objectOut.writeObject(record);
+            }
+            dataOut.writeInt(bytes.size());
+            bytes.writeTo(dataOut);
+        }
+        dataOut.flush();
+        out.getFD().sync();
+    }
+
+    protected List<Record> readSpillFile(File file) {
+        List<Record> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    records.add((Record) objectIn.readObject());
+                }
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            // a record interrupted by a crash at the end of the file
+            log.warn("Entity log spill file {} is truncated, read {} items", file, records.size(), e);
+        }
+        return records;
+    }
+
+    protected File getSpillDir() {
+        File dir = new File(globalConfig.getDataDir());
+        if (!dir.exists() && !dir.mkdirs()) {
+            log.warn("Unable to create directory {}", dir);
+        }
+        return dir;
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        Thread thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Record> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            log.info("Saving {} entity log items to the spill file on shutdown", remaining.size());
+            spill(remaining);
+        }
+    }
+
+    /**
+     * Column values of an entity log item.
+     */
+    protected static class Record implements Serializable {
+
+        private static final long serialVersionUID = 8418237490532398112L;
+
+        protected final UUID id;
+        protected final Date createTs;
+        protected final String createdBy;
+        protected final Date eventTs;
+        protected final UUID userId;
+        protected final String type;
+        protected final String entity;
+        protected final UUID entityId;
+        protected final String stringEntityId;
+        protected final Integer intEntityId;
+        protected final Long longEntityId;
+        protected final String changes;
+
+        // 0 if the record is read from the spill file
+        protected transient long enqueueTime = System.currentTimeMillis();
+
+        protected int attempts;
+
+        protected Record(EntityLogItem item, String createdBy, Date createTs) {
+            this.id = item.getId();
+            this.createTs = createTs;
+            this.createdBy = createdBy;
+            this.eventTs = item.getEventTs();
+            this.userId = item.getUser() != null ? item.getUser().getId() : null;
+            this.type = item.getType() != null ? item.getType().getId() : null;
+            this.entity = item.getEntity();
+            ReferenceToEntity entityRef = item.getEntityRef();
+            this.entityId = entityRef.getEntityId();
+            this.stringEntityId = entityRef.getStringEntityId();
+            this.intEntityId = entityRef.getIntEntityId();
+            this.longEntityId = entityRef.getLongEntityId();
+            this.changes = item.getChanges();
+        }
+    }
+}
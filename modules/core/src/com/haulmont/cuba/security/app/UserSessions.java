@@ -84,10 +84,76 @@ public class UserSessions implements UserSessionsAPI {
         }
     }
 
+    /**
+     * Compact cluster message containing last used timestamps of a batch of sessions. A zero timestamp means that
+     * the session is removed. The cluster manager keeps the order of messages of different classes, so a removal
+     * is never applied before the addition of the session.
+     */
+    public static class UserSessionsHeartbeat implements Serializable {
+        private static final long serialVersionUID = 2930467718532147362L;
+
+        public final long[] mostSigBits;
+        public final long[] leastSigBits;
+        public final long[] lastUsedTs;
+
+        public UserSessionsHeartbeat(List<UUID> ids, List<Long> timestamps) {
+            int size = ids.size();
+            mostSigBits = new long[size];
+            leastSigBits = new long[size];
+            lastUsedTs = new long[size];
+            for (int i = 0; i < size; i++) {
+                mostSigBits[i] = ids.get(i).getMostSignificantBits();
+                leastSigBits[i] = ids.get(i).getLeastSignificantBits();
+                lastUsedTs[i] = timestamps.get(i);
+            }
+        }
+
+        public int size() {
+            return lastUsedTs.length;
+        }
+
+        public UUID getId(int index) {
+            return new UUID(mostSigBits[index], leastSigBits[index]);
+        }
+
+        @Override
+        public String toString() {
+            return "UserSessionsHeartbeat{" + size() + " sessions}";
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(UserSessions.class);
 
+    protected static final int HEARTBEAT_BATCH_SIZE = 5000;
+
     protected Map<UUID, UserSessionInfo> cache = new ConcurrentHashMap<>();
 
+    /**
+     * Last used timestamps of sessions to be sent to the cluster with the next heartbeat, zero for evicted sessions.
+     */
+    protected Map<UUID, Long> pendingHeartbeats = new ConcurrentHashMap<>();
+
+    protected volatile Set<String> indexedAttributes = Collections.emptySet();
+
+    protected volatile boolean userIndexEnabled;
+
+    /**
+     * Session ids by ids of the session user and substituted user.
+     */
+    protected Map<UUID, Set<UUID>> userIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Session ids by values of indexed attributes, by attribute names.
+     */
+    protected Map<String, Map<Object, Set<UUID>>> attributeIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Keys under which the session is currently indexed, by session ids.
+     */
+    protected Map<UUID, IndexKeys> sessionIndexKeys = new ConcurrentHashMap<>();
+
+    protected final Object indexLock = new Object();
+
     protected volatile int expirationTimeout = 1800;
 
     protected volatile int sendTimeout = 10;
@@ -128,6 +194,9 @@ public class UserSessions implements UserSessionsAPI {
         setExpirationTimeoutSec(serverConfig.getUserSessionExpirationTimeoutSec());
         setSendTimeoutSec(serverConfig.getUserSessionSendTimeoutSec());
         touchTimeout = serverConfig.getUserSessionTouchTimeoutSec();
+        List<String> attributes = serverConfig.getUserSessionIndexedAttributes();
+        indexedAttributes = attributes == null ? Collections.emptySet() : new HashSet<>(attributes);
+        userIndexEnabled = serverConfig.getUserSessionUserIndexEnabled();
     }
 
     @Inject
@@ -153,6 +222,76 @@ public class UserSessions implements UserSessionsAPI {
                     }
                 }
         );
+        this.clusterManager.addListener(
+                UserSessionsHeartbeat.class,
+                new ClusterListener<UserSessionsHeartbeat>() {
+
+                    @Override
+                    public void receive(UserSessionsHeartbeat message) {
+                        receiveHeartbeat(message);
+                    }
+
+                    @Override
+                    public byte[] getState() {
+                        return new byte[0];
+                    }
+
+                    @Override
+                    public void setState(byte[] state) {
+                        // sessions are transferred by the UserSessionInfo listener
+                    }
+                }
+        );
+    }
+
+    protected void receiveHeartbeat(UserSessionsHeartbeat message) {
+        log.trace("Received {}", message);
+        for (int i = 0; i < message.size(); i++) {
+            UUID id = message.getId(i);
+            long lastUsedTs = message.lastUsedTs[i];
+            if (lastUsedTs == 0) {
+                if (removeSessionInfo(id) != null) {
+                    log.debug("Removed session {} due to cluster message", id);
+                }
+                continue;
+            }
+            // a session unknown here is either removed already or its full info is still on the way
+            UserSessionInfo usi = getSessionInfo(id);
+            if (usi != null && usi.lastUsedTs < lastUsedTs) {
+                usi.lastUsedTs = lastUsedTs;
+                putSessionInfo(id, usi);
+            }
+        }
+    }
+
+    /**
+     * Sends last used timestamps of the sessions touched and evicted since the previous call to the cluster.
+     */
+    protected void sendHeartbeats() {
+        if (pendingHeartbeats.isEmpty())
+            return;
+
+        List<UUID> ids = new ArrayList<>();
+        List<Long> timestamps = new ArrayList<>();
+        for (UUID id : pendingHeartbeats.keySet()) {
+            Long lastUsedTs = pendingHeartbeats.remove(id);
+            if (lastUsedTs != null) {
+                ids.add(id);
+                timestamps.add(lastUsedTs);
+            }
+        }
+        for (int i = 0; i < ids.size(); i += HEARTBEAT_BATCH_SIZE) {
+            int end = Math.min(i + HEARTBEAT_BATCH_SIZE, ids.size());
+            clusterManager.send(new UserSessionsHeartbeat(ids.subList(i, end), timestamps.subList(i, end)));
+        }
+    }
+
+    /**
+     * Sends the removal of the session to the cluster right away, as a heartbeat of the single session.
+     */
+    protected void sendRemoval(UUID id) {
+        pendingHeartbeats.remove(id);
+        clusterManager.send(new UserSessionsHeartbeat(Collections.singletonList(id), Collections.singletonList(0L)));
     }
 
     protected void receiveClusterMessage(UserSessionInfo message) {
@@ -226,8 +365,7 @@ public class UserSessions implements UserSessionsAPI {
         if (usi != null) {
             log.debug("Removed session: {}", usi);
             if (!session.isSystem()) {
-                usi.lastUsedTs = 0;
-                clusterManager.send(usi);
+                sendRemoval(session.getId());
             }
         }
     }
@@ -292,7 +430,8 @@ public class UserSessions implements UserSessionsAPI {
                 if (propagate && !usi.session.isSystem()) {
                     if (now > (usi.lastSentTs + toMillis(sendTimeout))) {
                         usi.lastSentTs = now;
-                        clusterManager.send(usi);
+                        // a pending removal of the session is not replaced
+                        pendingHeartbeats.merge(id, now, (pending, ts) -> pending == 0 ? pending : ts);
                     }
                 }
             }
@@ -371,8 +510,7 @@ public class UserSessions implements UserSessionsAPI {
         if (usi != null) {
             log.debug("Killed session: {}", usi);
 
-            usi.lastUsedTs = 0;
-            clusterManager.send(usi);
+            sendRemoval(id);
         }
     }
 
@@ -380,6 +518,20 @@ public class UserSessions implements UserSessionsAPI {
     public List<UUID> findUserSessionsByAttribute(String attributeName, Object attributeValue) {
         Preconditions.checkNotNullArgument(attributeName);
 
+        if (attributeValue != null && indexedAttributes.contains(attributeName)) {
+            Map<Object, Set<UUID>> valueIndex = attributeIndex.get(attributeName);
+            Set<UUID> ids = valueIndex == null ? null : valueIndex.get(attributeValue);
+            if (ids == null)
+                return new ArrayList<>();
+            // the value is checked again as a mutable attribute value could be changed in place
+            return ids.stream()
+                    .map(this::getSessionInfo)
+                    .filter(usi -> usi != null
+                            && Objects.equals(usi.session.getAttribute(attributeName), attributeValue))
+                    .map(usi -> usi.session.getId())
+                    .collect(Collectors.toList());
+        }
+
         //noinspection UnnecessaryLocalVariable
         List<UUID> sessionIds = getSessionInfoStream()
                 .filter(usInfo -> Objects.equals(usInfo.session.getAttribute(attributeName), attributeValue))
@@ -389,6 +541,29 @@ public class UserSessions implements UserSessionsAPI {
         return sessionIds;
     }
 
+    @Override
+    public Stream<UserSession> getUserSessionsStream(UUID userId) {
+        Preconditions.checkNotNullArgument(userId);
+
+        if (userIndexEnabled) {
+            Set<UUID> ids = userIndex.get(userId);
+            if (ids == null)
+                return Stream.empty();
+            return ids.stream()
+                    .map(this::getSessionInfo)
+                    .filter(usi -> usi != null && isSessionOfUser(usi.session, userId))
+                    .map(usi -> usi.session);
+        }
+        return getSessionInfoStream()
+                .map(info -> info.session)
+                .filter(session -> isSessionOfUser(session, userId));
+    }
+
+    protected boolean isSessionOfUser(UserSession session, UUID userId) {
+        return userId.equals(session.getUser().getId())
+                || (session.getSubstitutedUser() != null && userId.equals(session.getSubstitutedUser().getId()));
+    }
+
     @Override
     public void processEviction() {
         if (!AppContext.isStarted())
@@ -406,9 +581,11 @@ public class UserSessions implements UserSessionsAPI {
 
                     removeSessionInfo(usi.session.getId());
 
-                    usi.lastUsedTs = 0;
-                    clusterManager.send(usi);
+                    // evicted sessions are sent with the heartbeat of the touched ones
+                    pendingHeartbeats.put(usi.session.getId(), 0L);
                 });
+
+        sendHeartbeats();
     }
 
     protected UserSessionInfo getSessionInfo(UUID id) {
@@ -417,11 +594,87 @@ public class UserSessions implements UserSessionsAPI {
 
     protected void putSessionInfo(UUID id, UserSessionInfo info) {
         cache.put(id, info);
+        if (userIndexEnabled || !indexedAttributes.isEmpty()) {
+            // attributes can be changed without propagation, so the session reports changes by itself
+            info.session.setAttributesChangeListener(this::updateIndexes);
+            updateIndexes(id);
+        }
     }
 
     @Nullable
     protected UserSessionInfo removeSessionInfo(UUID id) {
-        return cache.remove(id);
+        UserSessionInfo info = cache.remove(id);
+        if (info != null && !sessionIndexKeys.isEmpty()) {
+            updateIndexes(id);
+        }
+        return info;
+    }
+
+    /**
+     * Brings the indexes in line with the current state of the session in the cache. The session is read
+     * under the lock, so concurrent updates and removals of the same session leave no stale keys.
+     */
+    protected void updateIndexes(UUID id) {
+        synchronized (indexLock) {
+            UserSessionInfo info = cache.get(id);
+            IndexKeys newKeys = info == null ? null : createIndexKeys(info.session);
+            IndexKeys oldKeys = sessionIndexKeys.get(id);
+            if (Objects.equals(oldKeys, newKeys))
+                return;
+
+            if (oldKeys != null) {
+                for (UUID userId : oldKeys.userIds) {
+                    removeFromIndex(userIndex, userId, id);
+                }
+                for (Map.Entry<String, Object> entry : oldKeys.attributes.entrySet()) {
+                    Map<Object, Set<UUID>> valueIndex = attributeIndex.get(entry.getKey());
+                    if (valueIndex != null) {
+                        removeFromIndex(valueIndex, entry.getValue(), id);
+                    }
+                }
+            }
+            if (newKeys != null) {
+                for (UUID userId : newKeys.userIds) {
+                    userIndex.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(id);
+                }
+                for (Map.Entry<String, Object> entry : newKeys.attributes.entrySet()) {
+                    attributeIndex.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>())
+                            .computeIfAbsent(entry.getValue(), k -> ConcurrentHashMap.newKeySet())
+                            .add(id);
+                }
+                sessionIndexKeys.put(id, newKeys);
+            } else {
+                sessionIndexKeys.remove(id);
+            }
+        }
+    }
+
+    protected <K> void removeFromIndex(Map<K, Set<UUID>> index, K key, UUID id) {
+        Set<UUID> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    protected IndexKeys createIndexKeys(UserSession session) {
+        Set<UUID> userIds = new HashSet<>(2);
+        if (userIndexEnabled) {
+            userIds.add(session.getUser().getId());
+            if (session.getSubstitutedUser() != null) {
+                userIds.add(session.getSubstitutedUser().getId());
+            }
+        }
+        Map<String, Object> attributes = new HashMap<>();
+        for (String name : indexedAttributes) {
+            Object value = session.getAttribute(name);
+            if (value != null) {
+                attributes.put(name, value);
+            }
+        }
+        return new IndexKeys(userIds, attributes);
     }
 
     protected Stream<UserSessionInfo> getSessionInfoStream() {
@@ -431,4 +684,27 @@ public class UserSessions implements UserSessionsAPI {
     protected long toMillis(int seconds) {
         return seconds * 1000L;
     }
+
+    protected static class IndexKeys {
+        protected final Set<UUID> userIds;
+        protected final Map<String, Object> attributes;
+
+        protected IndexKeys(Set<UUID> userIds, Map<String, Object> attributes) {
+            this.userIds = userIds;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            IndexKeys that = (IndexKeys) o;
+            return userIds.equals(that.userIds) && attributes.equals(that.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * userIds.hashCode() + attributes.hashCode();
+        }
+    }
 }
\ No newline at end of file
@@ -101,6 +101,14 @@ public interface UserSessionsAPI extends UserSessionFinder {
      */
     Stream<UserSession> getUserSessionsStream();
 
+    /**
+     * Stream of active sessions of the given user, including sessions where the user is substituted.
+     * Uses the index if the {@code cuba.userSessionUserIndexEnabled} application property is set to true.
+     *
+     * @param userId user id
+     */
+    Stream<UserSession> getUserSessionsStream(UUID userId);
+
     /**
      * INTERNAL.
      *
@@ -138,9 +146,15 @@ public interface UserSessionsAPI extends UserSessionFinder {
     void killSession(UUID id);
 
     /**
-     * @deprecated use {@link #getUserSessionsStream()} and filter it as needed
+     * Finds active sessions having the given attribute value. Uses the index if the attribute is listed in the
+     * {@code cuba.userSessionIndexedAttributes} application property, otherwise scans all sessions.
+     * <p>The index is updated when a session is propagated, so change attributes through
+     * {@link UserSessionService#setSessionAttribute(UUID, String, java.io.Serializable)} or call {@link #propagate(UUID)}.
+     *
+     * @param attributeName  attribute name
+     * @param attributeValue attribute value
+     * @return list of session ids
      */
-    @Deprecated
     List<UUID> findUserSessionsByAttribute(String attributeName, Object attributeValue);
 
     /**
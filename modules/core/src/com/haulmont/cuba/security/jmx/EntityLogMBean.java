@@ -36,4 +36,29 @@ public interface EntityLogMBean {
      * The configuration will be recreated from the database on next lifecycle event.
      */
     void invalidateCache();
+
+    /**
+     * @return number of items waiting to be written in async mode
+     */
+    int getAsyncQueueSize();
+
+    /**
+     * @return time in milliseconds between enqueueing and writing the last batch in async mode
+     */
+    long getAsyncLastFlushLatency();
+
+    /**
+     * @return maximum time in milliseconds between enqueueing and writing a batch in async mode
+     */
+    long getAsyncMaxFlushLatency();
+
+    /**
+     * @return number of items written in async mode since the start
+     */
+    long getAsyncWrittenCount();
+
+    /**
+     * @return number of items saved to the spill file since the start
+     */
+    long getAsyncSpilledCount();
 }
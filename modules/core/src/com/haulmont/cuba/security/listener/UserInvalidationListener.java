@@ -58,9 +58,7 @@ public class UserInvalidationListener {
         log.info("Handling user invalidation: {}", user.getLogin());
 
         try (Transaction tx = persistence.createTransaction()) {
-            List<UUID> sessionsIds = userSessionsAPI.getUserSessionsStream()
-                    .filter(session -> session != null &&
-                            (user.equals(session.getUser()) || user.equals(session.getSubstitutedUser())))
+            List<UUID> sessionsIds = userSessionsAPI.getUserSessionsStream(user.getId())
                     .map(UserSession::getId)
                     .collect(Collectors.toList());
 
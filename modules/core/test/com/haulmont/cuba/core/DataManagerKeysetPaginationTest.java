@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core;
+
+import com.haulmont.bali.db.QueryRunner;
+import com.haulmont.cuba.core.app.ServerConfig;
+import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.security.entity.Group;
+import com.haulmont.cuba.security.entity.Role;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.security.entity.UserRole;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class DataManagerKeysetPaginationTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    public static final int QTY = 17;
+
+    private UUID groupId;
+    private UUID roleId;
+
+    private DataManager dataManager;
+
+    @Before
+    public void setUp() throws Exception {
+        dataManager = AppBeans.get(DataManager.class);
+
+        Transaction tx = cont.persistence().createTransaction();
+        try {
+            EntityManager em = cont.persistence().getEntityManager();
+
+            Group group = new Group();
+            groupId = group.getId();
+            group.setName("testGroup");
+            em.persist(group);
+
+            Role role = new Role();
+            roleId = role.getId();
+            role.setName("role1");
+            em.persist(role);
+
+            for (int i = 0; i < QTY; i++) {
+                User user = new User();
+                // every two users have the same name to check the identifier tie-breaker
+                user.setName("user" + StringUtils.leftPad(String.valueOf(i / 2), 2, '0'));
+                user.setLogin("user" + StringUtils.leftPad(String.valueOf(i), 2, '0'));
+                user.setGroup(group);
+                em.persist(user);
+
+                UserRole userRole = new UserRole();
+                userRole.setUser(user);
+                userRole.setRole(role);
+                em.persist(userRole);
+            }
+
+            tx.commit();
+        } finally {
+            tx.end();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Transaction tx = cont.persistence().createTransaction();
+        try {
+            QueryRunner runner = new QueryRunner(cont.persistence().getDataSource());
+            try {
+                runner.update("delete from SEC_USER_ROLE where ROLE_ID = '" + roleId.toString() + "'");
+                runner.update("delete from SEC_ROLE where ID = '" + roleId.toString() + "'");
+                runner.update("delete from SEC_USER where GROUP_ID = '" + groupId.toString() + "'");
+                runner.update("delete from SEC_GROUP where ID = '" + groupId.toString() + "'");
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            tx.commit();
+        } finally {
+            tx.end();
+        }
+    }
+
+    @Test
+    public void testPages() {
+        LoadContext.Query query = LoadContext.createQuery("select u from sec$User u where u.group.id = :groupId")
+                .setParameter("groupId", groupId)
+                .setSort(Sort.by("name"))
+                .setKeysetPagination(true)
+                .setMaxResults(5);
+
+        List<User> all = loadAll(query);
+        assertEquals(QTY, all.size());
+
+        List<User> expected = dataManager.loadList(LoadContext.create(User.class).setQuery(
+                LoadContext.createQuery("select u from sec$User u where u.group.id = :groupId order by u.name, u.id")
+                        .setParameter("groupId", groupId)));
+        assertEquals(expected, all);
+    }
+
+    @Test
+    public void testDescendingPages() {
+        LoadContext.Query query = LoadContext.createQuery("select u from sec$User u where u.group.id = :groupId")
+                .setParameter("groupId", groupId)
+                .setSort(Sort.by(Sort.Direction.DESC, "name"))
+                .setMaxResults(4);
+
+        List<User> all = loadAll(query.setKeysetPagination(true));
+        assertEquals(QTY, all.size());
+        for (int i = 1; i < all.size(); i++) {
+            assertEquals(true, all.get(i - 1).getName().compareTo(all.get(i).getName()) >= 0);
+        }
+    }
+
+    @Test
+    public void testFirstResultIgnored() {
+        LoadContext.Query query = LoadContext.createQuery("select u from sec$User u where u.group.id = :groupId")
+                .setParameter("groupId", groupId)
+                .setSort(Sort.by("login"))
+                .setKeysetPagination(true)
+                .setFirstResult(3)
+                .setMaxResults(5);
+
+        List<User> all = loadAll(query);
+        assertEquals(QTY, all.size());
+        assertEquals("user00", all.get(0).getLogin());
+    }
+
+    @Test
+    public void testInMemoryDistinct() {
+        ServerConfig serverConfig = AppBeans.get(Configuration.class).getConfig(ServerConfig.class);
+        boolean inMemoryDistinct = serverConfig.getInMemoryDistinct();
+        serverConfig.setInMemoryDistinct(true);
+        try {
+            LoadContext.Query query = LoadContext.createQuery(
+                    "select distinct u from sec$User u left join u.userRoles r where u.group.id = :groupId")
+                    .setParameter("groupId", groupId)
+                    .setSort(Sort.by("login"))
+                    .setKeysetPagination(true)
+                    .setMaxResults(5);
+
+            List<User> all = loadAll(query);
+            assertEquals(QTY, all.size());
+            assertEquals("user00", all.get(0).getLogin());
+            assertEquals("user16", all.get(QTY - 1).getLogin());
+        } finally {
+            serverConfig.setInMemoryDistinct(inMemoryDistinct);
+        }
+    }
+
+    private List<User> loadAll(LoadContext.Query query) {
+        List<User> all = new ArrayList<>();
+        while (true) {
+            List<User> page = dataManager.loadList(LoadContext.create(User.class).setQuery(query.copy()));
+            all.addAll(page);
+            if (page.size() < query.getMaxResults()) {
+                break;
+            }
+            query.setKeysetPosition(KeysetPosition.of(page.get(page.size() - 1), query.getSort()));
+        }
+        return all;
+    }
+}
@@ -96,6 +96,28 @@ public class DataManagerTest {
         assertTrue(list.size() > 0);
     }
 
+    @Test
+    public void testStream() {
+        for (int i = 0; i < 7; i++) {
+            Server server = new Server();
+            server.setName("localhost" + i);
+            server.setRunning(true);
+            dataManager.commit(server);
+        }
+
+        LoadContext<Server> loadContext = LoadContext.create(Server.class);
+        loadContext.setQueryString("select s from sys$Server s order by s.name").setFetchSize(3);
+
+        List<Server> streamed = new ArrayList<>();
+        dataManager.stream(loadContext, streamed::add);
+
+        assertEquals(dataManager.loadList(loadContext), streamed);
+        assertEquals(7, streamed.size());
+        for (Server server : streamed) {
+            assertTrue(PersistenceHelper.isDetached(server));
+        }
+    }
+
     @Test
     public void testLoadListById() {
         Server server = new Server();
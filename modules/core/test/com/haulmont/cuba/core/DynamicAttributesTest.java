@@ -292,6 +292,46 @@ public class DynamicAttributesTest {
         assertTrue(intCollection.contains(3));
     }
 
+    @Test
+    public void testCommitSeveralEntities() {
+        LoadContext<User> ctx = LoadContext.create(User.class).setLoadDynamicAttributes(true);
+        ctx.setQueryString("select u from sec$User u where u.login like 'user%' order by u.login");
+        List<User> users = dataManager.loadList(ctx);
+        User loadedUser = users.get(0);
+        User loadedUser2 = users.get(1);
+
+        // existing values
+        loadedUser.setValue("+userAttribute", "newName");
+        loadedUser.setValue("+userGroupCollectionAttribute", Lists.newArrayList(group2));
+        loadedUser2.setValue("+userAttribute", "newName2");
+        // new values
+        loadedUser2.setValue("+userGroupCollectionAttribute", Lists.newArrayList(group, group2));
+        loadedUser2.setValue("+userIntCollectionAttribute", Lists.newArrayList(5));
+        dataManager.commit(new CommitContext(loadedUser, loadedUser2));
+
+        users = dataManager.loadList(ctx);
+        assertEquals("newName", users.get(0).getValue("+userAttribute"));
+        assertEquals(Lists.newArrayList(group2), users.get(0).getValue("+userGroupCollectionAttribute"));
+        assertEquals("newName2", users.get(1).getValue("+userAttribute"));
+        List<Group> groupsCollection = users.get(1).getValue("+userGroupCollectionAttribute");
+        assertEquals(2, groupsCollection.size());
+        assertTrue(groupsCollection.contains(group));
+        assertTrue(groupsCollection.contains(group2));
+        assertEquals(Lists.newArrayList(5), users.get(1).getValue("+userIntCollectionAttribute"));
+
+        // the values stored as new ones can be updated by the next commit
+        loadedUser2.setValue("+userAttribute", "newName3");
+        loadedUser2.setValue("+userIntCollectionAttribute", Lists.newArrayList(5, 6));
+        dataManager.commit(loadedUser2);
+
+        User reloadedUser2 = dataManager.load(LoadContext.create(User.class).setId(user2.getId()).setLoadDynamicAttributes(true));
+        assertEquals("newName3", reloadedUser2.getValue("+userAttribute"));
+        List<Integer> intCollection = reloadedUser2.getValue("+userIntCollectionAttribute");
+        assertEquals(2, intCollection.size());
+        assertTrue(intCollection.contains(5));
+        assertTrue(intCollection.contains(6));
+    }
+
     @Test
     public void testLoadDynamicAttributesForCompositeKeyEntity() {
         LoadContext<CompositeKeyEntity> loadContext = LoadContext.create(CompositeKeyEntity.class).setLoadDynamicAttributes(true);
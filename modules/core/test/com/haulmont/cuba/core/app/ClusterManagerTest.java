@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.app;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClusterManagerTest {
+
+    private TestClusterManager clusterManager;
+
+    @Before
+    public void setUp() {
+        clusterManager = new TestClusterManager();
+    }
+
+    @Test
+    public void testInterleavedClassesKeepOrder() {
+        List<Serializable> messages = Arrays.asList(
+                new FooMessage("1"), new FooMessage("2"), new BarMessage("3"), new FooMessage("4"),
+                new BarMessage("5"), new BarMessage("6"));
+
+        clusterManager.sendBatches(pending(messages));
+
+        assertEquals(messages, clusterManager.sent);
+        assertEquals(Arrays.asList("Foo[1, 2]", "Bar[3]", "Foo[4]", "Bar[5, 6]"), clusterManager.frames);
+    }
+
+    @Test
+    public void testIdempotentDuplicatesRemovedWithinRun() {
+        clusterManager.sendBatches(pending(Arrays.asList(
+                new IdempotentMessage("1"), new IdempotentMessage("1"), new FooMessage("2"),
+                new IdempotentMessage("1"))));
+
+        assertEquals(Arrays.asList("Idempotent[1]", "Foo[2]", "Idempotent[1]"),
+                clusterManager.frames);
+    }
+
+    private static List<ClusterManager.PendingMessage> pending(List<Serializable> messages) {
+        List<ClusterManager.PendingMessage> pending = new ArrayList<>();
+        for (Serializable message : messages) {
+            pending.add(new ClusterManager.PendingMessage(message));
+        }
+        return pending;
+    }
+
+    /**
+     * Records the frames instead of sending them to a channel.
+     */
+    private static class TestClusterManager extends ClusterManager {
+
+        private final List<String> frames = new ArrayList<>();
+        private final List<Serializable> sent = new ArrayList<>();
+
+        @Override
+        protected void internalSend(Serializable message, boolean sync) {
+            internalSendBatch(message.getClass().getName(), Collections.singletonList(message));
+        }
+
+        @Override
+        protected void internalSendBatch(String className, List<Serializable> messages) {
+            frames.add(((TestMessage) messages.get(0)).name() + messages.stream()
+                    .map(message -> ((TestMessage) message).value)
+                    .collect(Collectors.toList()));
+            sent.addAll(messages);
+        }
+    }
+
+    private abstract static class TestMessage implements Serializable {
+        protected final String value;
+
+        protected TestMessage(String value) {
+            this.value = value;
+        }
+
+        protected abstract String name();
+
+        @Override
+        public boolean equals(Object o) {
+            return o != null && o.getClass() == getClass() && Objects.equals(value, ((TestMessage) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getClass(), value);
+        }
+    }
+
+    private static class FooMessage extends TestMessage {
+        private FooMessage(String value) {
+            super(value);
+        }
+
+        @Override
+        protected String name() {
+            return "Foo";
+        }
+    }
+
+    private static class BarMessage extends TestMessage {
+        private BarMessage(String value) {
+            super(value);
+        }
+
+        @Override
+        protected String name() {
+            return "Bar";
+        }
+    }
+
+    private static class IdempotentMessage extends TestMessage implements IdempotentClusterMessage {
+        private IdempotentMessage(String value) {
+            super(value);
+        }
+
+        @Override
+        protected String name() {
+            return "Idempotent";
+        }
+    }
+}
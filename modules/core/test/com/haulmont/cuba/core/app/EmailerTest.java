@@ -18,6 +18,8 @@
 package com.haulmont.cuba.core.app;
 
 import com.google.common.collect.Lists;
+import com.haulmont.cuba.core.Persistence;
+import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.entity.SendingAttachment;
 import com.haulmont.cuba.core.entity.SendingMessage;
 import com.haulmont.cuba.core.global.*;
@@ -638,6 +640,33 @@ public class EmailerTest {
         assertByteArrayEquals(expectedBytes, actualBytes);
     }
 
+    @Test
+    public void testMessageClaimedOnce() {
+        List<SendingMessage> messages = emailer.sendEmailAsync(new EmailInfo("recipient@example.com", "Test", "Body"));
+
+        // two servers have loaded the same queued message
+        SendingMessage first = reload(messages.get(0));
+        SendingMessage second = reload(messages.get(0));
+
+        Emailer emailerImpl = (Emailer) emailer;
+        Persistence persistence = cont.persistence();
+        try (Transaction tx = persistence.createTransaction()) {
+            assertTrue(emailerImpl.claimMessage(persistence.getEntityManager(), first,
+                    SendingStatus.SENDING, timeSource.currentTimestamp()));
+            tx.commit();
+        }
+        try (Transaction tx = persistence.createTransaction()) {
+            assertFalse(emailerImpl.claimMessage(persistence.getEntityManager(), second,
+                    SendingStatus.SENDING, timeSource.currentTimestamp()));
+            tx.commit();
+        }
+        assertEquals(SendingStatus.SENDING, reload(messages.get(0)).getStatus());
+
+        // the claimed instance stays consistent with the database
+        emailerImpl.markAsSent(first);
+        assertEquals(SendingStatus.SENT, reload(messages.get(0)).getStatus());
+    }
+
     /* Utility */
     private Date getDeadlineWhichDoesntMatter() {
         return DateUtils.addHours(timeSource.currentTimestamp(), 2);
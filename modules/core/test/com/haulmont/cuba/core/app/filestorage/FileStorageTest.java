@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.app.filestorage;
+
+import com.haulmont.cuba.core.app.FileStorageAPI;
+import com.haulmont.cuba.core.entity.FileDescriptor;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.FileStorageException;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class FileStorageTest {
+
+    public static final String FILE_CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private FileStorageAPI fileStorage;
+
+    private FileDescriptor fileDescr;
+
+    @Before
+    public void setUp() throws Exception {
+        fileStorage = AppBeans.get(FileStorageAPI.NAME);
+
+        fileDescr = new FileDescriptor();
+        fileDescr.setCreateDate(new Date());
+        fileDescr.setSize((long) FILE_CONTENT.length());
+        fileDescr.setName("FileStorageTest");
+        fileDescr.setExtension("txt");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fileStorage.abortChunks(fileDescr);
+        if (fileStorage.fileExists(fileDescr)) {
+            fileStorage.removeFile(fileDescr);
+        }
+    }
+
+    @Test
+    public void testRangedRead() throws Exception {
+        fileStorage.saveFile(fileDescr, FILE_CONTENT.getBytes(StandardCharsets.UTF_8));
+
+        try (InputStream inputStream = fileStorage.openStream(fileDescr, 10, 5)) {
+            assertEquals("abcde", IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+        }
+        try (InputStream inputStream = fileStorage.openStream(fileDescr, 30, 100)) {
+            assertEquals("uvwxyz", IOUtils.toString(inputStream, StandardCharsets.UTF_8));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long transferred = fileStorage.transferTo(fileDescr, 5, 10, Channels.newChannel(out));
+        assertEquals(10, transferred);
+        assertEquals("56789abcde", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    public void testChunkedUpload() throws Exception {
+        byte[] content = FILE_CONTENT.getBytes(StandardCharsets.UTF_8);
+        byte[] first = Arrays.copyOfRange(content, 0, 20);
+        byte[] second = Arrays.copyOfRange(content, 20, content.length);
+
+        // chunks are saved out of order
+        fileStorage.saveChunk(fileDescr, 20, new ByteArrayInputStream(second), DigestUtils.sha256Hex(second));
+        try {
+            fileStorage.saveChunk(fileDescr, 0, new ByteArrayInputStream(first), DigestUtils.sha256Hex(second));
+            fail();
+        } catch (FileStorageException e) {
+            assertEquals(FileStorageException.Type.IO_EXCEPTION, e.getType());
+        }
+        assertFalse(fileStorage.fileExists(fileDescr));
+
+        // retry of the failed chunk
+        fileStorage.saveChunk(fileDescr, 0, new ByteArrayInputStream(first), DigestUtils.sha256Hex(first));
+
+        try {
+            fileStorage.commitChunks(fileDescr, content.length + 1);
+            fail();
+        } catch (FileStorageException e) {
+            assertEquals(FileStorageException.Type.IO_EXCEPTION, e.getType());
+        }
+
+        fileStorage.commitChunks(fileDescr, content.length);
+        assertTrue(fileStorage.fileExists(fileDescr));
+        assertArrayEquals(content, fileStorage.loadFile(fileDescr));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.app.filestorage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplicationJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+    private ReplicationJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = folder.newFolder("journal");
+        journal = new ReplicationJournal(dir);
+    }
+
+    @After
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        File root = folder.newFolder("root");
+        ReplicationJournal.Entry copy = journal.createEntry(ReplicationJournal.Type.COPY,
+                root, new File(root, "copy.txt"), new File("source.txt"), "admin--1");
+        ReplicationJournal.Entry delete = journal.createEntry(ReplicationJournal.Type.DELETE,
+                root, new File(root, "deleted file.txt"), null, "admin--1");
+        ReplicationJournal.Entry done = journal.createEntry(ReplicationJournal.Type.COPY,
+                root, new File(root, "done.txt"), new File("source.txt"), "admin--1");
+        journal.add(Arrays.asList(copy, delete, done));
+        assertEquals(3, journal.getPendingCount());
+
+        journal.done(done);
+        assertEquals(2, journal.getPendingCount());
+        journal.close();
+
+        journal = new ReplicationJournal(dir);
+        List<ReplicationJournal.Entry> pending = new ArrayList<>(journal.getPendingEntries());
+        assertEquals(2, pending.size());
+        assertEquals(copy.getSeq(), pending.get(0).getSeq());
+        assertEquals(new File("source.txt"), pending.get(0).getSource());
+        assertEquals(delete.getTarget(), pending.get(1).getTarget());
+        assertNull(pending.get(1).getSource());
+        assertTrue(journal.getLag() >= 0);
+
+        ReplicationJournal.Entry next = journal.createEntry(ReplicationJournal.Type.COPY,
+                root, new File(root, "next.txt"), new File("source.txt"), "admin--1");
+        assertTrue(next.getSeq() > done.getSeq());
+    }
+
+    @Test
+    public void testSegmentsAreDeleted() throws Exception {
+        File root = folder.newFolder("root");
+        List<ReplicationJournal.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < ReplicationJournal.MAX_SEGMENT_RECORDS * 2; i++) {
+            entries.add(journal.createEntry(ReplicationJournal.Type.COPY,
+                    root, new File(root, i + ".txt"), new File("source.txt"), "admin--1"));
+        }
+        journal.add(entries);
+        assertTrue(dir.list().length >= 2);
+
+        for (ReplicationJournal.Entry entry : entries) {
+            journal.done(entry);
+        }
+        assertEquals(0, journal.getPendingCount());
+        assertEquals(0, journal.getLag());
+        journal.close();
+
+        journal = new ReplicationJournal(dir);
+        assertEquals(0, journal.getPendingCount());
+        assertEquals(0, dir.list().length);
+    }
+}
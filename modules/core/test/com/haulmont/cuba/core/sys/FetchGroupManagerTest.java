@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys;
+
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.View;
+import com.haulmont.cuba.security.entity.Group;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import static com.haulmont.cuba.testsupport.TestSupport.assertFail;
+import static org.junit.Assert.*;
+
+public class FetchGroupManagerTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private static final String QUERY = "select u from sec$User u where u.login = :login";
+
+    private FetchGroupManager fetchGroupManager;
+
+    @Before
+    public void setUp() {
+        fetchGroupManager = AppBeans.get(FetchGroupManager.class);
+        fetchGroupManager.invalidateCache();
+    }
+
+    @Test
+    public void testSameViewStructure() {
+        FetchGroupDescription description = fetchGroupManager.calculateFetchGroup(QUERY, createView(), true, true);
+
+        assertSame(description, fetchGroupManager.calculateFetchGroup(QUERY, createView(), true, true));
+        assertNotSame(description, fetchGroupManager.calculateFetchGroup(QUERY, createView(), false, true));
+        assertNotSame(description, fetchGroupManager.calculateFetchGroup(QUERY + " order by u.name", createView(), true, true));
+
+        assertTrue(description.getAttributes().contains("group.name"));
+        assertTrue(description.isReadOnly());
+        assertFail(() -> description.addAttribute("email"));
+    }
+
+    @Test
+    public void testDifferentViewStructure() {
+        FetchGroupDescription description = fetchGroupManager.calculateFetchGroup(QUERY, createView(), true, true);
+
+        // views with the same name but different properties must not share the fetch group
+        View view = createView().addProperty("email");
+        FetchGroupDescription other = fetchGroupManager.calculateFetchGroup(QUERY, view, true, true);
+        assertNotSame(description, other);
+        assertTrue(other.getAttributes().contains("email"));
+        assertFalse(description.getAttributes().contains("email"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        FetchGroupDescription description = fetchGroupManager.calculateFetchGroup(QUERY, createView(), true, true);
+        fetchGroupManager.invalidateCache();
+        assertNotSame(description, fetchGroupManager.calculateFetchGroup(QUERY, createView(), true, true));
+    }
+
+    private View createView() {
+        return new View(User.class, "testView")
+                .addProperty("login")
+                .addProperty("group", new View(Group.class).addProperty("name"));
+    }
+}
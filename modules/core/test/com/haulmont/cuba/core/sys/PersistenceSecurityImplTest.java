@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys;
+
+import com.haulmont.cuba.core.EntityManager;
+import com.haulmont.cuba.core.PersistenceSecurity;
+import com.haulmont.cuba.core.Query;
+import com.haulmont.cuba.core.Transaction;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.UserSessionSource;
+import com.haulmont.cuba.security.entity.*;
+import com.haulmont.cuba.security.global.UserSession;
+import com.haulmont.cuba.testsupport.TestContainer;
+import com.haulmont.cuba.testsupport.TestUserSessionSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class PersistenceSecurityImplTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private PersistenceSecurityImpl security;
+    private TestUserSessionSource userSessionSource;
+    private UserSession savedUserSession;
+    private UserSession userSession;
+
+    @Before
+    public void setUp() {
+        security = AppBeans.get(PersistenceSecurity.NAME);
+        security.constrainedQueries.invalidateAll();
+
+        userSessionSource = AppBeans.get(UserSessionSource.NAME);
+        savedUserSession = userSessionSource.getUserSession();
+
+        User user = new User();
+        user.setLogin("constraintUser");
+        userSession = new UserSession(UUID.randomUUID(), user, Collections.emptyList(), Locale.ENGLISH, false);
+        userSessionSource.setUserSession(userSession);
+    }
+
+    @After
+    public void tearDown() {
+        userSessionSource.setUserSession(savedUserSession);
+    }
+
+    @Test
+    public void testConstrainedQueryReused() {
+        userSession.addConstraint(createConstraint("{E}.name = :session$groupName"));
+
+        userSession.setAttribute("groupName", "Company");
+        List<Group> groups = loadGroups();
+        assertEquals(1, groups.size());
+        assertEquals("Company", groups.get(0).getName());
+        assertEquals(1, security.constrainedQueries.size());
+
+        // the cached query is used with the parameters of the current session
+        userSession.setAttribute("groupName", "unknown group");
+        assertTrue(loadGroups().isEmpty());
+        assertEquals(1, security.constrainedQueries.size());
+    }
+
+    @Test
+    public void testChangedConstraint() {
+        Constraint constraint = createConstraint("{E}.name = :session$groupName");
+        userSession.addConstraint(constraint);
+        userSession.setAttribute("groupName", "Company");
+
+        String queryString;
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            Query query = cont.persistence().getEntityManager().createQuery("select g from sec$Group g");
+            assertTrue(security.applyConstraints(query));
+            queryString = query.getQueryString();
+            tx.commit();
+        }
+
+        userSession.removeConstraint(constraint);
+        constraint.setWhereClause("{E}.name <> :session$groupName");
+        userSession.addConstraint(constraint);
+
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            Query query = cont.persistence().getEntityManager().createQuery("select g from sec$Group g");
+            assertTrue(security.applyConstraints(query));
+            assertNotEquals(queryString, query.getQueryString());
+            assertTrue(query.getQueryString().contains("<>"));
+            tx.commit();
+        }
+        assertEquals(2, security.constrainedQueries.size());
+    }
+
+    private Constraint createConstraint(String whereClause) {
+        Constraint constraint = cont.metadata().create(Constraint.class);
+        constraint.setEntityName("sec$Group");
+        constraint.setCheckType(ConstraintCheckType.DATABASE);
+        constraint.setOperationType(ConstraintOperationType.READ);
+        constraint.setWhereClause(whereClause);
+        return constraint;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Group> loadGroups() {
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.persistence().getEntityManager();
+            Query query = em.createQuery("select g from sec$Group g");
+            assertTrue(security.applyConstraints(query));
+            List<Group> groups = query.getResultList();
+            tx.commit();
+            return groups;
+        }
+    }
+}
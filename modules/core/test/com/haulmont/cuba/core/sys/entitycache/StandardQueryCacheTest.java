@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.entitycache;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class StandardQueryCacheTest {
+
+    private StandardQueryCache queryCache;
+
+    @Before
+    public void setUp() {
+        queryCache = new StandardQueryCache();
+        queryCache.queryCacheConfig = new QueryCacheConfig() {
+            @Override
+            public boolean getQueryCacheEnabled() {
+                return true;
+            }
+
+            @Override
+            public int getQueryCacheMaxSize() {
+                return 10;
+            }
+        };
+        queryCache.init();
+    }
+
+    @Test
+    public void testFindById() {
+        QueryKey key = createKey("select u from sec$User u");
+        queryCache.put(key, createResult("sec$User"));
+
+        assertEquals(key, queryCache.findQueryKeyById(key.getId()));
+
+        assertEquals(key, queryCache.invalidate(key.getId()));
+        assertNull(queryCache.get(key));
+        assertNull(queryCache.findQueryKeyById(key.getId()));
+        assertTrue(queryCache.typeIndex.isEmpty());
+    }
+
+    @Test
+    public void testInvalidateByType() {
+        QueryKey userKey = createKey("select u from sec$User u");
+        QueryKey groupKey = createKey("select g from sec$Group g");
+        queryCache.put(userKey, createResult("sec$User", "sec$Group"));
+        queryCache.put(groupKey, createResult("sec$Group"));
+
+        queryCache.invalidate("sec$User");
+
+        assertNull(queryCache.get(userKey));
+        assertNotNull(queryCache.get(groupKey));
+        assertNull(queryCache.typeIndex.get("sec$User"));
+        assertEquals(Collections.singleton(groupKey), queryCache.typeIndex.get("sec$Group"));
+
+        queryCache.invalidate(Sets.newHashSet("sec$Group"));
+
+        assertEquals(0, queryCache.size());
+        assertTrue(queryCache.typeIndex.isEmpty());
+        assertTrue(queryCache.idIndex.isEmpty());
+    }
+
+    @Test
+    public void testReplace() {
+        QueryKey key = createKey("select u from sec$User u");
+        queryCache.put(key, createResult("sec$User", "sec$Group"));
+
+        QueryKey sameKey = createKey("select u from sec$User u");
+        queryCache.put(sameKey, createResult("sec$User"));
+
+        assertEquals(1, queryCache.size());
+        assertNull(queryCache.findQueryKeyById(key.getId()));
+        assertEquals(sameKey, queryCache.findQueryKeyById(sameKey.getId()));
+        assertNull(queryCache.typeIndex.get("sec$Group"));
+    }
+
+    @Test
+    public void testEvictionPrunesIndexes() {
+        for (int i = 0; i < 1000; i++) {
+            queryCache.put(createKey("select u from sec$User u where u.id = " + i), createResult("sec$User"));
+        }
+
+        queryCache.data.cleanUp();
+
+        assertTrue(queryCache.size() <= 10);
+        assertEquals(queryCache.size(), queryCache.idIndex.size());
+        assertEquals(queryCache.size(), queryCache.typeIndex.get("sec$User").size());
+    }
+
+    private QueryKey createKey(String queryString) {
+        return new QueryKey(queryString, 0, 0, true, false, null, null);
+    }
+
+    private QueryResult createResult(String... relatedTypes) {
+        return new QueryResult(Collections.emptyList(), relatedTypes[0], Sets.newHashSet(relatedTypes));
+    }
+}
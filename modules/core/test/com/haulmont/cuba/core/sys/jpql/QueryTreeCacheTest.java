@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys.jpql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.haulmont.cuba.core.sys.jpql.model.EntityBuilder;
+import com.haulmont.cuba.core.sys.jpql.model.JpqlEntityModel;
+import com.haulmont.cuba.core.sys.jpql.transform.QueryTreeTransformer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QueryTreeCacheTest {
+
+    private QueryTreeCache queryTreeCache;
+    private DomainModel model;
+
+    @Before
+    public void setUp() {
+        queryTreeCache = new QueryTreeCache() {
+            @Override
+            protected Cache<String, QueryTree> createCache() {
+                return CacheBuilder.newBuilder().maximumSize(10).recordStats().build();
+            }
+        };
+        queryTreeCache.init();
+
+        EntityBuilder builder = new EntityBuilder();
+        JpqlEntityModel teamEntity = builder.produceImmediately("Team", "name");
+        builder.startNewEntity("Player");
+        builder.addStringAttribute("name");
+        builder.addReferenceAttribute("team", "Team");
+        JpqlEntityModel playerEntity = builder.produce();
+        model = new DomainModel(playerEntity, teamEntity);
+    }
+
+    @Test
+    public void testTreeIsShared() {
+        String query = "select p from Player p where p.name = :name";
+        QueryTree tree = queryTreeCache.get(model, query);
+        assertSame(tree, queryTreeCache.get(model, query));
+        assertEquals(1, queryTreeCache.getMissCount());
+        assertEquals(1, queryTreeCache.getHitCount());
+        assertEquals(1, queryTreeCache.getSize());
+
+    }
+
+    @Test
+    public void testModelChange() {
+        String query = "select p from Player p where p.name = :name";
+        QueryTree tree = queryTreeCache.get(model, query);
+
+        // trees of the previous model are dropped, trees of the new one are cached
+        DomainModel otherModel = new DomainModel(new EntityBuilder().produceImmediately("Player", "name"));
+        QueryTree otherTree = queryTreeCache.get(otherModel, query);
+        assertNotSame(tree, otherTree);
+        assertSame(otherTree, queryTreeCache.get(otherModel, query));
+        assertEquals(1, queryTreeCache.getSize());
+
+        assertNotSame(tree, queryTreeCache.get(model, query));
+        assertEquals(1, queryTreeCache.getSize());
+    }
+
+    @Test
+    public void testCopyIsNotShared() {
+        String query = "select p from Player p join p.team t where p.name = :name order by t.name";
+        QueryTree tree = queryTreeCache.get(model, query);
+
+        QueryTree copy = queryTreeCache.getCopy(model, query);
+        assertNotSame(tree, copy);
+        assertEquals(toQuery(tree), toQuery(copy));
+        assertEquals("p", copy.getVariableNameByEntity("Player"));
+
+        new QueryTreeTransformer(copy).removeOrderBy();
+        assertEquals("select p from Player p join p.team t where p.name = :name", toQuery(copy));
+        assertEquals("select p from Player p join p.team t where p.name = :name order by t.name", toQuery(tree));
+        assertEquals(toQuery(tree), toQuery(queryTreeCache.getCopy(model, query)));
+    }
+
+    private String toQuery(QueryTree tree) {
+        return tree.visit(new TreeToQuery()).getQueryString().trim();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import com.haulmont.cuba.core.app.ServerInfoService;
+import com.haulmont.cuba.core.app.TestingService;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.lang.reflect.UndeclaredThrowableException;
+
+import static org.junit.Assert.*;
+
+public class BatchInvokerTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private BatchInvokerBean batchInvoker;
+
+    @Before
+    public void setUp() {
+        batchInvoker = new BatchInvokerBean();
+    }
+
+    @After
+    public void tearDown() {
+        batchInvoker.shutdown();
+    }
+
+    @Test
+    public void testSequential() {
+        doTest(false);
+    }
+
+    @Test
+    public void testParallel() {
+        doTest(true);
+    }
+
+    private void doTest(boolean parallel) {
+        ServerInfoService serverInfoService = AppBeans.get(ServerInfoService.NAME);
+
+        ServiceInvocationBatch batch = new ServiceInvocationBatch(batchInvoker);
+        ServiceInvocationBatch.Result<String> releaseNumber = batch.add(ServerInfoService.NAME, ServerInfoService.class,
+                ServerInfoService::getReleaseNumber);
+        ServiceInvocationBatch.Result<String> exception = batch.add(TestingService.NAME, TestingService.class,
+                service -> {
+                    try {
+                        return service.executeWithException();
+                    } catch (TestingService.TestException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+        ServiceInvocationBatch.Result<Object> unknown = batch.add("cuba_Persistence", ServerInfoService.class,
+                ServerInfoService::getReleaseTimestamp);
+
+        assertEquals(3, batch.size());
+        assertFalse(releaseNumber.isDone());
+
+        batch.execute(parallel);
+
+        assertEquals(0, batch.size());
+        assertEquals(serverInfoService.getReleaseNumber(), releaseNumber.get());
+        try {
+            exception.get();
+            fail();
+        } catch (UndeclaredThrowableException e) {
+            assertTrue(e.getUndeclaredThrowable() instanceof TestingService.TestException);
+        }
+        try {
+            unknown.get();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected, only services can be invoked
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoInvocation() {
+        new ServiceInvocationBatch(batchInvoker).add(ServerInfoService.NAME, ServerInfoService.class, service -> null);
+    }
+}
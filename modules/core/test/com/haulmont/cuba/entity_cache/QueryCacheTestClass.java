@@ -438,6 +438,42 @@ public class QueryCacheTestClass {
         appender.clearMessages();
     }
 
+    @Test
+    public void testQueryWithEvictedEntities() throws Exception {
+        appender.clearMessages();
+        assertEquals(0, queryCache.size());
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.entityManager();
+            TypedQuery<User> query = em.createQuery("select u from sec$User u where u.login like 'ECTest-%' order by u.name desc", User.class);
+            query.setCacheable(true);
+            query.setViewName("user.browse");
+            assertEquals(2, query.getResultList().size());
+            tx.commit();
+        }
+        assertEquals(1, queryCache.size());
+
+        cache.evict(User.class, user.getId());
+        cache.evict(User.class, user2.getId());
+        appender.clearMessages();
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            EntityManager em = cont.entityManager();
+            TypedQuery<User> query = em.createQuery("select u from sec$User u where u.login like 'ECTest-%' order by u.name desc", User.class);
+            query.setCacheable(true);
+            query.setViewName("user.browse");
+            List<User> result = query.getResultList();
+            assertEquals(2, result.size());
+            assertUserBrowseView(result.get(0));
+            assertEquals(this.user2.getLogin(), result.get(0).getLogin());
+            assertUserBrowseView(result.get(1));
+            assertEquals(this.user.getLogin(), result.get(1).getLogin());
+            assertEquals(this.group, result.get(1).getGroup());
+            tx.commit();
+        }
+        // evicted users are loaded by one query instead of one query per user
+        assertEquals(1, appender.filterMessages(m -> m.contains("> SELECT") && m.contains("SEC_USER")).count());
+        appender.clearMessages();
+    }
+
     @Test
     public void testQueryPaging() throws Exception {
         appender.clearMessages();
@@ -25,7 +25,9 @@ import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.TypedQuery;
 import com.haulmont.cuba.core.global.AppBeans;
 import com.haulmont.cuba.core.global.Messages;
+import com.haulmont.cuba.core.global.TimeSource;
 import com.haulmont.cuba.security.app.EntityLogAPI;
+import com.haulmont.cuba.security.app.EntityLogWriter;
 import com.haulmont.cuba.security.entity.*;
 import com.haulmont.cuba.testsupport.TestContainer;
 import org.junit.After;
@@ -313,6 +315,39 @@ public class EntityLogTest {
         assertEquals("changed-name@test.com", attr.getOldValue());
     }
 
+    @Test
+    public void testAsyncWriter() throws Exception {
+        EntityLogWriter writer = AppBeans.get(EntityLogWriter.NAME);
+        long writtenCount = writer.getWrittenCount();
+
+        userId = UUID.randomUUID();
+        EntityLogItem item = cont.metadata().create(EntityLogItem.class);
+        item.setEventTs(AppBeans.get(TimeSource.class).currentTimestamp());
+        item.setType(EntityLogItem.Type.MODIFY);
+        item.setEntity("sec$User");
+        item.setObjectEntityId(userId);
+        item.setChanges("email=changed@test.com\n");
+        try (Transaction tx = cont.persistence().createTransaction()) {
+            item.setUser(cont.persistence().getEntityManager().find(User.class,
+                    UUID.fromString("60885987-1b61-4247-94c7-dff348347f93")));
+            tx.commit();
+        }
+
+        writer.enqueue(item, "admin");
+
+        long start = System.currentTimeMillis();
+        while (writer.getWrittenCount() == writtenCount && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(50);
+        }
+
+        List<EntityLogItem> items = getEntityLogItems();
+        assertEquals(1, items.size());
+        assertEquals(item.getId(), items.get(0).getId());
+        assertEquals(EntityLogItem.Type.MODIFY, items.get(0).getType());
+        assertEquals("admin", items.get(0).getCreatedBy());
+        assertEquals(0, writer.getQueueSize());
+    }
+
     private List<EntityLogItem> getEntityLogItems() {
         Transaction tx;
         List<EntityLogItem> items;
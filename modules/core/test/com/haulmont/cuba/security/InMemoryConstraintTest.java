@@ -19,6 +19,7 @@ package com.haulmont.cuba.security;
 import com.haulmont.cuba.core.EntityManager;
 import com.haulmont.cuba.core.Transaction;
 import com.haulmont.cuba.core.global.*;
+import com.haulmont.cuba.core.sys.SecurityImpl;
 import com.haulmont.cuba.security.auth.AuthenticationManager;
 import com.haulmont.cuba.security.auth.Credentials;
 import com.haulmont.cuba.security.auth.LoginPasswordCredentials;
@@ -38,6 +39,7 @@ import java.util.Locale;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class InMemoryConstraintTest {
 
@@ -358,6 +360,37 @@ public class InMemoryConstraintTest {
     }
 
 
+    @Test
+    public void testConstraintStatistics() throws LoginException {
+        SecurityImpl security = AppBeans.get(Security.NAME);
+        security.resetConstraintStatistics();
+
+        AuthenticationManager lw = AppBeans.get(AuthenticationManager.NAME);
+        Credentials credentials = new LoginPasswordCredentials("constraintUser1", PASSWORD, Locale.getDefault());
+        UserSession userSession = lw.login(credentials).getSession();
+        assertNotNull(userSession);
+
+        UserSessionSource uss = AppBeans.get(UserSessionSource.class);
+        UserSession savedUserSession = uss.getUserSession();
+        ((TestUserSessionSource) uss).setUserSession(userSession);
+        try {
+            DataManager dataManager = AppBeans.get(DataManager.NAME);
+            dataManager = dataManager.secure();
+            LoadContext loadContext = new LoadContext(User.class).setView(View.LOCAL);
+            loadContext.setQuery(new LoadContext.Query("select u from sec$User u where u.login like 'user3%'"));
+            List<User> resultList = dataManager.loadList(loadContext);
+            assertEquals(11, resultList.size());
+        } finally {
+            ((TestUserSessionSource) uss).setUserSession(savedUserSession);
+        }
+
+        SecurityImpl.ConstraintStatistics statistics = security.getConstraintStatistics().stream()
+                .filter(s -> s.getConstraintId().equals(constraint1.getId()))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertTrue(statistics.getExecutions() >= 11);
+        assertEquals(0, statistics.getFailures());
+    }
 
     @After
     public void tearDown() throws Exception {
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.security.app;
+
+import com.haulmont.cuba.core.app.ClusterManager;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.Metadata;
+import com.haulmont.cuba.core.global.TimeSource;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionInfo;
+import com.haulmont.cuba.security.app.UserSessions.UserSessionsHeartbeat;
+import com.haulmont.cuba.security.entity.User;
+import com.haulmont.cuba.security.global.UserSession;
+import com.haulmont.cuba.testsupport.TestContainer;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class UserSessionsTest {
+
+    @ClassRule
+    public static TestContainer cont = TestContainer.Common.INSTANCE;
+
+    private TestClusterManager clusterManager;
+    private UserSessions sender;
+    private UserSessions receiver;
+
+    @Before
+    public void setUp() {
+        clusterManager = new TestClusterManager();
+        sender = createUserSessions(clusterManager);
+        receiver = createUserSessions(new TestClusterManager());
+    }
+
+    @Test
+    public void testRemovalAfterAddition() {
+        UserSession touched = createSession();
+        sender.add(touched);
+        deliver();
+
+        // the heartbeat is queued first in the batch window
+        touch(touched);
+        sender.sendHeartbeats();
+
+        UserSession session = createSession();
+        sender.add(session);
+        sender.remove(session);
+        List<Serializable> messages = deliver();
+
+        // the removal is delivered after the addition although the messages have different classes
+        assertEquals(3, messages.size());
+        assertTrue(messages.get(0) instanceof UserSessionsHeartbeat);
+        assertTrue(messages.get(1) instanceof UserSessionInfo);
+        assertTrue(messages.get(2) instanceof UserSessionsHeartbeat);
+        assertEquals(0, ((UserSessionsHeartbeat) messages.get(2)).lastUsedTs[0]);
+
+        assertNotNull(receiver.get(touched.getId()));
+        assertNull(receiver.get(session.getId()));
+    }
+
+    @Test
+    public void testKillAndEviction() {
+        UserSession killed = createSession();
+        UserSession expired = createSession();
+        UserSession expired2 = createSession();
+        sender.add(killed);
+        sender.add(expired);
+        sender.add(expired2);
+        deliver();
+        assertNotNull(receiver.get(killed.getId()));
+        assertNotNull(receiver.get(expired.getId()));
+        assertNotNull(receiver.get(expired2.getId()));
+
+        sender.killSession(killed.getId());
+        touch(expired);
+        sender.getSessionInfo(expired.getId()).lastUsedTs = 1;
+        sender.getSessionInfo(expired2.getId()).lastUsedTs = 1;
+        sender.processEviction();
+        List<Serializable> messages = deliver();
+
+        // the kill is sent right away, the evictions are sent in one heartbeat
+        assertEquals(2, messages.size());
+        assertEquals(1, ((UserSessionsHeartbeat) messages.get(0)).size());
+        UserSessionsHeartbeat evictions = (UserSessionsHeartbeat) messages.get(1);
+        assertEquals(2, evictions.size());
+        assertEquals(0, evictions.lastUsedTs[0]);
+        assertEquals(0, evictions.lastUsedTs[1]);
+
+        assertNull(receiver.get(killed.getId()));
+        assertNull(receiver.get(expired.getId()));
+        assertNull(receiver.get(expired2.getId()));
+    }
+
+    @Test
+    public void testHeartbeat() {
+        UserSession session = createSession();
+        sender.add(session);
+        deliver();
+        receiver.getSessionInfo(session.getId()).lastUsedTs = 1;
+
+        touch(session);
+        sender.sendHeartbeats();
+        List<Serializable> messages = deliver();
+
+        assertEquals(1, messages.size());
+        assertTrue(messages.get(0) instanceof UserSessionsHeartbeat);
+        assertEquals(sender.getSessionInfo(session.getId()).lastSentTs,
+                receiver.getSessionInfo(session.getId()).lastUsedTs);
+    }
+
+    @Test
+    public void testReceiveHeartbeat() {
+        UserSession session = createSession();
+        sender.add(session);
+        deliver();
+
+        UUID unknownId = UUID.randomUUID();
+        long lastUsedTs = receiver.getSessionInfo(session.getId()).lastUsedTs + 1000;
+        UserSessionsHeartbeat heartbeat = (UserSessionsHeartbeat) SerializationSupport.deserialize(
+                SerializationSupport.serialize(new UserSessionsHeartbeat(
+                        Arrays.asList(session.getId(), unknownId), Arrays.asList(lastUsedTs, lastUsedTs))));
+
+        assertEquals(2, heartbeat.size());
+        assertEquals(session.getId(), heartbeat.getId(0));
+        assertEquals(unknownId, heartbeat.getId(1));
+        assertEquals(lastUsedTs, heartbeat.lastUsedTs[1]);
+
+        receiver.receiveHeartbeat(heartbeat);
+        assertEquals(lastUsedTs, receiver.getSessionInfo(session.getId()).lastUsedTs);
+        assertNull(receiver.getSessionInfo(unknownId));
+
+        // an older timestamp does not move the last used time back
+        receiver.receiveHeartbeat(new UserSessionsHeartbeat(
+                Collections.singletonList(session.getId()), Collections.singletonList(lastUsedTs - 5000)));
+        assertEquals(lastUsedTs, receiver.getSessionInfo(session.getId()).lastUsedTs);
+    }
+
+    @Test
+    public void testAttributeIndex() {
+        enableIndexes(sender);
+        UserSession session = createSession();
+        session.setAttribute("tenant", "a");
+        sender.add(session);
+        assertEquals(Collections.singletonList(session.getId()), sender.findUserSessionsByAttribute("tenant", "a"));
+
+        // changed without propagation
+        session.setAttribute("tenant", "b");
+        assertTrue(sender.findUserSessionsByAttribute("tenant", "a").isEmpty());
+        assertEquals(Collections.singletonList(session.getId()), sender.findUserSessionsByAttribute("tenant", "b"));
+
+        session.removeAttribute("tenant");
+        assertTrue(sender.findUserSessionsByAttribute("tenant", "b").isEmpty());
+
+        session.setAttribute("tenant", "c");
+        sender.remove(session);
+        assertTrue(sender.findUserSessionsByAttribute("tenant", "c").isEmpty());
+        assertTrue(sender.attributeIndex.isEmpty());
+        assertTrue(sender.sessionIndexKeys.isEmpty());
+    }
+
+    @Test
+    public void testAttributeIndexOnReceiver() {
+        enableIndexes(receiver);
+        UserSession session = createSession();
+        session.setAttribute("tenant", "a");
+        sender.add(session);
+        deliver();
+        assertEquals(Collections.singletonList(session.getId()), receiver.findUserSessionsByAttribute("tenant", "a"));
+
+        session.setAttribute("tenant", "b");
+        sender.propagate(session.getId());
+        deliver();
+        assertTrue(receiver.findUserSessionsByAttribute("tenant", "a").isEmpty());
+        assertEquals(Collections.singletonList(session.getId()), receiver.findUserSessionsByAttribute("tenant", "b"));
+
+        // a received session reports its own changes as well
+        receiver.get(session.getId()).setAttribute("tenant", "c");
+        assertEquals(Collections.singletonList(session.getId()), receiver.findUserSessionsByAttribute("tenant", "c"));
+
+        UserSessions joined = createUserSessions(new TestClusterManager());
+        enableIndexes(joined);
+        joined.receiveClusterState(receiver.sendClusterState());
+        assertEquals(Collections.singletonList(session.getId()), joined.findUserSessionsByAttribute("tenant", "c"));
+        assertEquals(1, joined.getUserSessionsStream(session.getUser().getId()).count());
+
+        sender.remove(session);
+        deliver();
+        assertTrue(receiver.findUserSessionsByAttribute("tenant", "c").isEmpty());
+        assertTrue(receiver.sessionIndexKeys.isEmpty());
+    }
+
+    @Test
+    public void testUserIndex() {
+        enableIndexes(sender);
+        UserSession session = createSession();
+        User user = session.getUser();
+        sender.add(session);
+        assertEquals(Collections.singletonList(session), collectSessions(user));
+
+        User substitutedUser = new User();
+        substitutedUser.setLogin("substituted");
+        UserSession substituted = new UserSession(session, substitutedUser, Collections.emptyList(), Locale.ENGLISH);
+        sender.add(substituted);
+        assertEquals(Collections.singletonList(substituted), collectSessions(user));
+        assertEquals(Collections.singletonList(substituted), collectSessions(substitutedUser));
+
+        sender.remove(substituted);
+        assertTrue(collectSessions(user).isEmpty());
+        assertTrue(collectSessions(substitutedUser).isEmpty());
+        assertTrue(sender.userIndex.isEmpty());
+    }
+
+    private List<UserSession> collectSessions(User user) {
+        return sender.getUserSessionsStream(user.getId()).collect(Collectors.toList());
+    }
+
+    private void enableIndexes(UserSessions userSessions) {
+        userSessions.indexedAttributes = Collections.singleton("tenant");
+        userSessions.userIndexEnabled = true;
+    }
+
+    private void touch(UserSession session) {
+        sender.getSessionInfo(session.getId()).lastSentTs = 0;
+        sender.getAndRefresh(session.getId(), true);
+    }
+
+    private List<Serializable> deliver() {
+        List<Serializable> messages = clusterManager.flush();
+        for (Serializable message : messages) {
+            Object received = SerializationSupport.deserialize(SerializationSupport.serialize(message));
+            if (received instanceof UserSessionInfo) {
+                receiver.receiveClusterMessage((UserSessionInfo) received);
+            } else {
+                receiver.receiveHeartbeat((UserSessionsHeartbeat) received);
+            }
+        }
+        return messages;
+    }
+
+    private UserSessions createUserSessions(ClusterManager clusterManager) {
+        UserSessions userSessions = new UserSessions();
+        userSessions.timeSource = AppBeans.get(TimeSource.NAME);
+        userSessions.metadata = AppBeans.get(Metadata.NAME);
+        userSessions.userSessionLog = AppBeans.get(UserSessionLog.NAME);
+        userSessions.setConfiguration(AppBeans.get(Configuration.NAME));
+        userSessions.setClusterManager(clusterManager);
+        return userSessions;
+    }
+
+    private UserSession createSession() {
+        User user = new User();
+        user.setLogin("test");
+        return new UserSession(UUID.randomUUID(), user, Collections.emptyList(), Locale.ENGLISH, false);
+    }
+
+    /**
+     * Queues messages and sends them through the batching of the cluster manager without a channel.
+     */
+    private static class TestClusterManager extends ClusterManager {
+
+        private List<PendingMessage> queue = new ArrayList<>();
+        private List<Serializable> sent = new ArrayList<>();
+
+        @Override
+        public void send(Serializable message) {
+            queue.add(new PendingMessage(message));
+        }
+
+        @Override
+        public void sendSync(Serializable message) {
+            send(message);
+        }
+
+        @Override
+        protected void internalSend(Serializable message, boolean sync) {
+            sent.add(message);
+        }
+
+        @Override
+        protected void internalSendBatch(String className, List<Serializable> messages) {
+            sent.addAll(messages);
+        }
+
+        private List<Serializable> flush() {
+            sendBatches(queue);
+            queue.clear();
+            List<Serializable> result = new ArrayList<>(sent);
+            sent.clear();
+            return result;
+        }
+    }
+}
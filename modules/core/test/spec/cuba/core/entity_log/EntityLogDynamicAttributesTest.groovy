@@ -24,6 +24,7 @@ import com.haulmont.cuba.core.entity.Category
 import com.haulmont.cuba.core.entity.CategoryAttribute
 import com.haulmont.cuba.core.entity.ReferenceToEntity
 import com.haulmont.cuba.core.global.AppBeans
+import com.haulmont.cuba.core.global.CommitContext
 import com.haulmont.cuba.core.global.DataManager
 import com.haulmont.cuba.core.global.LoadContext
 import com.haulmont.cuba.core.global.View
@@ -39,7 +40,8 @@ import java.sql.SQLException
 class EntityLogDynamicAttributesTest extends AbstractEntityLogTest {
 
 
-    private UUID userId, categoryId, categoryAttributeId
+    private UUID categoryId, categoryAttributeId
+    private List<UUID> userIds = []
     private DataManager dataManager
     private DynamicAttributesManagerAPI dynamicAttributesManagerAPI
 
@@ -98,8 +100,9 @@ class EntityLogDynamicAttributesTest extends AbstractEntityLogTest {
 
         clearEntityLogTables()
 
-        if (userId != null)
-            cont.deleteRecord("SEC_USER", userId)
+        userIds.each {
+            cont.deleteRecord("SEC_USER", it)
+        }
 
         cont.deleteRecord("SYS_CATEGORY_ATTR", categoryAttributeId)
         cont.deleteRecord("SYS_CATEGORY", categoryId)
@@ -181,6 +184,35 @@ class EntityLogDynamicAttributesTest extends AbstractEntityLogTest {
 
     }
 
+    def "EntityLog logs dynamic attributes of several entities committed together"() {
+
+        given:
+
+        User existingUser = createAndSaveUser('oldUserName')
+        User newUser = createUser('test2')
+
+        when:
+
+        existingUser.setValue(DYNAMIC_ATTRIBUTE_NAME, 'updatedUserName')
+        newUser.setValue(DYNAMIC_ATTRIBUTE_NAME, 'newUserName')
+        dataManager.commit(new CommitContext(existingUser, newUser))
+
+        def existingUserLog = latestEntityLogItem(existingUser)
+        def newUserLog = latestEntityLogItem(newUser)
+
+        then:
+
+        isModifyType(existingUserLog)
+        loggedValueMatches(existingUserLog, 'updatedUserName')
+        loggedOldValueMatches(existingUserLog, 'oldUserName')
+
+        and:
+
+        isCreateType(newUserLog)
+        loggedValueMatches(newUserLog, 'newUserName')
+
+    }
+
     protected boolean isModifyType(EntityLogItem entityLogItem) {
         entityLogItem.type == EntityLogItem.Type.MODIFY
     }
@@ -203,10 +235,14 @@ class EntityLogDynamicAttributesTest extends AbstractEntityLogTest {
 
 
     private User createUser() {
+        createUser("test")
+    }
+
+    private User createUser(String login) {
         User user = cont.metadata().create(User)
-        userId = user.id
+        userIds << user.id
         user.group = findCompanyGroup()
-        user.login = "test"
+        user.login = login
         user.name = 'test-name'
 
         // the dynamic attribute has to be loaded explicitly in order to work with it further down the road
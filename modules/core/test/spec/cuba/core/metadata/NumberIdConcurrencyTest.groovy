@@ -22,6 +22,7 @@ import com.haulmont.cuba.core.app.NumberIdWorker
 import com.haulmont.cuba.core.global.AppBeans
 import com.haulmont.cuba.core.global.DataManager
 import com.haulmont.cuba.core.global.Metadata
+import com.haulmont.cuba.core.global.NumberIdSource
 import com.haulmont.cuba.core.sys.AppContext
 import com.haulmont.cuba.core.sys.NumberIdCache
 import com.haulmont.cuba.core.sys.SecurityContextAwareRunnable
@@ -34,6 +35,7 @@ import org.slf4j.Logger
 import org.slf4j.LoggerFactory
 import spock.lang.Shared
 import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
 
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
@@ -134,6 +136,39 @@ class NumberIdConcurrencyTest extends Specification {
         AppContext.setProperty('cuba.numberIdCacheSize', null)
     }
 
+    def "next block of ids is prefetched"() {
+        AppContext.setProperty('cuba.numberIdCacheSize', '10')
+
+        NumberIdCache numberIdCache = AppBeans.get(NumberIdCache)
+        NumberIdSource numberIdSource = AppBeans.get(NumberIdSource)
+        String entityName = 'test$NumberIdSingleTableRoot'
+
+        when:
+
+        long refills = numberIdCache.blockRefillsCount
+        List<Long> ids = (1..5).collect { numberIdSource.createLongId(entityName) }
+
+        then:
+
+        new PollingConditions(timeout: 5).eventually {
+            assert numberIdCache.blockRefillsCount == refills + 2
+        }
+
+        when:
+
+        long waits = numberIdCache.blockWaitsCount
+        ids.addAll((1..10).collect { numberIdSource.createLongId(entityName) })
+
+        then:
+
+        ids == (ids[0]..ids[0] + 14).toList()
+        numberIdCache.blockWaitsCount == waits
+
+        cleanup:
+
+        AppContext.setProperty('cuba.numberIdCacheSize', null)
+    }
+
     private void generateSomeEntities(int count) {
         long start = System.currentTimeMillis()
         ExecutorService executorService = Executors.newFixedThreadPool(10)
@@ -22,6 +22,7 @@ import com.haulmont.cuba.core.global.DataManager
 import com.haulmont.cuba.core.global.Metadata
 import com.haulmont.cuba.core.global.View
 import com.haulmont.cuba.core.sys.serialization.KryoSerialization
+import com.haulmont.cuba.core.sys.serialization.SerializationException
 import com.haulmont.cuba.testmodel.sales.Order
 import com.haulmont.cuba.testmodel.sales.OrderLine
 import com.haulmont.cuba.testsupport.TestContainer
@@ -29,6 +30,7 @@ import org.junit.ClassRule
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.nio.ByteBuffer
 import java.util.regex.Matcher
 import java.util.regex.Pattern
 
@@ -91,4 +93,56 @@ class KryoSerializationTest extends Specification {
         matcher.find()
         matcher.group() != null
     }
+
+    def "pooled buffers are reused between calls"() {
+        setup:
+        def view = new View(Order)
+                .addProperty("number")
+                .addProperty("lineSet", new View(OrderLine).addProperty("product"))
+        Order order = dataManager.load(Order).id(orderId).view(view).one()
+        KryoSerialization kryoSerialization = new KryoSerialization()
+
+        when:
+        byte[] large = kryoSerialization.serialize(new byte[2 * 1024 * 1024])
+        byte[] first = kryoSerialization.serialize(order)
+        byte[] second = kryoSerialization.serialize(order)
+        Order result = (Order) kryoSerialization.deserialize(first)
+
+        then:
+        large.length > 2 * 1024 * 1024
+        first == second
+        result.number == 'orderNumber#1'
+        result.lineSet[0].product == 'product'
+
+        when:
+        def os = new ByteArrayOutputStream()
+        kryoSerialization.serialize(order, os)
+        def is = new ByteArrayInputStream(os.toByteArray())
+
+        then:
+        ((Order) kryoSerialization.deserialize(is)).lineSet[0].id == orderLineId
+    }
+
+    def "serialization to ByteBuffer"() {
+        setup:
+        Order order = dataManager.load(Order).id(orderId).view(View.LOCAL).one()
+        KryoSerialization kryoSerialization = new KryoSerialization()
+
+        when:
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024)
+        kryoSerialization.serialize(order, buffer)
+        kryoSerialization.serialize('second', buffer)
+        buffer.flip()
+
+        then:
+        ((Order) kryoSerialization.deserialize(buffer)).number == 'orderNumber#1'
+        kryoSerialization.deserialize(buffer) == 'second'
+        !buffer.hasRemaining()
+
+        when:
+        kryoSerialization.serialize(order, ByteBuffer.allocate(4))
+
+        then:
+        thrown(SerializationException)
+    }
 }
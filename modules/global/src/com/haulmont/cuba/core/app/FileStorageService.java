@@ -19,6 +19,8 @@ package com.haulmont.cuba.core.app;
 import com.haulmont.cuba.core.entity.FileDescriptor;
 import com.haulmont.cuba.core.global.FileStorageException;
 
+import javax.annotation.Nullable;
+
 /**
  * Provides simple means to work with the file storage from the client tier.
  * <br>
@@ -29,6 +31,11 @@ public interface FileStorageService {
 
     String NAME = "cuba_FileStorageService";
 
+    /**
+     * Algorithm of checksums passed to {@link #saveChunk(FileDescriptor, long, byte[], String)}.
+     */
+    String CHUNK_CHECKSUM_ALGORITHM = "SHA-256";
+
     void saveFile(FileDescriptor fileDescr, byte[] data) throws FileStorageException;
 
     void removeFile(FileDescriptor fileDescr) throws FileStorageException;
@@ -36,4 +43,43 @@ public interface FileStorageService {
     byte[] loadFile(FileDescriptor fileDescr) throws FileStorageException;
 
     boolean fileExists(FileDescriptor fileDescr) throws FileStorageException;
+
+    /**
+     * Loads a part of the file content.
+     *
+     * @param offset position of the first byte to load
+     * @param length maximum number of bytes to load
+     * @return loaded bytes, shorter than {@code length} if the end of the file is reached
+     */
+    byte[] loadFile(FileDescriptor fileDescr, long offset, int length) throws FileStorageException;
+
+    /**
+     * @return true if the file storage supports the upload by parts
+     */
+    boolean supportsChunkedUpload();
+
+    /**
+     * Saves a chunk of the file being uploaded by parts. Chunks can be sent in any order and in parallel;
+     * a chunk failed with the checksum mismatch can be sent again.
+     *
+     * @param offset   position of the chunk in the file
+     * @param data     chunk content
+     * @param checksum hex-encoded {@link #CHUNK_CHECKSUM_ALGORITHM} digest of the chunk, or null
+     * @throws FileStorageException with {@link FileStorageException.Type#UNSUPPORTED_OPERATION} type
+     * if the file storage does not support the upload by parts
+     */
+    void saveChunk(FileDescriptor fileDescr, long offset, byte[] data, @Nullable String checksum)
+            throws FileStorageException;
+
+    /**
+     * Completes the upload started by {@link #saveChunk(FileDescriptor, long, byte[], String)}.
+     *
+     * @param size total size of the file
+     */
+    void commitChunks(FileDescriptor fileDescr, long size) throws FileStorageException;
+
+    /**
+     * Discards the chunks saved by {@link #saveChunk(FileDescriptor, long, byte[], String)}.
+     */
+    void abortChunks(FileDescriptor fileDescr) throws FileStorageException;
 }
\ No newline at end of file
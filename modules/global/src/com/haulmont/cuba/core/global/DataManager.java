@@ -25,6 +25,7 @@ import com.haulmont.cuba.core.entity.contracts.Id;
 
 import javax.annotation.Nullable;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Central interface to provide CRUD functionality. Can be used on both middle and client tiers.
@@ -60,6 +61,43 @@ public interface DataManager {
      */
     <E extends Entity> List<E> loadList(LoadContext<E> context);
 
+    /**
+     * Loads entity instances and passes them to the consumer one by one, without materializing the whole result list.
+     * <p>The instances are loaded in chunks of {@link LoadContext.Query#getFetchSize()} rows. On the middleware,
+     * the chunks are read from a database cursor inside a single transaction, and each chunk is detached
+     * before passing to the consumer. On the client tier, the chunks are loaded by separate {@link #loadList} calls.
+     * </p>
+     * @param context   {@link LoadContext} object, defining what and how to load
+     * @param consumer  receives detached instances
+     */
+    @SuppressWarnings("unchecked")
+    default <E extends Entity> void stream(LoadContext<E> context, Consumer<? super E> consumer) {
+        if (context.getQuery() == null || context.getId() != null) {
+            loadList(context).forEach(consumer);
+            return;
+        }
+        LoadContext<E> chunkContext = (LoadContext<E>) context.copy();
+        LoadContext.Query query = chunkContext.getQuery();
+        int fetchSize = query.getFetchSize();
+        int remaining = query.getMaxResults() > 0 ? query.getMaxResults() : Integer.MAX_VALUE;
+        while (remaining > 0) {
+            int size = Math.min(fetchSize, remaining);
+            query.setMaxResults(size);
+            // the store can modify the query, so load each chunk by a copy of the context
+            List<E> chunk = loadList((LoadContext<E>) chunkContext.copy());
+            chunk.forEach(consumer);
+            if (chunk.size() < size) {
+                break;
+            }
+            remaining -= size;
+            if (query.isKeysetPagination()) {
+                query.setKeysetPosition(KeysetPosition.of(chunk.get(chunk.size() - 1), query.getSort()));
+            } else {
+                query.setFirstResult(query.getFirstResult() + size);
+            }
+        }
+    }
+
     /**
      * Returns the number of entity instances for the given query passed in the {@link LoadContext}.
      * @param context   defines the query
@@ -26,7 +26,8 @@ public class FileStorageException extends Exception {
         FILE_ALREADY_EXISTS("File already exists", 500),
         FILE_NOT_FOUND("File not found", 404),
         MORE_THAN_ONE_FILE("More than one file with this name exists", 500),
-        STORAGE_INACCESSIBLE("Can not get access to the storage", 503);
+        STORAGE_INACCESSIBLE("Can not get access to the storage", 503),
+        UNSUPPORTED_OPERATION("Operation is not supported by the storage", 501);
 
         private String message;
 
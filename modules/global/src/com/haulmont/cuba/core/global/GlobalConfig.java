@@ -239,4 +239,12 @@ public interface GlobalConfig extends Config {
     @Factory(factory = CommaSeparatedStringListTypeFactory.class)
     @Stringify(stringify = CommaSeparatedStringListStringify.class)
     List<String> getDisableEscapingLikeForDataStores();
+
+    /**
+     * Maximum number of parsed JPQL queries kept in memory for reuse by {@code QueryParser} and
+     * {@code QueryTransformer}.
+     */
+    @Property("cuba.parsedQueryCacheMaxSize")
+    @DefaultInt(1000)
+    int getParsedQueryCacheMaxSize();
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.global;
+
+import com.haulmont.bali.util.Preconditions;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.entity.IdProxy;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Continuation token for keyset (seek) pagination. Contains values of the sort attributes and the identifier
+ * of the last loaded entity. The next page is loaded starting right after the entity with these values.
+ * <p>Typical usage:
+ * <pre>
+    LoadContext.Query query = LoadContext.createQuery("select o from sales$Order o")
+            .setSort(Sort.by("number"))
+            .setKeysetPagination(true)
+            .setMaxResults(100);
+    List&lt;Order&gt; page = dataManager.loadList(LoadContext.create(Order.class).setQuery(query));
+
+    Order last = page.get(page.size() - 1);
+    query.setKeysetPosition(KeysetPosition.of(last, query.getSort()));
+    List&lt;Order&gt; nextPage = dataManager.loadList(LoadContext.create(Order.class).setQuery(query));
+ * </pre>
+ *
+ * @see LoadContext.Query#setKeysetPosition(KeysetPosition)
+ */
+public class KeysetPosition implements Serializable {
+
+    private static final long serialVersionUID = 1418620412264325412L;
+
+    private final List<Object> sortValues;
+    private final Object id;
+
+    /**
+     * Creates the position pointing right after the given entity.
+     *
+     * @param entity last entity of the previous page
+     * @param sort   sort of the query, the same as used to load the previous page
+     */
+    public static KeysetPosition of(Entity entity, @Nullable Sort sort) {
+        Preconditions.checkNotNullArgument(entity, "entity is null");
+
+        List<Object> values = new ArrayList<>();
+        if (sort != null) {
+            for (Sort.Order order : sort.getOrders()) {
+                values.add(entity.getValueEx(order.getProperty()));
+            }
+        }
+        Object id = entity.getId();
+        if (id instanceof IdProxy) {
+            id = ((IdProxy) id).getNN();
+        }
+        return new KeysetPosition(values, id);
+    }
+
+    /**
+     * @param sortValues values of the sort attributes in the order of {@link Sort#getOrders()}
+     * @param id         identifier of the last loaded entity
+     */
+    public KeysetPosition(List<Object> sortValues, Object id) {
+        Preconditions.checkNotNullArgument(sortValues, "sortValues is null");
+        Preconditions.checkNotNullArgument(id, "id is null");
+        this.sortValues = Collections.unmodifiableList(new ArrayList<>(sortValues));
+        this.id = id;
+    }
+
+    /**
+     * @return unmodifiable list of the sort attribute values
+     */
+    public List<Object> getSortValues() {
+        return sortValues;
+    }
+
+    /**
+     * @return identifier of the last loaded entity
+     */
+    public Object getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        KeysetPosition that = (KeysetPosition) o;
+
+        return sortValues.equals(that.sortValues) && id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sortValues.hashCode() + id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetPosition{" +
+                "sortValues=" + sortValues +
+                ", id=" + id +
+                '}';
+    }
+}
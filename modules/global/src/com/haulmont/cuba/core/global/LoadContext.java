@@ -319,6 +319,11 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
 
         private static final long serialVersionUID = 3819951144050635838L;
 
+        /**
+         * Default number of rows fetched in one round-trip by {@link DataManager#stream(LoadContext, java.util.function.Consumer)}.
+         */
+        public static final int DEFAULT_FETCH_SIZE = 500;
+
         private Map<String, Object> parameters = new HashMap<>();
         private String[] noConversionParams;
         private String queryString;
@@ -327,6 +332,9 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
         private boolean cacheable;
         private Condition condition;
         private Sort sort;
+        private boolean keysetPagination;
+        private KeysetPosition keysetPosition;
+        private int fetchSize = DEFAULT_FETCH_SIZE;
 
         /**
          * @param queryString JPQL query string. Only named parameters are supported.
@@ -459,6 +467,67 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             return this;
         }
 
+        /**
+         * Turns on keyset (seek) pagination. In this mode the results are ordered by the query {@link #getSort() sort}
+         * and the entity identifier, and the page is selected by {@link #getKeysetPosition() keyset position}
+         * instead of {@link #getFirstResult() first result}, so loading any page costs the same as loading the first one.
+         * <p>The sort may contain only persistent attributes of simple types having non-null values.
+         * @return this query instance for chaining
+         */
+        public Query setKeysetPagination(boolean keysetPagination) {
+            this.keysetPagination = keysetPagination;
+            return this;
+        }
+
+        /**
+         * @return true if keyset pagination is turned on
+         */
+        public boolean isKeysetPagination() {
+            return keysetPagination;
+        }
+
+        /**
+         * Sets the position after which the results should be loaded in the keyset pagination mode.
+         * A non-null position turns the keyset pagination on.
+         * @param keysetPosition position of the last entity of the previous page, or null to load the first page
+         * @return this query instance for chaining
+         */
+        public Query setKeysetPosition(@Nullable KeysetPosition keysetPosition) {
+            this.keysetPosition = keysetPosition;
+            if (keysetPosition != null) {
+                this.keysetPagination = true;
+            }
+            return this;
+        }
+
+        /**
+         * @return position after which the results are loaded in the keyset pagination mode
+         */
+        @Nullable
+        public KeysetPosition getKeysetPosition() {
+            return keysetPosition;
+        }
+
+        /**
+         * Sets the number of rows fetched from the data store in one round-trip when the results are processed
+         * by {@link DataManager#stream(LoadContext, java.util.function.Consumer)}. Does not affect other load operations.
+         * @param fetchSize positive number of rows
+         * @return this query instance for chaining
+         */
+        public Query setFetchSize(int fetchSize) {
+            if (fetchSize <= 0)
+                throw new IllegalArgumentException("fetchSize must be positive");
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        /**
+         * @return number of rows fetched from the data store in one round-trip when streaming the results
+         */
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
         /**
          * Indicates that the query results should be cached.
          * @return the same query instance
@@ -503,6 +572,9 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             query.cacheable = cacheable;
             query.condition = condition == null ? null : condition.copy();
             query.sort = sort;
+            query.keysetPagination = keysetPagination;
+            query.keysetPosition = keysetPosition;
+            query.fetchSize = fetchSize;
             return query;
         }
 
@@ -515,6 +587,8 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
 
             if (firstResult != query.firstResult) return false;
             if (maxResults != query.maxResults) return false;
+            if (keysetPagination != query.keysetPagination) return false;
+            if (!Objects.equals(keysetPosition, query.keysetPosition)) return false;
             if (!parameters.equals(query.parameters)) return false;
             return queryString.equals(query.queryString);
         }
@@ -525,6 +599,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
             result = 31 * result + queryString.hashCode();
             result = 31 * result + firstResult;
             result = 31 * result + maxResults;
+            result = 31 * result + (keysetPosition != null ? keysetPosition.hashCode() : 0);
             return result;
         }
 
@@ -534,6 +609,7 @@ public class LoadContext<E extends Entity> implements DataLoadContext, Serializa
                     "queryString='" + queryString + '\'' +
                     ", firstResult=" + firstResult +
                     ", maxResults=" + maxResults +
+                    (keysetPagination ? ", keysetPosition=" + keysetPosition : "") +
                     '}';
         }
     }
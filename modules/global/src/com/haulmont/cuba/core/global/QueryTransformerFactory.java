@@ -44,18 +44,26 @@ public class QueryTransformerFactory {
     }
 
     public QueryTransformer transformer(String query) {
-        if (domainModel == null) {
-            DomainModelBuilder builder = beanLocator.get(DomainModelBuilder.NAME);
-            domainModel = builder.produce();
-        }
-        return beanLocator.getPrototype(QueryTransformer.NAME, domainModel, query);
+        return beanLocator.getPrototype(QueryTransformer.NAME, getDomainModel(), query);
     }
 
     public QueryParser parser(String query) {
-        if (domainModel == null) {
-            DomainModelBuilder builder = AppBeans.get(DomainModelBuilder.NAME);
-            domainModel = builder.produce();
+        return beanLocator.getPrototype(QueryParser.NAME, getDomainModel(), query);
+    }
+
+    protected DomainModel getDomainModel() {
+        // a single model is built, so parsed queries cached for it are shared by all threads
+        DomainModel model = domainModel;
+        if (model == null) {
+            synchronized (this) {
+                model = domainModel;
+                if (model == null) {
+                    DomainModelBuilder builder = beanLocator.get(DomainModelBuilder.NAME);
+                    model = builder.produce();
+                    domainModel = model;
+                }
+            }
         }
-        return beanLocator.getPrototype(QueryParser.NAME, domainModel, query);
+        return model;
     }
 }
\ No newline at end of file
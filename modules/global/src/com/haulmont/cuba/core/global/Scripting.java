@@ -18,6 +18,7 @@
 package com.haulmont.cuba.core.global;
 
 import groovy.lang.Binding;
+import groovy.lang.Script;
 
 import javax.annotation.Nullable;
 import java.util.Map;
@@ -61,6 +62,16 @@ public interface Scripting {
      */
     <T> T evaluateGroovy(String text, Map<String, Object> context);
 
+    /**
+     * Compiles Groovy expression into a script class, adding the same imports as {@link #evaluateGroovy}.
+     * Instances of the class are not pooled and can be run repeatedly by the caller with different bindings.
+     * @param text      expression text
+     * @return          compiled script class
+     */
+    default Class<? extends Script> compileGroovy(String text) {
+        throw new UnsupportedOperationException("Compilation of Groovy expressions is not supported");
+    }
+
     /**
      * Runs Groovy script.
      * The script must be located as file under <em>conf</em> directory, or as a classpath resource.
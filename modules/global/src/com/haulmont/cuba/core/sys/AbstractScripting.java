@@ -229,6 +229,11 @@ public abstract class AbstractScripting implements Scripting {
         return (T) result;
     }
 
+    @Override
+    public Class<? extends Script> compileGroovy(String text) {
+        return createScript(text).getClass();
+    }
+
     @Override
     public <T> T evaluateGroovy(String text, Binding binding) {
         return evaluateGroovy(text, binding, (ScriptExecutionPolicy[]) null);
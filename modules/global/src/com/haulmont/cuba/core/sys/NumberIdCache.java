@@ -17,37 +17,73 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.cuba.core.entity.annotation.IdSequence;
 import com.haulmont.cuba.core.global.GlobalConfig;
 import com.haulmont.cuba.core.global.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Intermediate cache for generated ids of entities with long/integer PK.
  * The cache size is determined by the {@code cuba.numberIdCacheSize} app property.
+ * <p>
+ * Ids are taken from a block of the cache size using an atomic counter. When a half of the block is used,
+ * the next block is requested from the sequence asynchronously, so in a steady state threads generating ids
+ * do not wait for the database.
  */
 @Component(NumberIdCache.NAME)
 public class NumberIdCache {
 
     public static final String NAME = "cuba_NumberIdCache";
 
+    private static final Logger log = LoggerFactory.getLogger(NumberIdCache.class);
+
     @Inject
     protected Metadata metadata;
 
+    protected ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("NumberIdCachePrefetch-%d").setDaemon(true).build());
+
+    protected AtomicLong blockRefillsCount = new AtomicLong();
+    protected AtomicLong blockWaitsCount = new AtomicLong();
+    protected AtomicLong blockWaitTime = new AtomicLong();
+
+    /**
+     * Range of ids reserved in the sequence: from {@code start} exclusive to {@code end} inclusive.
+     */
+    protected static class Block {
+        protected final long end;
+        protected final long prefetchAt;
+        protected final AtomicLong counter;
+
+        public Block(long start, int size) {
+            this.end = start + size;
+            // the next block is requested when a half of this one is used, a block of one id is not prefetched
+            this.prefetchAt = size > 1 ? end - size / 2 : Long.MAX_VALUE;
+            this.counter = new AtomicLong(start);
+        }
+    }
+
     protected class Generator {
-        protected long counter;
-        protected long sequenceValue;
         protected String entityName;
         protected String sequenceName;
         protected boolean cached;
         protected NumberIdSequence numberIdSequence;
 
+        protected volatile Block block;
+        protected AtomicReference<CompletableFuture<Block>> nextBlock = new AtomicReference<>();
+
         public Generator(String entityName,
                          String sequenceName,
                          boolean cached,
@@ -57,7 +93,7 @@ public class NumberIdCache {
             this.cached = cached;
             this.numberIdSequence = sequence;
             if (useIdCache()) {
-                createCachedCounter();
+                block = fetchBlock();
             }
         }
 
@@ -65,21 +101,68 @@ public class NumberIdCache {
             return config.getNumberIdCacheSize() != 0 && cached;
         }
 
-        protected void createCachedCounter() {
-            sequenceValue = numberIdSequence.createCachedLongId(entityName, sequenceName);
-            counter = sequenceValue;
+        protected Block fetchBlock() {
+            int size = config.getNumberIdCacheSize();
+            long sequenceValue = numberIdSequence.createCachedLongId(entityName, sequenceName);
+            blockRefillsCount.incrementAndGet();
+            return new Block(sequenceValue, size);
         }
 
-        public synchronized long getNext() {
+        public long getNext() {
             if (!useIdCache()) {
                 return numberIdSequence.createLongId(entityName, sequenceName);
-            } else {
-                long next = ++counter;
-                if (next > sequenceValue + config.getNumberIdCacheSize()) {
-                    createCachedCounter();
-                    next = ++counter;
+            }
+            while (true) {
+                Block current = block;
+                if (current != null) {
+                    long next = current.counter.incrementAndGet();
+                    if (next <= current.end) {
+                        if (next == current.prefetchAt) {
+                            prefetchNextBlock();
+                        }
+                        return next;
+                    }
+                }
+                replaceBlock(current);
+            }
+        }
+
+        protected void prefetchNextBlock() {
+            CompletableFuture<Block> future = new CompletableFuture<>();
+            if (nextBlock.compareAndSet(null, future)) {
+                prefetchExecutor.execute(new SecurityContextAwareRunnable(() -> {
+                    try {
+                        future.complete(fetchBlock());
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                }));
+            }
+        }
+
+        protected synchronized void replaceBlock(@Nullable Block exhausted) {
+            if (block != exhausted) {
+                // already replaced by another thread
+                return;
+            }
+            Block newBlock = null;
+            CompletableFuture<Block> future = nextBlock.getAndSet(null);
+            boolean waiting = future == null || !future.isDone();
+            long start = System.nanoTime();
+            if (future != null) {
+                try {
+                    newBlock = future.get();
+                } catch (ExecutionException e) {
+                    log.warn("Unable to prefetch ids for {}, requesting them synchronously", entityName, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for ids of " + entityName, e);
                 }
-                return next;
+            }
+            block = newBlock != null ? newBlock : fetchBlock();
+            if (waiting) {
+                blockWaitsCount.incrementAndGet();
+                blockWaitTime.addAndGet(System.nanoTime() - start);
             }
         }
     }
@@ -118,6 +201,27 @@ public class NumberIdCache {
         return gen.getNext();
     }
 
+    /**
+     * @return number of id blocks requested from sequences
+     */
+    public long getBlockRefillsCount() {
+        return blockRefillsCount.get();
+    }
+
+    /**
+     * @return number of times the current block was exhausted before the next one had been prefetched
+     */
+    public long getBlockWaitsCount() {
+        return blockWaitsCount.get();
+    }
+
+    /**
+     * @return total time in milliseconds spent by threads waiting for the next block
+     */
+    public long getBlockWaitTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(blockWaitTime.get());
+    }
+
     /**
      * INTERNAL. Used by tests.
      */
@@ -125,6 +229,11 @@ public class NumberIdCache {
         cache.clear();
     }
 
+    @PreDestroy
+    protected void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
     protected String getCacheKey(String entityName, String sequenceName) {
         return sequenceName == null ? entityName : sequenceName;
     }
@@ -17,6 +17,8 @@
 
 package com.haulmont.cuba.core.sys;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.haulmont.chile.core.datatypes.Datatype;
 import com.haulmont.chile.core.datatypes.Datatypes;
 import com.haulmont.chile.core.datatypes.impl.EnumClass;
@@ -30,15 +32,23 @@ import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.cuba.security.entity.PermissionType;
 import com.haulmont.cuba.security.global.ConstraintData;
 import com.haulmont.cuba.security.global.UserSession;
+import groovy.lang.Binding;
+import groovy.lang.Script;
 import org.apache.commons.lang3.StringUtils;
+import org.codehaus.groovy.runtime.InvokerHelper;
 import org.codehaus.groovy.runtime.MethodClosure;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -50,6 +60,8 @@ import static java.lang.String.format;
 public class SecurityImpl implements Security {
     private final Logger log = LoggerFactory.getLogger(SecurityImpl.class);
 
+    protected static final String ENTITY_VARIABLE = "__entity__";
+
     @Inject
     protected UserSessionSource userSessionSource;
 
@@ -65,6 +77,18 @@ public class SecurityImpl implements Security {
     @Inject
     protected Scripting scripting;
 
+    // constraints are bound to the user session, so prepared constraints are released together with the session
+    protected final Cache<ConstraintData, PreparedConstraint> preparedConstraints = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build();
+
+    // compiled scripts are shared by the sessions having the same constraints
+    protected final Cache<String, Class<? extends Script>> constraintScriptClasses = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    protected final ConcurrentMap<UUID, ConstraintStatistics> constraintStatistics = new ConcurrentHashMap<>();
+
     @Override
     public boolean isScreenPermitted(String windowAlias) {
         return userSessionSource.getUserSession().isScreenPermitted(windowAlias);
@@ -215,34 +239,151 @@ public class SecurityImpl implements Security {
         return true;
     }
 
-    protected boolean isPermitted(Entity entity, ConstraintData constraint) {
-        String metaClassName = entity.getMetaClass().getName();
-        String groovyScript = constraint.getGroovyScript();
-        if (constraint.getCheckType().memory() && StringUtils.isNotBlank(groovyScript)) {
-            try {
-                Object o = evaluateConstraintScript(entity, groovyScript);
-                if (Boolean.FALSE.equals(o)) {
-                    log.trace("Entity does not match security constraint. Entity class [{}]. Entity [{}]. Constraint [{}].",
-                            metaClassName, entity.getId(), constraint.getCheckType());
-                    return false;
+    /**
+     * Checks the entities against in-memory constraints selected by the predicate. The constraints are evaluated
+     * one after another over the whole collection, each by a single script instance with a reused binding.
+     *
+     * @return entities that don't match the constraints
+     */
+    protected Set<Entity> getNotPermitted(Collection<? extends Entity> entities, Predicate<ConstraintData> predicate) {
+        if (entities.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        Map<MetaClass, List<Entity>> entitiesByClass = new LinkedHashMap<>();
+        for (Entity entity : entities) {
+            entitiesByClass.computeIfAbsent(entity.getMetaClass(), metaClass -> new ArrayList<>()).add(entity);
+        }
+
+        Set<Entity> notPermitted = Collections.newSetFromMap(new IdentityHashMap<>());
+        ConstraintBinding binding = null;
+        for (Map.Entry<MetaClass, List<Entity>> entry : entitiesByClass.entrySet()) {
+            List<Entity> permitted = entry.getValue();
+            for (ConstraintData constraint : getConstraints(entry.getKey(), predicate)) {
+                if (!isInMemoryConstraint(constraint)) {
+                    continue;
+                }
+                if (binding == null) {
+                    binding = createConstraintBinding();
                 }
+                PreparedConstraint prepared = prepareConstraint(constraint, entry.getKey());
+                Script script = prepared != null ? prepared.createScript(binding) : null;
+
+                List<Entity> next = new ArrayList<>(permitted.size());
+                for (Entity entity : permitted) {
+                    if (script != null && isPermitted(entity, prepared, script, binding)) {
+                        next.add(entity);
+                    } else {
+                        notPermitted.add(entity);
+                    }
+                }
+                if (next.isEmpty()) {
+                    break;
+                }
+                permitted = next;
+            }
+        }
+        return notPermitted;
+    }
+
+    protected boolean isInMemoryConstraint(ConstraintData constraint) {
+        return constraint.getCheckType().memory() && StringUtils.isNotBlank(constraint.getGroovyScript());
+    }
+
+    /**
+     * @return prepared constraint, or null if its script cannot be compiled
+     */
+    @Nullable
+    protected PreparedConstraint prepareConstraint(ConstraintData constraint, MetaClass metaClass) {
+        PreparedConstraint prepared = preparedConstraints.getIfPresent(constraint);
+        if (prepared == null) {
+            String script = prepareConstraintScript(constraint.getGroovyScript());
+            Class<? extends Script> scriptClass;
+            try {
+                scriptClass = constraintScriptClasses.get(script, () -> scripting.compileGroovy(script));
             } catch (Exception e) {
-                log.error("An error occurred while applying constraint's Groovy script. The entity has been filtered out." +
-                        "Entity class [{}]. Entity [{}].", metaClassName, entity.getId(), e);
+                log.error("An error occurred while compiling constraint's Groovy script. The entities have been filtered out." +
+                        "Entity class [{}]. Constraint [{}].", metaClass.getName(), constraint.getId(), e);
+                return null;
+            }
+            ConstraintStatistics statistics = constraintStatistics.computeIfAbsent(constraint.getId(),
+                    id -> new ConstraintStatistics(id, constraint.getCode(), constraint.getGroovyScript()));
+            prepared = new PreparedConstraint(constraint, scriptClass, statistics);
+            preparedConstraints.put(constraint, prepared);
+        }
+        return prepared;
+    }
+
+    protected boolean isPermitted(Entity entity, ConstraintData constraint) {
+        if (isInMemoryConstraint(constraint)) {
+            PreparedConstraint prepared = prepareConstraint(constraint, entity.getMetaClass());
+            if (prepared == null) {
+                return false;
+            }
+            ConstraintBinding binding = createConstraintBinding();
+            return isPermitted(entity, prepared, prepared.createScript(binding), binding);
+        }
+        return true;
+    }
+
+    protected boolean isPermitted(Entity entity, PreparedConstraint constraint, Script script, ConstraintBinding binding) {
+        String metaClassName = entity.getMetaClass().getName();
+        long start = System.nanoTime();
+        try {
+            binding.reset(entity);
+            Object o = script.run();
+            constraint.getStatistics().addExecution(System.nanoTime() - start);
+            if (Boolean.FALSE.equals(o)) {
+                log.trace("Entity does not match security constraint. Entity class [{}]. Entity [{}]. Constraint [{}].",
+                        metaClassName, entity.getId(), constraint.getConstraint().getCheckType());
                 return false;
             }
+        } catch (Exception e) {
+            constraint.getStatistics().addFailure(System.nanoTime() - start);
+            log.error("An error occurred while applying constraint's Groovy script. The entity has been filtered out." +
+                    "Entity class [{}]. Entity [{}].", metaClassName, entity.getId(), e);
+            return false;
         }
         return true;
     }
 
     @Override
     public Object evaluateConstraintScript(Entity entity, String groovyScript) {
+        ConstraintBinding binding = createConstraintBinding();
+        binding.reset(entity);
+        return scripting.evaluateGroovy(prepareConstraintScript(groovyScript), binding);
+    }
+
+    /**
+     * Creates the binding for constraint script evaluations. The binding is reset before each evaluation, so
+     * variables assigned by a script don't affect the next ones.
+     */
+    protected ConstraintBinding createConstraintBinding() {
         Map<String, Object> context = new HashMap<>();
-        context.put("__entity__", entity);
+        context.put(ENTITY_VARIABLE, null);
         context.put("parse", new MethodClosure(this, "parseValue"));
         context.put("userSession", userSessionSource.getUserSession());
         fillGroovyConstraintsContext(context);
-        return scripting.evaluateGroovy(groovyScript.replace("{E}", "__entity__"), context);
+        return new ConstraintBinding(context);
+    }
+
+    protected String prepareConstraintScript(String groovyScript) {
+        return groovyScript.replace("{E}", ENTITY_VARIABLE);
+    }
+
+    /**
+     * @return execution statistics of in-memory constraints checked since the start or the last reset
+     */
+    public List<ConstraintStatistics> getConstraintStatistics() {
+        List<ConstraintStatistics> list = new ArrayList<>(constraintStatistics.values());
+        list.sort(Comparator.comparingLong(ConstraintStatistics::getTotalTime).reversed());
+        return list;
+    }
+
+    public void resetConstraintStatistics() {
+        constraintStatistics.clear();
+        preparedConstraints.invalidateAll();
+        constraintScriptClasses.invalidateAll();
     }
 
     /**
@@ -286,4 +427,130 @@ public class SecurityImpl implements Security {
                     "See the log for details.", clazz, string), null);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * In-memory constraint with its compiled script class.
+     */
+    protected static class PreparedConstraint {
+        protected final ConstraintData constraint;
+        protected final Class<? extends Script> scriptClass;
+        protected final ConstraintStatistics statistics;
+
+        public PreparedConstraint(ConstraintData constraint, Class<? extends Script> scriptClass,
+                                  ConstraintStatistics statistics) {
+            this.constraint = constraint;
+            this.scriptClass = scriptClass;
+            this.statistics = statistics;
+        }
+
+        public ConstraintData getConstraint() {
+            return constraint;
+        }
+
+        /**
+         * Creates a script instance. An instance is not thread-safe, it can be run repeatedly by one thread.
+         */
+        public Script createScript(Binding binding) {
+            return InvokerHelper.createScript(scriptClass, binding);
+        }
+
+        public ConstraintStatistics getStatistics() {
+            return statistics;
+        }
+    }
+
+    /**
+     * Binding with a fixed set of constraint variables. The variables are restored before each evaluation, so one
+     * instance serves a series of evaluations without rebuilding the context.
+     */
+    protected static class ConstraintBinding extends Binding {
+        protected final Map<String, Object> context;
+
+        public ConstraintBinding(Map<String, Object> context) {
+            super(new HashMap<>(context));
+            this.context = context;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void reset(Entity entity) {
+            Map<String, Object> variables = getVariables();
+            if (variables.size() != context.size()) {
+                // drop variables assigned by a previous script
+                variables.keySet().retainAll(context.keySet());
+            }
+            variables.putAll(context);
+            variables.put(ENTITY_VARIABLE, entity);
+        }
+    }
+
+    /**
+     * Execution counters of an in-memory constraint script. Times are in nanoseconds.
+     */
+    public static class ConstraintStatistics {
+        protected final UUID constraintId;
+        protected final String code;
+        protected final String groovyScript;
+
+        protected final LongAdder executions = new LongAdder();
+        protected final LongAdder failures = new LongAdder();
+        protected final LongAdder totalTime = new LongAdder();
+        protected final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+        public ConstraintStatistics(UUID constraintId, String code, String groovyScript) {
+            this.constraintId = constraintId;
+            this.code = code;
+            this.groovyScript = groovyScript;
+        }
+
+        public void addExecution(long time) {
+            executions.increment();
+            totalTime.add(time);
+            maxTime.accumulate(time);
+        }
+
+        public void addFailure(long time) {
+            failures.increment();
+            addExecution(time);
+        }
+
+        public UUID getConstraintId() {
+            return constraintId;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getGroovyScript() {
+            return groovyScript;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getTotalTime() {
+            return totalTime.sum();
+        }
+
+        public long getMaxTime() {
+            return maxTime.get();
+        }
+
+        @Override
+        public String toString() {
+            long count = getExecutions();
+            return "Constraint " + constraintId + (code != null ? " (" + code + ")" : "")
+                    + ": executions=" + count
+                    + ", failures=" + getFailures()
+                    + ", totalMs=" + getTotalTime() / 1000000
+                    + ", avgUs=" + (count == 0 ? 0 : getTotalTime() / count / 1000)
+                    + ", maxUs=" + getMaxTime() / 1000
+                    + ", script=" + StringUtils.abbreviate(StringUtils.normalizeSpace(groovyScript), 100);
+        }
+    }
+}
@@ -57,6 +57,46 @@ public class QueryTree {
         new TreeVisitor().visit(tree, idVarSelector);
     }
 
+    protected QueryTree(DomainModel model, String queryString, CommonTree tree) {
+        this.model = model;
+        this.queryString = queryString;
+        this.tree = tree;
+
+        this.idVarSelector = new IdVarSelector(model);
+        new TreeVisitor().visit(tree, idVarSelector);
+    }
+
+    /**
+     * Creates a deep copy of the tree which can be transformed without affecting this one.
+     */
+    public QueryTree copy() {
+        CommonTree treeCopy;
+        try {
+            treeCopy = copyNode(tree);
+        } catch (RuntimeException e) {
+            // the tree contains nodes which don't support copying, parse the query again
+            return new QueryTree(model, queryString);
+        }
+        return new QueryTree(model, queryString, treeCopy);
+    }
+
+    protected static CommonTree copyNode(CommonTree node) {
+        CommonTree copy = (CommonTree) node.dupNode();
+        if (copy.getClass() != node.getClass()) {
+            throw new UnsupportedOperationException("Node doesn't support copying: " + node.getClass().getName());
+        }
+        // custom nodes copy children in dupNode(), but plain children are copied without their own children
+        for (int i = 0; i < node.getChildCount(); i++) {
+            CommonTree childCopy = copyNode((CommonTree) node.getChild(i));
+            if (i < copy.getChildCount()) {
+                copy.setChild(i, childCopy);
+            } else {
+                copy.addChild(childCopy);
+            }
+        }
+        return copy;
+    }
+
     public DomainModel getModel() {
         return model;
     }
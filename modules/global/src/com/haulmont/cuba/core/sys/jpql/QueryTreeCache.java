@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys.jpql;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.haulmont.cuba.core.global.Configuration;
+import com.haulmont.cuba.core.global.GlobalConfig;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bounded cache of parsed JPQL queries keyed by the query text.
+ * <p>
+ * Cached trees are shared and must not be modified: {@link com.haulmont.cuba.core.global.QueryParser} reads them
+ * as is, while {@link com.haulmont.cuba.core.global.QueryTransformer} works with a copy obtained by
+ * {@link #getCopy(DomainModel, String)}. Only trees of the latest domain model are cached,
+ * the cache is cleared when another model is passed.
+ */
+@Component(QueryTreeCache.NAME)
+public class QueryTreeCache {
+
+    public static final String NAME = "cuba_QueryTreeCache";
+
+    @Inject
+    protected Configuration configuration;
+
+    // trees of the current domain model, replaced as a whole when the model changes
+    protected final AtomicReference<ModelTrees> trees = new AtomicReference<>();
+
+    @PostConstruct
+    public void init() {
+        trees.set(new ModelTrees(null, createCache()));
+    }
+
+    protected Cache<String, QueryTree> createCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(configuration.getConfig(GlobalConfig.class).getParsedQueryCacheMaxSize())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the parsed query from the cache or parses it.
+     *
+     * @return shared tree which must not be modified
+     */
+    public QueryTree get(DomainModel model, String query) {
+        ModelTrees current = trees.get();
+        if (current.model != model) {
+            // the first model or a rebuilt one, the trees of the previous model are dropped
+            trees.compareAndSet(current, new ModelTrees(model, createCache()));
+            current = trees.get();
+            if (current.model != model) {
+                return new QueryTree(model, query);
+            }
+        }
+
+        QueryTree tree = current.cache.getIfPresent(query);
+        if (tree == null) {
+            // parsing errors are thrown as is and not cached
+            tree = new QueryTree(model, query);
+            current.cache.put(query, tree);
+        }
+        return tree;
+    }
+
+    /**
+     * Returns a copy of the parsed query which can be modified.
+     */
+    public QueryTree getCopy(DomainModel model, String query) {
+        return get(model, query).copy();
+    }
+
+    public long getSize() {
+        return trees.get().cache.size();
+    }
+
+    public long getHitCount() {
+        return trees.get().cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return trees.get().cache.stats().missCount();
+    }
+
+    public void invalidateAll() {
+        trees.get().cache.invalidateAll();
+    }
+
+    protected static class ModelTrees {
+        protected final DomainModel model;
+        protected final Cache<String, QueryTree> cache;
+
+        protected ModelTrees(DomainModel model, Cache<String, QueryTree> cache) {
+            this.model = model;
+            this.cache = cache;
+        }
+    }
+}
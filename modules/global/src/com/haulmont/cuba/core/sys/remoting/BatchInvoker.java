@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+import java.util.List;
+
+/**
+ * Executes several middleware service invocations in a single remote call.
+ * <p>
+ * Client code should use {@link ServiceInvocationBatch} instead of invoking this interface directly.
+ */
+public interface BatchInvoker {
+
+    String NAME = "cuba_BatchInvoker";
+
+    /**
+     * Executes the invocations in the current user session.
+     *
+     * @param invocations service invocations
+     * @param parallel    if true, the invocations may be executed concurrently, otherwise they are executed one
+     *                    after another in the given order
+     * @return results of the invocations in the same order
+     */
+    List<RemoteInvocationResult> invoke(List<BatchedInvocation> invocations, boolean parallel);
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import org.springframework.remoting.support.RemoteInvocation;
+
+import java.io.Serializable;
+
+/**
+ * Invocation of a middleware service method passed to {@link BatchInvoker}.
+ */
+public class BatchedInvocation implements Serializable {
+
+    private static final long serialVersionUID = -3046125720458172651L;
+
+    private final String serviceName;
+    private final RemoteInvocation invocation;
+
+    /**
+     * @param serviceName name of the service bean, e.g. {@code cuba_DataService}
+     * @param invocation  method invocation
+     */
+    public BatchedInvocation(String serviceName, RemoteInvocation invocation) {
+        this.serviceName = serviceName;
+        this.invocation = invocation;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public RemoteInvocation getInvocation() {
+        return invocation;
+    }
+
+    @Override
+    public String toString() {
+        return serviceName + "." + invocation.getMethodName();
+    }
+}
@@ -70,27 +70,10 @@ public class ClusteredHttpInvokerRequestExecutor extends SimpleHttpInvokerReques
             throw new IllegalStateException("Server URL list is empty");
 
         while (true) {
-            HttpURLConnection con = openConnection(url);
             try {
-                StopWatch sw = new StopWatch();
-                prepareConnection(con, baos.size());
-                writeRequestBody(config, con, baos);
-                sw.start("waiting time");
-                validateResponse(config, con);
-                CountingInputStream responseInputStream = new CountingInputStream(readResponseBody(config, con));
-                sw.stop();
+                result = doExecuteRequest(url, config, baos);
 
                 serverSelector.success(context);
-
-                sw.start("reading time");
-                try (ObjectInputStream ois = createObjectInputStream(decorateInputStream(responseInputStream), config.getCodebaseUrl())) {
-                    result = doReadRemoteInvocationResult(ois);
-                }
-                sw.stop();
-                if (log.isDebugEnabled()) {
-                    log.debug(String.format("Receiving HTTP invoker response for service at [%s], with size %s, %s", config.getServiceUrl(),
-                            responseInputStream.getCount(), printStopWatch(sw)));
-                }
                 break;
             } catch (IOException e) {
                 log.info(String.format("Invocation of %s failed: %s", url, e));
@@ -108,6 +91,38 @@ public class ClusteredHttpInvokerRequestExecutor extends SimpleHttpInvokerReques
         return result;
     }
 
+    /**
+     * Executes the request on the given server. Throwing {@link IOException} marks the server as failed and makes
+     * the executor try the next server provided by {@link ServerSelector}.
+     *
+     * @param url  service URL on the selected server
+     * @param baos serialized invocation
+     */
+    protected RemoteInvocationResult doExecuteRequest(String url, HttpInvokerClientConfiguration config,
+                                                      ByteArrayOutputStream baos)
+            throws IOException, ClassNotFoundException {
+        HttpURLConnection con = openConnection(url);
+        StopWatch sw = new StopWatch();
+        prepareConnection(con, baos.size());
+        writeRequestBody(config, con, baos);
+        sw.start("waiting time");
+        validateResponse(config, con);
+        CountingInputStream responseInputStream = new CountingInputStream(readResponseBody(config, con));
+        sw.stop();
+
+        RemoteInvocationResult result;
+        sw.start("reading time");
+        try (ObjectInputStream ois = createObjectInputStream(decorateInputStream(responseInputStream), config.getCodebaseUrl())) {
+            result = doReadRemoteInvocationResult(ois);
+        }
+        sw.stop();
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Receiving HTTP invoker response for service at [%s], with size %s, %s", config.getServiceUrl(),
+                    responseInputStream.getCount(), printStopWatch(sw)));
+        }
+        return result;
+    }
+
     @Nullable
     protected String currentServiceUrl(String url, HttpInvokerClientConfiguration config) {
         return url == null ? null :  url + "/" + config.getServiceUrl();
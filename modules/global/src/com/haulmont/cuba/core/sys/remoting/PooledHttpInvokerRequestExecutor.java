@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import com.google.common.io.CountingInputStream;
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.remoting.discovery.ServerSelector;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.remoting.httpinvoker.HttpInvokerClientConfiguration;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.util.StopWatch;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * {@link ClusteredHttpInvokerRequestExecutor} that sends requests through a bounded pool of keep-alive HTTP
+ * connections instead of opening a new connection for each invocation.
+ * <p>
+ * The pool is shared by all service proxies of the client block and limits the number of connections per server
+ * by the {@code cuba.remotingMaxConnectionsPerServer} application property and the total number of connections
+ * by the {@code cuba.remotingMaxConnections} property. The executor is used instead of the default one
+ * if the {@code cuba.remotingConnectionPoolEnabled} application property is set to true.
+ */
+public class PooledHttpInvokerRequestExecutor extends ClusteredHttpInvokerRequestExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledHttpInvokerRequestExecutor.class);
+
+    protected static final int DEFAULT_MAX_CONNECTIONS_PER_SERVER = 20;
+    protected static final int DEFAULT_MAX_CONNECTIONS = 200;
+
+    public PooledHttpInvokerRequestExecutor(ServerSelector serverSelector) {
+        super(serverSelector);
+    }
+
+    @Override
+    protected RemoteInvocationResult doExecuteRequest(String url, HttpInvokerClientConfiguration config,
+                                                      ByteArrayOutputStream baos)
+            throws IOException, ClassNotFoundException {
+        HttpPost request = createHttpPost(url, baos);
+        StopWatch sw = new StopWatch();
+        sw.start("waiting time");
+        try (CloseableHttpResponse response = getHttpClient().execute(request)) {
+            validateResponse(config, response);
+            CountingInputStream responseInputStream = new CountingInputStream(response.getEntity().getContent());
+            sw.stop();
+
+            RemoteInvocationResult result;
+            sw.start("reading time");
+            try (ObjectInputStream ois = createObjectInputStream(decorateInputStream(responseInputStream), config.getCodebaseUrl())) {
+                result = doReadRemoteInvocationResult(ois);
+            }
+            sw.stop();
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Receiving HTTP invoker response for service at [%s], with size %s, %s", config.getServiceUrl(),
+                        responseInputStream.getCount(), printStopWatch(sw)));
+            }
+            return result;
+        } catch (IOException e) {
+            // idle connections to the failed server may be broken, don't give them to the next requests
+            HttpHost target = getTargetHost(request);
+            if (target != null) {
+                getConnectionManager().closeIdleConnections(target);
+            }
+            throw e;
+        }
+    }
+
+    protected HttpPost createHttpPost(String url, ByteArrayOutputStream baos) {
+        HttpPost request = new HttpPost(url);
+        request.setHeader(HTTP_HEADER_CONTENT_TYPE, getContentType());
+        LocaleContext localeContext = LocaleContextHolder.getLocaleContext();
+        if (localeContext != null) {
+            Locale locale = localeContext.getLocale();
+            if (locale != null) {
+                request.setHeader(HTTP_HEADER_ACCEPT_LANGUAGE, locale.toLanguageTag());
+            }
+        }
+        request.setEntity(new InvocationEntity(baos, getContentType()));
+        return request;
+    }
+
+    protected void validateResponse(HttpInvokerClientConfiguration config, HttpResponse response) throws IOException {
+        StatusLine status = response.getStatusLine();
+        if (status.getStatusCode() >= 300) {
+            EntityUtils.consume(response.getEntity());
+            throw new IOException(String.format(
+                    "Did not receive successful HTTP response from [%s]: status code = %s, status message = [%s]",
+                    config.getServiceUrl(), status.getStatusCode(), status.getReasonPhrase()));
+        }
+    }
+
+    /**
+     * @return target host of the request with the resolved port, the same as in the routes of pooled connections
+     */
+    @Nullable
+    protected HttpHost getTargetHost(HttpPost request) {
+        URI uri = request.getURI();
+        HttpHost host = URIUtils.extractHost(uri);
+        if (host == null) {
+            return null;
+        }
+        try {
+            return new HttpHost(host.getHostName(), DefaultSchemePortResolver.INSTANCE.resolve(host), host.getSchemeName());
+        } catch (UnsupportedSchemeException e) {
+            return null;
+        }
+    }
+
+    protected CloseableHttpClient getHttpClient() {
+        return ConnectionPoolHolder.httpClient;
+    }
+
+    protected ConnectionManager getConnectionManager() {
+        return ConnectionPoolHolder.connectionManager;
+    }
+
+    protected static int getIntProperty(String name, int defaultValue) {
+        String value = AppContext.getProperty(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Lazily initialized connection pool shared by all executors.
+     */
+    protected static class ConnectionPoolHolder {
+
+        protected static final ConnectionManager connectionManager;
+        protected static final CloseableHttpClient httpClient;
+
+        static {
+            connectionManager = new ConnectionManager();
+            connectionManager.setMaxTotal(
+                    getIntProperty("cuba.remotingMaxConnections", DEFAULT_MAX_CONNECTIONS));
+            connectionManager.setDefaultMaxPerRoute(
+                    getIntProperty("cuba.remotingMaxConnectionsPerServer", DEFAULT_MAX_CONNECTIONS_PER_SERVER));
+
+            int connectTimeout = getIntProperty("cuba.connectionTimeout", -1);
+            RequestConfig requestConfig = RequestConfig.custom()
+                    .setConnectTimeout(connectTimeout)
+                    .setConnectionRequestTimeout(connectTimeout)
+                    .setSocketTimeout(getIntProperty("cuba.connectionReadTimeout", -1))
+                    .build();
+
+            httpClient = HttpClientBuilder.create()
+                    .setConnectionManager(connectionManager)
+                    .setDefaultRequestConfig(requestConfig)
+                    .disableCookieManagement()
+                    // a request that has reached the server is never repeated here, failover is done by the executor
+                    .setRetryHandler(new DefaultHttpRequestRetryHandler(1, false))
+                    .build();
+        }
+    }
+
+    /**
+     * Connection manager that can close idle connections to a particular server.
+     */
+    protected static class ConnectionManager extends PoolingHttpClientConnectionManager {
+
+        public void closeIdleConnections(HttpHost target) {
+            enumAvailable(entry -> {
+                if (target.equals(entry.getRoute().getTargetHost())) {
+                    entry.close();
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes the serialized invocation to the connection without copying it.
+     */
+    protected static class InvocationEntity extends AbstractHttpEntity {
+
+        protected final ByteArrayOutputStream baos;
+
+        public InvocationEntity(ByteArrayOutputStream baos, String contentType) {
+            this.baos = baos;
+            setContentType(contentType);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return baos.size();
+        }
+
+        @Override
+        public InputStream getContent() {
+            return new ByteArrayInputStream(baos.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            baos.writeTo(outputStream);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+}
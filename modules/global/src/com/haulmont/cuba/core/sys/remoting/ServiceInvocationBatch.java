@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import com.google.common.base.Defaults;
+import com.haulmont.bali.util.Preconditions;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.RemoteException;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.remoting.support.RemoteInvocation;
+import org.springframework.remoting.support.RemoteInvocationResult;
+import org.springframework.remoting.support.RemoteInvocationUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Groups several middleware service invocations to execute them in a single remote call.
+ * <p>Typical usage:
+ * <pre>
+    ServiceInvocationBatch batch = new ServiceInvocationBatch();
+    ServiceInvocationBatch.Result&lt;List&lt;Entity&gt;&gt; users = batch.add(DataService.NAME, DataService.class,
+            dataService -&gt; dataService.loadList(usersContext));
+    ServiceInvocationBatch.Result&lt;List&lt;Entity&gt;&gt; groups = batch.add(DataService.NAME, DataService.class,
+            dataService -&gt; dataService.loadList(groupsContext));
+    batch.execute();
+
+    List&lt;Entity&gt; loadedUsers = users.get();
+ * </pre>
+ * The function passed to {@link #add(String, Class, Function)} must invoke exactly one method of the service.
+ * The method is not executed at that moment, its return value is ignored.
+ * <p>
+ * The object is not thread-safe.
+ */
+public class ServiceInvocationBatch {
+
+    protected final BatchInvoker batchInvoker;
+
+    protected final List<BatchedInvocation> invocations = new ArrayList<>();
+    protected final List<Result<?>> results = new ArrayList<>();
+
+    public ServiceInvocationBatch() {
+        this(AppBeans.get(BatchInvoker.NAME, BatchInvoker.class));
+    }
+
+    public ServiceInvocationBatch(BatchInvoker batchInvoker) {
+        Preconditions.checkNotNullArgument(batchInvoker, "batchInvoker is null");
+        this.batchInvoker = batchInvoker;
+    }
+
+    /**
+     * Adds a service method invocation to the batch.
+     *
+     * @param serviceName      name of the service, e.g. {@code DataService.NAME}
+     * @param serviceInterface service interface
+     * @param call             function invoking a method of the service
+     * @return result that becomes available after {@link #execute()}
+     */
+    @SuppressWarnings("unchecked")
+    public <S, T> Result<T> add(String serviceName, Class<S> serviceInterface, Function<S, T> call) {
+        Preconditions.checkNotNullArgument(serviceName, "serviceName is null");
+        Preconditions.checkNotNullArgument(serviceInterface, "serviceInterface is null");
+
+        RecordingInterceptor interceptor = new RecordingInterceptor();
+        S recorder = (S) new ProxyFactory(serviceInterface, interceptor).getProxy(serviceInterface.getClassLoader());
+        call.apply(recorder);
+        if (interceptor.invocation == null) {
+            throw new IllegalArgumentException("The function does not invoke any method of " + serviceInterface.getName());
+        }
+
+        invocations.add(new BatchedInvocation(serviceName, interceptor.invocation));
+        Result<T> result = new Result<>();
+        results.add(result);
+        return result;
+    }
+
+    /**
+     * @return number of invocations added since the last execution
+     */
+    public int size() {
+        return invocations.size();
+    }
+
+    /**
+     * Executes the added invocations one after another in a single remote call.
+     */
+    public void execute() {
+        execute(false);
+    }
+
+    /**
+     * Executes the added invocations in a single remote call. After execution, the batch is empty and can be reused.
+     *
+     * @param parallel if true, the invocations may be executed on middleware concurrently
+     */
+    public void execute(boolean parallel) {
+        if (invocations.isEmpty()) {
+            return;
+        }
+
+        List<RemoteInvocationResult> remoteResults = batchInvoker.invoke(new ArrayList<>(invocations), parallel);
+        if (remoteResults.size() != results.size()) {
+            throw new IllegalStateException(String.format("Batch of %s invocations returned %s results",
+                    results.size(), remoteResults.size()));
+        }
+        for (int i = 0; i < remoteResults.size(); i++) {
+            results.get(i).remoteResult = remoteResults.get(i);
+        }
+
+        invocations.clear();
+        results.clear();
+    }
+
+    /**
+     * Result of a service invocation added to the batch.
+     */
+    public static class Result<T> {
+
+        protected RemoteInvocationResult remoteResult;
+
+        /**
+         * @return true if the batch containing the invocation has been executed
+         */
+        public boolean isDone() {
+            return remoteResult != null;
+        }
+
+        /**
+         * Returns the value returned by the service method or throws the exception thrown by it. Checked exceptions
+         * are wrapped in {@link UndeclaredThrowableException}.
+         *
+         * @throws IllegalStateException if the batch has not been executed yet
+         */
+        @SuppressWarnings("unchecked")
+        public T get() {
+            if (remoteResult == null) {
+                throw new IllegalStateException("The batch has not been executed yet");
+            }
+
+            Throwable throwable = remoteResult.getException();
+            if (throwable == null) {
+                return (T) remoteResult.getValue();
+            }
+
+            if (throwable instanceof InvocationTargetException) {
+                throwable = ((InvocationTargetException) throwable).getTargetException();
+            }
+            if (throwable instanceof RemoteException) {
+                Exception exception = ((RemoteException) throwable).getFirstCauseException();
+                if (exception != null) {
+                    throwable = exception;
+                }
+            }
+            RemoteInvocationUtils.fillInClientStackTraceIfPossible(throwable);
+
+            if (throwable instanceof RuntimeException) {
+                throw (RuntimeException) throwable;
+            }
+            if (throwable instanceof Error) {
+                throw (Error) throwable;
+            }
+            throw new UndeclaredThrowableException(throwable);
+        }
+    }
+
+    protected static class RecordingInterceptor implements MethodInterceptor {
+
+        protected RemoteInvocation invocation;
+
+        @Override
+        public Object invoke(MethodInvocation methodInvocation) {
+            if (invocation != null) {
+                throw new IllegalStateException("The function must invoke only one service method");
+            }
+            invocation = new RemoteInvocation(methodInvocation);
+            return Defaults.defaultValue(methodInvocation.getMethod().getReturnType());
+        }
+    }
+}
@@ -19,6 +19,8 @@ package com.haulmont.cuba.core.sys.serialization;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.serializers.CollectionSerializer;
@@ -59,6 +61,7 @@ import java.io.*;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -73,8 +76,20 @@ public class KryoSerialization implements Serialization {
     protected static final List<String> INCLUDED_VALUE_HOLDER_FIELDS =
             ImmutableList.of("value", "isInstantiated", "mapping", "sourceAttributeName", "relationshipSourceObject");
 
+    /**
+     * Initial size of the per-thread serialization buffers.
+     */
+    protected static final int POOLED_BUFFER_SIZE = 4096;
+
+    /**
+     * Per-thread output buffer grown above this size is replaced after use, so that a single large payload
+     * does not keep the memory occupied for the lifetime of the thread.
+     */
+    protected static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
     protected boolean onlySerializable = true;
     protected final ThreadLocal<Kryo> kryos = ThreadLocal.withInitial(this::newKryoInstance);
+    protected final ThreadLocal<KryoBuffers> buffers = ThreadLocal.withInitial(KryoBuffers::new);
 
     public KryoSerialization() {
     }
@@ -136,31 +151,42 @@ public class KryoSerialization implements Serialization {
 
     @Override
     public void serialize(Object object, OutputStream os) {
-        try (Output output = new CubaOutput(os)) {
-            if (object instanceof BaseGenericIdEntity
-                    && BaseEntityInternalAccess.isManaged((BaseGenericIdEntity) object)) {
-                BaseEntityInternalAccess.setDetached((BaseGenericIdEntity) object, true);
-            }
-            kryos.get().writeClassAndObject(output, object);
+        Output output = acquireOutput();
+        try {
+            output.setOutputStream(os);
+            writeObject(output, object);
+            output.flush();
         } catch (Exception e) {
             throw new SerializationException(e);
+        } finally {
+            releaseOutput(output);
         }
     }
 
     @Override
     public Object deserialize(InputStream is) {
-        try (Input input = new Input(is)) {
+        Input input = acquireInput();
+        try {
+            input.setInputStream(is);
             return kryos.get().readClassAndObject(input);
         } catch (Exception e) {
             throw new SerializationException(e);
+        } finally {
+            releaseInput(input);
         }
     }
 
     @Override
     public byte[] serialize(Object object) {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        serialize(object, bos);
-        return bos.toByteArray();
+        Output output = acquireOutput();
+        try {
+            writeObject(output, object);
+            return output.toBytes();
+        } catch (Exception e) {
+            throw new SerializationException(e);
+        } finally {
+            releaseOutput(output);
+        }
     }
 
     @Override
@@ -169,7 +195,50 @@ public class KryoSerialization implements Serialization {
             return null;
         }
 
-        return deserialize(new ByteArrayInputStream(bytes));
+        Input input = acquireInput();
+        try {
+            // read directly from the given array without copying
+            input.setBuffer(bytes);
+            return kryos.get().readClassAndObject(input);
+        } catch (Exception e) {
+            throw new SerializationException(e);
+        } finally {
+            releaseInput(input);
+        }
+    }
+
+    /**
+     * Serializes the object directly into the buffer starting at its current position. On success, the position
+     * of the buffer is advanced past the written bytes.
+     *
+     * @throws SerializationException if the object does not fit into the buffer or in case of other serialization
+     *                                problems
+     */
+    @Override
+    public void serialize(Object object, ByteBuffer buffer) {
+        try {
+            ByteBufferOutput output = new ByteBufferOutput(buffer);
+            writeObject(output, object);
+            buffer.position(output.position());
+        } catch (Exception e) {
+            throw new SerializationException(e);
+        }
+    }
+
+    /**
+     * Deserializes an object from the buffer starting at its current position. On success, the position of the
+     * buffer is advanced past the read bytes, so several objects written one after another can be read in turn.
+     */
+    @Override
+    public Object deserialize(ByteBuffer buffer) {
+        try {
+            ByteBufferInput input = new ByteBufferInput(buffer);
+            Object object = kryos.get().readClassAndObject(input);
+            buffer.position(input.position());
+            return object;
+        } catch (Exception e) {
+            throw new SerializationException(e);
+        }
     }
 
     public Object copy(Object object) {
@@ -179,6 +248,63 @@ public class KryoSerialization implements Serialization {
         return kryos.get().copy(object);
     }
 
+    protected void writeObject(Output output, Object object) {
+        if (object instanceof BaseGenericIdEntity
+                && BaseEntityInternalAccess.isManaged((BaseGenericIdEntity) object)) {
+            BaseEntityInternalAccess.setDetached((BaseGenericIdEntity) object, true);
+        }
+        kryos.get().writeClassAndObject(output, object);
+    }
+
+    /**
+     * Returns the output buffer of the current thread, or a new one if the thread's buffer is already in use
+     * by an outer serialization call.
+     */
+    protected Output acquireOutput() {
+        KryoBuffers kryoBuffers = buffers.get();
+        if (kryoBuffers.outputInUse) {
+            return new CubaOutput(POOLED_BUFFER_SIZE, -1);
+        }
+        kryoBuffers.outputInUse = true;
+        return kryoBuffers.output;
+    }
+
+    protected void releaseOutput(Output output) {
+        KryoBuffers kryoBuffers = buffers.get();
+        if (output != kryoBuffers.output) {
+            return;
+        }
+        output.setOutputStream(null);
+        if (output.getBuffer().length > MAX_POOLED_BUFFER_SIZE) {
+            output.setBuffer(new byte[POOLED_BUFFER_SIZE], -1);
+        }
+        kryoBuffers.outputInUse = false;
+    }
+
+    /**
+     * Returns the input buffer of the current thread, or a new one if the thread's buffer is already in use
+     * by an outer deserialization call.
+     */
+    protected Input acquireInput() {
+        KryoBuffers kryoBuffers = buffers.get();
+        if (kryoBuffers.inputInUse) {
+            return new Input(POOLED_BUFFER_SIZE);
+        }
+        kryoBuffers.inputInUse = true;
+        return kryoBuffers.input;
+    }
+
+    protected void releaseInput(Input input) {
+        KryoBuffers kryoBuffers = buffers.get();
+        if (input != kryoBuffers.input) {
+            return;
+        }
+        // drop references to the stream or to the array passed by the caller
+        input.setBuffer(kryoBuffers.inputBuffer);
+        input.setInputStream(null);
+        kryoBuffers.inputInUse = false;
+    }
+
     protected void registerEntitySerializer(Kryo kryo) {
         kryo.addDefaultSerializer(Entity.class, EntitySerializer.class);
     }
@@ -370,12 +496,27 @@ public class KryoSerialization implements Serialization {
         }
     }
 
+    /**
+     * Reusable buffers bound to a thread.
+     */
+    protected static class KryoBuffers {
+        protected final Output output = new CubaOutput(POOLED_BUFFER_SIZE, -1);
+        protected final byte[] inputBuffer = new byte[POOLED_BUFFER_SIZE];
+        protected final Input input = new Input(inputBuffer);
+        protected boolean outputInUse;
+        protected boolean inputInUse;
+    }
+
     public static class CubaOutput extends Output {
 
         public CubaOutput(OutputStream outputStream) {
             super(outputStream);
         }
 
+        public CubaOutput(int bufferSize, int maxBufferSize) {
+            super(bufferSize, maxBufferSize);
+        }
+
         @Override
         public void close() {
             //Prevent close stream. Stream closed only by:
@@ -19,6 +19,8 @@ package com.haulmont.cuba.core.sys.serialization;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 
 /**
  *
@@ -53,4 +55,33 @@ public interface Serialization {
      * @throws SerializationException in case of serialization problems
      */
     Object deserialize(byte[] bytes);
+
+    /**
+     * Serialize object into the buffer starting at its current position.
+     * The position of the buffer is advanced past the written bytes.
+     *
+     * @throws SerializationException if the object does not fit into the buffer or in case of other
+     * serialization problems
+     */
+    default void serialize(Object object, ByteBuffer buffer) {
+        byte[] bytes = serialize(object);
+        try {
+            buffer.put(bytes);
+        } catch (BufferOverflowException e) {
+            throw new SerializationException(e);
+        }
+    }
+
+    /**
+     * Deserialize object from the buffer starting at its current position.
+     * The default implementation expects the remaining bytes of the buffer to contain exactly one object
+     * and consumes all of them.
+     *
+     * @throws SerializationException in case of serialization problems
+     */
+    default Object deserialize(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return deserialize(bytes);
+    }
 }
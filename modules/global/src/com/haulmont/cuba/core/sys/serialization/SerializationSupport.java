@@ -23,6 +23,7 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import static java.lang.String.format;
 
@@ -65,6 +66,14 @@ public class SerializationSupport {
         return serialization.deserialize(bytes);
     }
 
+    public static void serialize(Object object, ByteBuffer buffer) {
+        serialization.serialize(object, buffer);
+    }
+
+    public static Object deserialize(ByteBuffer buffer) {
+        return serialization.deserialize(buffer);
+    }
+
     public static KryoSerialization getKryoSerialization() {
         return kryoSerialization;
     }
@@ -26,6 +26,7 @@ import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -58,6 +59,8 @@ public class UserSession implements Serializable {
 
     protected transient Map<String, Object> localAttributes;
 
+    protected transient volatile Consumer<UUID> attributesChangeListener;
+
     /**
      * INTERNAL
      * Used only for kryo serialization
@@ -120,6 +123,7 @@ public class UserSession implements Serializable {
         attributes = src.attributes;
         roleTypes = src.roleTypes;
         localAttributes = src.localAttributes;
+        attributesChangeListener = src.attributesChangeListener;
         address = src.address;
         clientInfo = src.clientInfo;
     }
@@ -449,6 +453,7 @@ public class UserSession implements Serializable {
      */
     public void removeAttribute(String name) {
         attributes.remove(name);
+        fireAttributesChanged();
     }
 
     /**
@@ -459,6 +464,22 @@ public class UserSession implements Serializable {
      */
     public void setAttribute(String name, Serializable value) {
         attributes.put(name, value);
+        fireAttributesChanged();
+    }
+
+    /**
+     * INTERNAL
+     * Sets the listener notified with the session id when an attribute is set or removed.
+     */
+    public void setAttributesChangeListener(@Nullable Consumer<UUID> listener) {
+        this.attributesChangeListener = listener;
+    }
+
+    protected void fireAttributesChanged() {
+        Consumer<UUID> listener = attributesChangeListener;
+        if (listener != null) {
+            listener.accept(getId());
+        }
     }
 
     /**
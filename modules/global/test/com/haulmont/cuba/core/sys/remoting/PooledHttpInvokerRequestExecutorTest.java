@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.core.sys.remoting;
+
+import com.haulmont.cuba.core.sys.AppContext;
+import com.haulmont.cuba.core.sys.AppComponents;
+import com.haulmont.cuba.core.sys.serialization.SerializationSupport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.remoting.httpinvoker.HttpInvokerClientConfiguration;
+import org.springframework.remoting.support.RemoteInvocationResult;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PooledHttpInvokerRequestExecutorTest {
+
+    private PooledHttpInvokerRequestExecutor executor;
+    private TestServer server1;
+    private TestServer server2;
+
+    @BeforeClass
+    public static void setUpClass() {
+        if (AppContext.getAppComponents() == null) {
+            AppContext.Internals.setAppComponents(new AppComponents("test"));
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        executor = new PooledHttpInvokerRequestExecutor(null);
+        server1 = new TestServer();
+        server2 = new TestServer();
+    }
+
+    @After
+    public void tearDown() {
+        server1.stop();
+        server2.stop();
+    }
+
+    @Test
+    public void testConnectionReuse() throws Exception {
+        assertEquals("ok", execute(server1));
+        assertEquals("ok", execute(server1));
+        assertEquals("ok", execute(server1));
+
+        assertEquals(3, server1.clientPorts.size());
+        assertEquals(1, server1.clientPorts.stream().distinct().count());
+    }
+
+    @Test
+    public void testEvictionAfterFailure() throws Exception {
+        execute(server1);
+        execute(server2);
+
+        server2.failing = true;
+        try {
+            execute(server2);
+            fail("IOException expected");
+        } catch (IOException e) {
+            // expected
+        }
+        server2.failing = false;
+
+        execute(server1);
+        execute(server2);
+
+        // the idle connection to the failed server is closed, the connection to the other server is kept
+        assertEquals(server1.clientPorts.get(0), server1.clientPorts.get(1));
+        assertEquals(server2.clientPorts.get(0), server2.clientPorts.get(1));
+        assertNotEquals(server2.clientPorts.get(1), server2.clientPorts.get(2));
+    }
+
+    private Object execute(TestServer server) throws Exception {
+        HttpInvokerClientConfiguration config = new HttpInvokerClientConfiguration() {
+            @Override
+            public String getServiceUrl() {
+                return "test_Service";
+            }
+
+            @Override
+            public String getCodebaseUrl() {
+                return null;
+            }
+        };
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(new byte[]{1, 2, 3});
+        RemoteInvocationResult result = executor.doExecuteRequest(server.getUrl(), config, baos);
+        return result.getValue();
+    }
+
+    /**
+     * Responds with a serialized invocation result and records the client port of each request.
+     */
+    private static class TestServer {
+
+        private final HttpServer httpServer;
+        private final List<Integer> clientPorts = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failing;
+
+        private TestServer() throws IOException {
+            httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            httpServer.createContext("/", this::handle);
+            httpServer.start();
+        }
+
+        private String getUrl() {
+            return "http://localhost:" + httpServer.getAddress().getPort() + "/remoting/test_Service";
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            IOUtils.toByteArray(exchange.getRequestBody());
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            if (failing) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                SerializationSupport.serialize(new RemoteInvocationResult("ok"), oos);
+            }
+            exchange.sendResponseHeaders(200, bytes.size());
+            bytes.writeTo(exchange.getResponseBody());
+            exchange.close();
+        }
+
+        private void stop() {
+            httpServer.stop(0);
+        }
+    }
+}
@@ -16,11 +16,13 @@
 
 package com.haulmont.cuba.gui.components.data;
 
+import com.haulmont.cuba.gui.components.AggregationInfo;
 import com.haulmont.cuba.gui.data.GroupInfo;
 
 import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface GroupTableItems<I> extends TableItems.Sortable<I> {
     /**
@@ -98,4 +100,26 @@ public interface GroupTableItems<I> extends TableItems.Sortable<I> {
      * Indicates that a group is contained in the groups tree
      */
     boolean containsGroup(GroupInfo groupId);
+
+    /**
+     * Group table items that load groups on demand. Items of a group are not available until the group is expanded.
+     */
+    interface Lazy<I> extends GroupTableItems<I> {
+
+        /**
+         * Loads items of the group if they have not been loaded yet.
+         *
+         * @param groupId group without child groups
+         */
+        void loadGroupItems(GroupInfo groupId);
+
+        /**
+         * Aggregates all items of the group, including the items that have not been loaded yet.
+         *
+         * @param aggregationInfos aggregations to perform
+         * @param groupId          group
+         * @return formatted aggregation results
+         */
+        Map<AggregationInfo, String> aggregate(AggregationInfo[] aggregationInfos, GroupInfo groupId);
+    }
 }
\ No newline at end of file
@@ -22,9 +22,9 @@ import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.gui.components.data.GroupTableItems;
 import com.haulmont.cuba.gui.data.GroupInfo;
+import com.haulmont.cuba.gui.data.impl.GroupTree;
 import com.haulmont.cuba.gui.model.CollectionContainer;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.commons.lang3.ArrayUtils;
 
 import javax.annotation.Nullable;
@@ -49,6 +49,11 @@ public class ContainerGroupTableItems<E extends Entity<K>, K>
 
     protected boolean isGrouping;
 
+    protected GroupTree<E, K> groupTree;
+
+    // groups are updated by the collection change event being handled, no need to regroup
+    protected boolean groupsUpdated;
+
     protected Object[] sortProperties;
     protected boolean[] sortAscending;
 
@@ -71,11 +76,17 @@ public class ContainerGroupTableItems<E extends Entity<K>, K>
         isGrouping = true;
         try {
             if (properties != null) {
+                if (!Arrays.equals(groupProperties, properties)) {
+                    groupsUpdated = false;
+                }
                 groupProperties = properties;
 
                 if (!ArrayUtils.isEmpty(groupProperties)) {
-                    doGroup();
+                    if (!groupsUpdated || !hasGroups()) {
+                        doGroup();
+                    }
                 } else {
+                    groupTree = null;
                     roots = null;
                     parents = null;
                     children = null;
@@ -91,56 +102,99 @@ public class ContainerGroupTableItems<E extends Entity<K>, K>
         }
     }
 
-    protected void doGroup() {
-        roots = new LinkedList<>();
-        parents = new LinkedHashMap<>();
-        children = new LinkedHashMap<>();
-        groupItems = new HashMap<>();
-        itemGroups = new HashMap<>();
-
-        for (E item : container.getItems()) {
-            GroupInfo<MetaPropertyPath> groupInfo = groupItems(0, null, roots, item, new LinkedMap<>());
-
-            if (groupInfo == null) {
-                throw new IllegalStateException("Item group cannot be NULL");
-            }
-
-            List<K> itemsIds = groupItems.computeIfAbsent(groupInfo, k -> new ArrayList<>());
-            itemsIds.add(item.getId());
+    @Override
+    protected void containerCollectionChanged(CollectionContainer.CollectionChangeEvent<E> e) {
+        groupsUpdated = hasGroups() && updateGroups(e);
+        try {
+            super.containerCollectionChanged(e);
+        } finally {
+            groupsUpdated = false;
         }
     }
 
-    protected GroupInfo<MetaPropertyPath> groupItems(int propertyIndex, GroupInfo parent, List<GroupInfo> children,
-                                                     E item, LinkedMap<MetaPropertyPath, Object> groupValues) {
-        MetaPropertyPath property = (MetaPropertyPath) groupProperties[propertyIndex++];
-        Object itemValue = getValueByProperty(item, property);
-        groupValues.put(property, itemValue);
-
-        GroupInfo<MetaPropertyPath> groupInfo = new GroupInfo<>(groupValues);
-        itemGroups.put(item.getId(), groupInfo);
-
-        if (!parents.containsKey(groupInfo)) {
-            parents.put(groupInfo, parent);
+    /**
+     * Applies the changes of the container to the current groups. Items inserted in the middle of the container,
+     * items moved to another group and removed first items of groups are regrouped, so the groups keep the
+     * container order.
+     *
+     * @return false if all items must be regrouped
+     */
+    @SuppressWarnings("unchecked")
+    protected boolean updateGroups(CollectionContainer.CollectionChangeEvent<E> e) {
+        if (groupTree == null) {
+            return false;
         }
 
-        if (!children.contains(groupInfo)) {
-            children.add(groupInfo);
+        switch (e.getChangeType()) {
+            case ADD_ITEMS:
+                // groups keep the container order of items only if the items are appended to the end
+                if (!isAppended(e.getChanges())) {
+                    return false;
+                }
+                groupTree.addItems(e.getChanges());
+                return true;
+            case REMOVE_ITEMS:
+                for (E item : e.getChanges()) {
+                    // the group can move behind its siblings if it no longer starts with the item
+                    if (groupTree.isGroupStart(item.getId())) {
+                        return false;
+                    }
+                    groupTree.removeItem(item.getId());
+                }
+                return true;
+            case SET_ITEM:
+                for (E item : e.getChanges()) {
+                    if (!groupTree.isInActualGroup(item)) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
         }
+    }
 
-        List<GroupInfo> groupChildren =
-                this.children.computeIfAbsent(groupInfo, k -> new ArrayList<>());
-
-        if (propertyIndex < groupProperties.length) {
-            groupInfo = groupItems(propertyIndex, groupInfo, groupChildren, item, groupValues);
+    protected boolean isAppended(Collection<? extends E> addedItems) {
+        List<E> items = container.getItems();
+        int index = items.size() - addedItems.size();
+        if (index < 0) {
+            return false;
+        }
+        for (E item : addedItems) {
+            if (items.get(index++) != item) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    protected void doGroup() {
+        groupTree = createGroupTree();
+        groupTree.addItems(container.getItems());
+
+        roots = groupTree.getRoots();
+        parents = groupTree.getParents();
+        children = groupTree.getChildren();
+        groupItems = groupTree.getGroupItems();
+        itemGroups = groupTree.getItemGroups();
+    }
 
-        return groupInfo;
+    protected GroupTree<E, K> createGroupTree() {
+        return new GroupTree<E, K>(groupProperties) {
+            @Override
+            protected Object getValue(E item, int level) {
+                return getValueByProperty(item, properties[level]);
+            }
+        };
     }
 
     protected Object getValueByProperty(E item, MetaPropertyPath property) {
         Preconditions.checkNotNullArgument(item);
 
-        return item.getValueEx(property.toString());
+        if (property.getMetaProperties().length == 1) {
+            return item.getValue(property.getMetaProperty().getName());
+        }
+        return item.getValueEx(property);
     }
 
     @Override
@@ -0,0 +1,436 @@
+/*
+ * Copyright (c) 2008-2018 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.gui.components.data.table;
+
+import com.haulmont.chile.core.datatypes.impl.EnumClass;
+import com.haulmont.chile.core.model.MetaPropertyPath;
+import com.haulmont.chile.core.model.Range;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.core.entity.KeyValueEntity;
+import com.haulmont.cuba.core.global.AppBeans;
+import com.haulmont.cuba.core.global.DataManager;
+import com.haulmont.cuba.core.global.LoadContext;
+import com.haulmont.cuba.core.global.ValueLoadContext;
+import com.haulmont.cuba.gui.components.AggregationInfo;
+import com.haulmont.cuba.gui.components.data.GroupTableItems;
+import com.haulmont.cuba.gui.data.GroupInfo;
+import com.haulmont.cuba.gui.data.aggregation.Aggregations;
+import com.haulmont.cuba.gui.model.CollectionChangeType;
+import com.haulmont.cuba.gui.model.CollectionContainer;
+import com.haulmont.cuba.gui.model.CollectionLoader;
+import com.haulmont.cuba.gui.model.DataContext;
+import org.apache.commons.collections4.map.LinkedMap;
+import org.apache.commons.lang3.ArrayUtils;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * {@link ContainerGroupTableItems} that groups entities and calculates aggregates in the database using
+ * {@link CollectionLoader#createGroupLoadContext(MetaPropertyPath, Map, Map)}, so groups and totals reflect all
+ * entities selected by the loader and not only the loaded ones.
+ * <p>
+ * Nested groups are loaded when they are requested for the first time. Items of a group are loaded and added
+ * to the container when the group is expanded.
+ * <p>
+ * If a grouping property is not a datatype or enum property, the items of the container are grouped in memory.
+ * Aggregations with a custom strategy are always calculated in memory over the loaded items.
+ * <p>
+ * Groups reflect the state of the database. Removed items are excluded in memory, but adding or replacing items
+ * in the container and changing their properties reload the groups, which takes a database round-trip per
+ * change. Items that are not committed yet are not shown in the groups until they are saved. Use
+ * {@link ContainerGroupTableItems} for tables that are edited in place.
+ */
+public class LoaderGroupTableItems<E extends Entity<K>, K> extends ContainerGroupTableItems<E, K>
+        implements GroupTableItems.Lazy<E> {
+
+    protected static final String AGGREGATE_PREFIX = "aggregate";
+
+    protected CollectionLoader<E> loader;
+
+    // groups are loaded from the database
+    protected boolean lazyGroups;
+
+    protected Map<GroupInfo, Integer> groupItemsCounts;
+    protected Map<GroupInfo, Map<AggregationInfo, Object>> groupAggregates;
+    protected Map<AggregationInfo, Object> totalAggregates;
+
+    public LoaderGroupTableItems(CollectionContainer<E> container, CollectionLoader<E> loader) {
+        super(container);
+        this.loader = loader;
+    }
+
+    public CollectionLoader<E> getLoader() {
+        return loader;
+    }
+
+    protected DataManager getDataManager() {
+        return AppBeans.get(DataManager.NAME);
+    }
+
+    protected boolean isLazyGroups() {
+        return lazyGroups && hasGroups();
+    }
+
+    @Override
+    protected void doGroup() {
+        totalAggregates = null;
+
+        if (!canGroupInDatabase()) {
+            lazyGroups = false;
+            groupItemsCounts = null;
+            groupAggregates = null;
+            super.doGroup();
+            return;
+        }
+
+        lazyGroups = true;
+        groupTree = null;
+        parents = new HashMap<>();
+        children = new HashMap<>();
+        groupItems = new HashMap<>();
+        itemGroups = new HashMap<>();
+        groupItemsCounts = new HashMap<>();
+        groupAggregates = new HashMap<>();
+
+        roots = loadGroups(null);
+    }
+
+    protected boolean canGroupInDatabase() {
+        if (loader.getQuery() == null) {
+            return false;
+        }
+        for (Object property : groupProperties) {
+            if (!(property instanceof MetaPropertyPath)) {
+                return false;
+            }
+            Range range = ((MetaPropertyPath) property).getRange();
+            if (!range.isDatatype() && !range.isEnum()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected List<GroupInfo> loadGroups(@Nullable GroupInfo parent) {
+        Map<GroupInfo, KeyValueEntity> rows = queryGroups(parent, new AggregationInfo[0]);
+
+        List<GroupInfo> groups = new ArrayList<>(rows.size());
+        for (Map.Entry<GroupInfo, KeyValueEntity> entry : rows.entrySet()) {
+            GroupInfo groupInfo = entry.getKey();
+            Number count = entry.getValue().getValue(CollectionLoader.GROUP_ITEMS_COUNT);
+
+            groups.add(groupInfo);
+            parents.put(groupInfo, parent);
+            groupItemsCounts.put(groupInfo, count == null ? 0 : count.intValue());
+        }
+        if (parent != null) {
+            children.put(parent, groups);
+        }
+        return groups;
+    }
+
+    protected void loadGroupAggregates(@Nullable GroupInfo parent, AggregationInfo[] aggregationInfos) {
+        Map<GroupInfo, KeyValueEntity> rows = queryGroups(parent, aggregationInfos);
+
+        for (Map.Entry<GroupInfo, KeyValueEntity> entry : rows.entrySet()) {
+            if (containsGroup(entry.getKey())) {
+                Map<AggregationInfo, Object> values =
+                        groupAggregates.computeIfAbsent(entry.getKey(), groupInfo -> new HashMap<>());
+                putAggregates(values, aggregationInfos, entry.getValue());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<GroupInfo, KeyValueEntity> queryGroups(@Nullable GroupInfo parent,
+                                                         AggregationInfo[] aggregationInfos) {
+        int level = parent == null ? 0 : getGroupLevel(parent) + 1;
+        MetaPropertyPath groupProperty = (MetaPropertyPath) groupProperties[level];
+        Map<MetaPropertyPath, Object> parentValues = getGroupValues(parent);
+
+        ValueLoadContext loadContext = loader.createGroupLoadContext(groupProperty, parentValues,
+                createAggregates(aggregationInfos));
+
+        Map<GroupInfo, KeyValueEntity> rows = new LinkedHashMap<>();
+        for (KeyValueEntity row : getDataManager().loadValues(loadContext)) {
+            LinkedMap groupingValues = new LinkedMap(parentValues);
+            groupingValues.put(groupProperty,
+                    convertGroupValue(groupProperty, row.getValue(CollectionLoader.GROUP_VALUE)));
+
+            rows.put(new GroupInfo<>(groupingValues), row);
+        }
+        return rows;
+    }
+
+    protected int getGroupLevel(GroupInfo groupId) {
+        return ArrayUtils.indexOf(groupProperties, groupId.getProperty());
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<MetaPropertyPath, Object> getGroupValues(@Nullable GroupInfo groupId) {
+        if (groupId == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<MetaPropertyPath, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i <= getGroupLevel(groupId); i++) {
+            MetaPropertyPath property = (MetaPropertyPath) groupProperties[i];
+            values.put(property, groupId.getPropertyValue(property));
+        }
+        return values;
+    }
+
+    protected Object convertGroupValue(MetaPropertyPath groupProperty, @Nullable Object value) {
+        // enum attributes are selected as their identifiers
+        if (value != null && groupProperty.getRange().isEnum() && !(value instanceof EnumClass)) {
+            for (Enum enumValue : groupProperty.getRange().asEnumeration().getValues()) {
+                if (Objects.equals(((EnumClass) enumValue).getId(), value)) {
+                    return enumValue;
+                }
+            }
+        }
+        return value;
+    }
+
+    protected boolean isDatabaseAggregation(AggregationInfo aggregationInfo) {
+        MetaPropertyPath propertyPath = aggregationInfo.getPropertyPath();
+        return aggregationInfo.getStrategy() == null
+                && aggregationInfo.getType() != AggregationInfo.Type.CUSTOM
+                && propertyPath != null
+                && propertyPath.getRange().isDatatype();
+    }
+
+    protected Map<String, String> createAggregates(AggregationInfo[] aggregationInfos) {
+        Map<String, String> aggregates = new LinkedHashMap<>();
+        for (int i = 0; i < aggregationInfos.length; i++) {
+            AggregationInfo aggregationInfo = aggregationInfos[i];
+            String function = aggregationInfo.getType().name().toLowerCase();
+            aggregates.put(AGGREGATE_PREFIX + i,
+                    function + "({E}." + aggregationInfo.getPropertyPath().toPathString() + ")");
+        }
+        return aggregates;
+    }
+
+    protected void putAggregates(Map<AggregationInfo, Object> values, AggregationInfo[] aggregationInfos,
+                                 KeyValueEntity row) {
+        for (int i = 0; i < aggregationInfos.length; i++) {
+            AggregationInfo aggregationInfo = aggregationInfos[i];
+            values.put(aggregationInfo, convertAggregatedValue(aggregationInfo, row.getValue(AGGREGATE_PREFIX + i)));
+        }
+    }
+
+    @Nullable
+    protected Object convertAggregatedValue(AggregationInfo aggregationInfo, @Nullable Object value) {
+        if (aggregationInfo.getType() == AggregationInfo.Type.COUNT) {
+            return value == null ? 0L : ((Number) value).longValue();
+        }
+        if (!(value instanceof Number)) {
+            return value;
+        }
+
+        // the database returns sum and avg as wider types, bring them to the types used by in-memory aggregation
+        Class resultClass = Aggregations.get(aggregationInfo.getPropertyPath().getRangeJavaClass()).getResultClass();
+        Number number = (Number) value;
+        if (resultClass == BigDecimal.class) {
+            return number instanceof BigDecimal ? number : new BigDecimal(number.toString());
+        } else if (resultClass == Long.class) {
+            return number.longValue();
+        } else if (resultClass == Double.class) {
+            return number.doubleValue();
+        }
+        return value;
+    }
+
+    @Override
+    public void loadGroupItems(GroupInfo groupId) {
+        if (!isLazyGroups() || !containsGroup(groupId) || hasChildren(groupId) || groupItems.containsKey(groupId)) {
+            return;
+        }
+
+        LoadContext<E> loadContext = loader.createGroupItemsLoadContext(getGroupValues(groupId));
+
+        Function<LoadContext<E>, List<E>> delegate = loader.getLoadDelegate();
+        List<E> entities = delegate == null ? getDataManager().loadList(loadContext) : delegate.apply(loadContext);
+
+        DataContext dataContext = loader.getDataContext();
+        List<K> itemIds = new ArrayList<>(entities.size());
+        List<E> newItems = new ArrayList<>();
+        for (E entity : entities) {
+            E item = container.getItemOrNull(entity.getId());
+            if (item == null) {
+                item = dataContext != null ? dataContext.merge(entity) : entity;
+                newItems.add(item);
+            }
+            itemIds.add(item.getId());
+            itemGroups.put(item.getId(), groupId);
+        }
+        groupItems.put(groupId, itemIds);
+
+        if (!newItems.isEmpty()) {
+            // the groups are already updated, so the table must not be notified
+            container.mute();
+            try {
+                container.getMutableItems().addAll(newItems);
+            } finally {
+                container.unmute(CollectionContainer.UnmuteEventsMode.SILENT);
+            }
+        }
+    }
+
+    @Override
+    protected boolean updateGroups(CollectionContainer.CollectionChangeEvent<E> e) {
+        if (!isLazyGroups()) {
+            return super.updateGroups(e);
+        }
+
+        if (e.getChangeType() == CollectionChangeType.REMOVE_ITEMS) {
+            for (E item : e.getChanges()) {
+                removeGroupItem(item.getId());
+            }
+            return true;
+        }
+        // other changes are not known to the database yet, the groups are reloaded from the database and
+        // uncommitted items are not shown, see the class documentation
+        return false;
+    }
+
+    protected void removeGroupItem(K itemId) {
+        GroupInfo groupInfo = itemGroups.remove(itemId);
+        if (groupInfo == null) {
+            return;
+        }
+
+        groupItems.get(groupInfo).remove(itemId);
+        totalAggregates = null;
+        while (groupInfo != null) {
+            groupItemsCounts.computeIfPresent(groupInfo, (group, count) -> count - 1);
+            groupAggregates.remove(groupInfo);
+            groupInfo = parents.get(groupInfo);
+        }
+    }
+
+    @Override
+    public Map<AggregationInfo, String> aggregate(AggregationInfo[] aggregationInfos, GroupInfo groupId) {
+        if (!isLazyGroups()) {
+            return aggregate(aggregationInfos, getGroupItemIds(groupId));
+        }
+
+        Map<AggregationInfo, Object> values = groupAggregates.computeIfAbsent(groupId, groupInfo -> new HashMap<>());
+        AggregationInfo[] missing = getMissingAggregations(aggregationInfos, values);
+        if (missing.length > 0) {
+            // aggregates of all groups of the same level are loaded by a single query
+            loadGroupAggregates(parents.get(groupId), missing);
+        }
+
+        return formatAggregates(aggregationInfos, values, getGroupItemIds(groupId));
+    }
+
+    @Override
+    public Map<AggregationInfo, String> aggregate(AggregationInfo[] aggregationInfos, Collection<?> itemIds) {
+        if (!isLazyGroups()) {
+            return super.aggregate(aggregationInfos, itemIds);
+        }
+
+        if (totalAggregates == null) {
+            totalAggregates = new HashMap<>();
+        }
+        AggregationInfo[] missing = getMissingAggregations(aggregationInfos, totalAggregates);
+        if (missing.length > 0) {
+            ValueLoadContext loadContext = loader.createGroupLoadContext(null, Collections.emptyMap(),
+                    createAggregates(missing));
+            List<KeyValueEntity> rows = getDataManager().loadValues(loadContext);
+            if (!rows.isEmpty()) {
+                putAggregates(totalAggregates, missing, rows.get(0));
+            }
+        }
+
+        return formatAggregates(aggregationInfos, totalAggregates, itemIds);
+    }
+
+    protected AggregationInfo[] getMissingAggregations(AggregationInfo[] aggregationInfos,
+                                                       Map<AggregationInfo, Object> values) {
+        return Arrays.stream(aggregationInfos)
+                .filter(aggregationInfo -> isDatabaseAggregation(aggregationInfo) && !values.containsKey(aggregationInfo))
+                .toArray(AggregationInfo[]::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Map<AggregationInfo, String> formatAggregates(AggregationInfo[] aggregationInfos,
+                                                            Map<AggregationInfo, Object> values,
+                                                            Collection<?> itemIds) {
+        Map<AggregationInfo, String> results = new HashMap<>();
+
+        AggregationInfo[] inMemory = Arrays.stream(aggregationInfos)
+                .filter(aggregationInfo -> !isDatabaseAggregation(aggregationInfo))
+                .toArray(AggregationInfo[]::new);
+        if (inMemory.length > 0) {
+            results.putAll(aggregatableDelegate.aggregate(inMemory, itemIds));
+        }
+
+        for (AggregationInfo aggregationInfo : aggregationInfos) {
+            if (isDatabaseAggregation(aggregationInfo)) {
+                results.put(aggregationInfo,
+                        aggregatableDelegate.formatAggregatedValue(aggregationInfo, values.get(aggregationInfo)));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public boolean hasChildren(GroupInfo groupId) {
+        if (!isLazyGroups()) {
+            return super.hasChildren(groupId);
+        }
+        return containsGroup(groupId) && getGroupLevel(groupId) < groupProperties.length - 1;
+    }
+
+    @Override
+    public List<GroupInfo> getChildren(GroupInfo groupId) {
+        if (!isLazyGroups()) {
+            return super.getChildren(groupId);
+        }
+
+        if (hasChildren(groupId)) {
+            List<GroupInfo> groupChildren = children.get(groupId);
+            if (groupChildren == null) {
+                groupChildren = loadGroups(groupId);
+            }
+            return Collections.unmodifiableList(groupChildren);
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<GroupInfo> getChildrenInternal(GroupInfo groupId) {
+        if (!isLazyGroups()) {
+            return super.getChildrenInternal(groupId);
+        }
+        // only the loaded groups
+        return children.getOrDefault(groupId, Collections.emptyList());
+    }
+
+    @Override
+    public int getGroupItemsCount(GroupInfo groupId) {
+        if (!isLazyGroups()) {
+            return super.getGroupItemsCount(groupId);
+        }
+        return groupItemsCounts.getOrDefault(groupId, 0);
+    }
+}
@@ -34,7 +34,7 @@ import com.haulmont.cuba.gui.components.HasValue;
 import com.haulmont.cuba.gui.data.CollectionDatasource;
 import com.haulmont.cuba.gui.data.DataSupplier;
 import com.haulmont.cuba.gui.data.Datasource;
-import com.haulmont.cuba.gui.model.impl.EntityValuesComparator;
+import com.haulmont.cuba.gui.model.impl.EntityValuesSorter;
 import com.haulmont.cuba.security.global.UserSession;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -492,16 +492,14 @@ public abstract class AbstractCollectionDatasource<T extends Entity<K>, K>
         }
     }
 
+    protected EntityValuesSorter createEntitySorter() {
+        // In case of generated column the sortInfos can actually contain string as a column identifier,
+        // such sort infos are skipped by the sorter.
+        return EntityValuesSorter.create(sortInfos);
+    }
+
     protected Comparator<T> createEntityComparator() {
-        // In case of generated column the sortInfos can actually contain string as a column identifier.
-        if (sortInfos[0].getPropertyPath() != null) {
-            final MetaPropertyPath propertyPath = sortInfos[0].getPropertyPath();
-            final boolean asc = Sortable.Order.ASC.equals(sortInfos[0].getOrder());
-            return Comparator.comparing(e -> e.getValueEx(propertyPath), EntityValuesComparator.asc(asc));
-        } else {
-            // If we can not sort the datasource, just return the empty comparator.
-            return (o1, o2) -> 0;
-        }
+        return createEntitySorter().comparator();
     }
 
     protected DataLoadContextQuery createDataQuery(DataLoadContext context, Map<String, Object> params) {
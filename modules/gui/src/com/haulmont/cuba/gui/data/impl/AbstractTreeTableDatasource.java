@@ -18,10 +18,9 @@
 package com.haulmont.cuba.gui.data.impl;
 
 import com.haulmont.bali.datastruct.Node;
-import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.gui.data.HierarchicalDatasource;
-import com.haulmont.cuba.gui.model.impl.EntityValuesComparator;
+import com.haulmont.cuba.gui.model.impl.EntityValuesSorter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,19 +51,21 @@ public abstract class AbstractTreeTableDatasource<T extends Entity<K>, K>
     }
 
     protected void sort(List<Node<T>> nodesList) {
-        nodesList.sort(createEntityNodeComparator());
+        sort(nodesList, EntityValuesSorter.create(sortInfos));
+    }
+
+    protected void sort(List<Node<T>> nodesList, EntityValuesSorter sorter) {
+        sorter.sort(nodesList, node -> node != null ? node.getData() : null);
         for (Node<T> n :nodesList) {
             if (n.getNumberOfChildren() > 0) {
-                sort(n.getChildren());
+                sort(n.getChildren(), sorter);
             }
         }
     }
 
     protected Comparator<Node<T>> createEntityNodeComparator() {
-        final MetaPropertyPath propertyPath = sortInfos[0].getPropertyPath();
-        final boolean asc = Order.ASC.equals(sortInfos[0].getOrder());
-
-        return Comparator.comparing(node -> node != null ? node.getData().getValueEx(propertyPath) : null,
-                EntityValuesComparator.asc(asc));
+        Comparator<T> comparator = EntityValuesSorter.create(sortInfos).comparator();
+        return Comparator.comparing(node -> node != null ? node.getData() : null,
+                Comparator.nullsFirst(comparator));
     }
 }
\ No newline at end of file
@@ -77,7 +77,7 @@ public class CollectionDatasourceImpl<T extends Entity<K>, K>
         }
     };
 
-    protected SortDelegate<T, K> sortDelegate = (entities, sortInfo) -> entities.sort(createEntityComparator());
+    protected SortDelegate<T, K> sortDelegate = (entities, sortInfo) -> createEntitySorter().sort(entities);
 
     protected boolean suspended;
 
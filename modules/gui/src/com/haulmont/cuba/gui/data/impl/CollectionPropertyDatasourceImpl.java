@@ -26,7 +26,7 @@ import com.haulmont.cuba.core.global.filter.QueryFilter;
 import com.haulmont.cuba.gui.components.AggregationInfo;
 import com.haulmont.cuba.gui.data.CollectionDatasource;
 import com.haulmont.cuba.gui.data.Datasource;
-import com.haulmont.cuba.gui.model.impl.EntityValuesComparator;
+import com.haulmont.cuba.gui.model.impl.EntityValuesSorter;
 import com.haulmont.cuba.security.entity.EntityAttrAccess;
 import com.haulmont.cuba.security.entity.EntityOp;
 import com.haulmont.cuba.security.entity.PermissionType;
@@ -61,7 +61,7 @@ public class CollectionPropertyDatasourceImpl<T extends Entity<K>, K>
 
     protected List<CollectionChangeListener<? super T, K>> collectionChangeListeners;
 
-    protected SortDelegate<T, K> sortDelegate = (entities, sortInfo) -> entities.sort(createEntityComparator());
+    protected SortDelegate<T, K> sortDelegate = (entities, sortInfo) -> createEntitySorter().sort(entities);
 
     protected AggregatableDelegate<K> aggregatableDelegate = new AggregatableDelegate<K>() {
         @Override
@@ -885,10 +885,12 @@ public class CollectionPropertyDatasourceImpl<T extends Entity<K>, K>
         this.sortDelegate = sortDelegate;
     }
 
+    protected EntityValuesSorter createEntitySorter() {
+        return EntityValuesSorter.create(sortInfos);
+    }
+
     protected Comparator<T> createEntityComparator() {
-        MetaPropertyPath propertyPath = sortInfos[0].getPropertyPath();
-        boolean asc = Order.ASC.equals(sortInfos[0].getOrder());
-        return Comparator.comparing(e -> e.getValueEx(propertyPath), EntityValuesComparator.asc(asc));
+        return createEntitySorter().comparator();
     }
 
     @Override
@@ -22,7 +22,6 @@ import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.gui.data.*;
 import org.apache.commons.collections4.CollectionUtils;
-import org.apache.commons.collections4.map.LinkedMap;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.util.*;
@@ -103,51 +102,25 @@ public abstract class GroupDelegate<T extends Entity<K>, K> {
     }
 
     protected void doGroup() {
-        roots = new LinkedList<>();
-        parents = new LinkedHashMap<>();
-        children = new HashMap<>();
-        groupItems = new HashMap<>();
-        itemGroups = new HashMap<>();
-
-        Collection<K> itemIds = datasource.getItemIds();
-        for (K id : itemIds) {
-            T item = datasource.getItem(id);
-            GroupInfo<MetaPropertyPath> groupInfo = groupItems(0, null, roots, item, new LinkedMap<>());
-
-            if (groupInfo == null) {
-                throw new IllegalStateException("Item group cannot be NULL");
-            }
-
-            List<K> itemsIds = groupItems.computeIfAbsent(groupInfo, k -> new ArrayList<>());
-            itemsIds.add(id);
-        }
-    }
-
-    protected GroupInfo<MetaPropertyPath> groupItems(int propertyIndex, GroupInfo parent, List<GroupInfo> children,
-                                                     T item, LinkedMap<MetaPropertyPath, Object> groupValues) {
-        MetaPropertyPath property = (MetaPropertyPath) groupProperties[propertyIndex++];
-        Object itemValue = getValueByProperty(item, property);
-        groupValues.put(property, itemValue);
-
-        GroupInfo<MetaPropertyPath> groupInfo = new GroupInfo<>(groupValues);
-        itemGroups.put(item.getId(), groupInfo);
-
-        if (!parents.containsKey(groupInfo)) {
-            parents.put(groupInfo, parent);
+        GroupTree<T, K> groupTree = createGroupTree();
+        for (K id : datasource.getItemIds()) {
+            groupTree.addItem(datasource.getItem(id));
         }
 
-        if (!children.contains(groupInfo)) {
-            children.add(groupInfo);
-        }
-
-        List<GroupInfo> groupChildren =
-                this.children.computeIfAbsent(groupInfo, k -> new ArrayList<>());
-
-        if (propertyIndex < groupProperties.length) {
-            groupInfo = groupItems(propertyIndex, groupInfo, groupChildren, item, groupValues);
-        }
+        roots = groupTree.getRoots();
+        parents = groupTree.getParents();
+        children = groupTree.getChildren();
+        groupItems = groupTree.getGroupItems();
+        itemGroups = groupTree.getItemGroups();
+    }
 
-        return groupInfo;
+    protected GroupTree<T, K> createGroupTree() {
+        return new GroupTree<T, K>(groupProperties) {
+            @Override
+            protected Object getValue(T item, int level) {
+                return getValueByProperty(item, properties[level]);
+            }
+        };
     }
 
     protected abstract void doSort(CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfo);
@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.gui.data.impl;
+
+import com.haulmont.chile.core.model.MetaPropertyPath;
+import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.gui.data.GroupInfo;
+import org.apache.commons.collections4.map.LinkedMap;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Groups entities by values of the given properties. Used by {@link GroupDelegate} and
+ * {@link com.haulmont.cuba.gui.components.data.table.ContainerGroupTableItems}.
+ * <p>
+ * Groups are found by property values through hash maps on each level, so a {@link GroupInfo} is created only
+ * once per group and an item is added in time proportional to the number of group properties. Items can be
+ * removed and appended to the end of their groups one by one without regrouping the whole collection.
+ *
+ * @param <E> entity type
+ * @param <K> entity id type
+ */
+public class GroupTree<E extends Entity<K>, K> {
+
+    protected final MetaPropertyPath[] properties;
+    // property names of the single-segment paths, null for nested paths
+    protected final String[] propertyNames;
+
+    protected final List<GroupInfo> roots = new ArrayList<>();
+    protected final Map<GroupInfo, GroupInfo> parents = new LinkedHashMap<>();
+    protected final Map<GroupInfo, List<GroupInfo>> children = new LinkedHashMap<>();
+    protected final Map<GroupInfo, List<K>> groupItems = new HashMap<>();
+    // reversed relations from groupItems
+    protected final Map<K, GroupInfo> itemGroups = new HashMap<>();
+
+    protected final Map<Object, Node> rootNodes = new HashMap<>();
+    protected final Map<GroupInfo, Node> nodes = new HashMap<>();
+
+    /**
+     * @param groupProperties {@link MetaPropertyPath}s to group by, in the order of nesting
+     */
+    public GroupTree(Object[] groupProperties) {
+        properties = new MetaPropertyPath[groupProperties.length];
+        propertyNames = new String[groupProperties.length];
+        for (int i = 0; i < groupProperties.length; i++) {
+            MetaPropertyPath property = (MetaPropertyPath) groupProperties[i];
+            properties[i] = property;
+            if (property.getMetaProperties().length == 1) {
+                propertyNames[i] = property.getMetaProperty().getName();
+            }
+        }
+    }
+
+    public void addItems(Collection<? extends E> items) {
+        for (E item : items) {
+            addItem(item);
+        }
+    }
+
+    /**
+     * Adds the item to the end of its group, creating the group and its parents if needed.
+     */
+    public void addItem(E item) {
+        Map<Object, Node> levelNodes = rootNodes;
+        Node parent = null;
+        for (int i = 0; i < properties.length; i++) {
+            Object value = getValue(item, i);
+            Node node = levelNodes.get(value);
+            if (node == null) {
+                node = createNode(parent, i, value);
+                node.keys.add(value);
+                levelNodes.put(value, node);
+            }
+            parent = node;
+            levelNodes = node.childNodes;
+        }
+
+        //noinspection ConstantConditions
+        groupItems.computeIfAbsent(parent.groupInfo, k -> new ArrayList<>()).add(item.getId());
+        itemGroups.put(item.getId(), parent.groupInfo);
+    }
+
+    /**
+     * Removes the item and its groups that become empty.
+     *
+     * @return true if the item was grouped
+     */
+    public boolean removeItem(K id) {
+        GroupInfo groupInfo = itemGroups.remove(id);
+        if (groupInfo == null) {
+            return false;
+        }
+        List<K> ids = groupItems.get(groupInfo);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                groupItems.remove(groupInfo);
+                removeEmptyNode(nodes.get(groupInfo));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Groups are ordered by the first occurrence of their items, so removing the first item of a group can move
+     * the group behind its siblings.
+     *
+     * @return true if the item is the first item of a group that keeps other items after the removal
+     */
+    public boolean isGroupStart(K id) {
+        GroupInfo groupInfo = itemGroups.get(id);
+        if (groupInfo == null) {
+            return false;
+        }
+        List<K> ids = groupItems.get(groupInfo);
+        if (ids == null || ids.isEmpty() || !ids.get(0).equals(id)) {
+            return false;
+        }
+        if (ids.size() > 1) {
+            return true;
+        }
+        // the group is removed with the item, its parents keep their order unless they start with it
+        GroupInfo parentInfo = parents.get(groupInfo);
+        while (parentInfo != null) {
+            List<GroupInfo> siblings = children.get(parentInfo);
+            if (siblings.isEmpty() || !siblings.get(0).equals(groupInfo)) {
+                return false;
+            }
+            if (siblings.size() > 1) {
+                return true;
+            }
+            groupInfo = parentInfo;
+            parentInfo = parents.get(groupInfo);
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the item is grouped and its current property values correspond to its group
+     */
+    public boolean isInActualGroup(E item) {
+        GroupInfo groupInfo = itemGroups.get(item.getId());
+        if (groupInfo == null) {
+            return false;
+        }
+        Map<Object, Node> levelNodes = rootNodes;
+        Node node = null;
+        for (int i = 0; i < properties.length; i++) {
+            node = levelNodes.get(getValue(item, i));
+            if (node == null) {
+                return false;
+            }
+            levelNodes = node.childNodes;
+        }
+        return node != null && groupInfo.equals(node.groupInfo);
+    }
+
+    protected Node createNode(@Nullable Node parent, int level, @Nullable Object value) {
+        LinkedMap<MetaPropertyPath, Object> groupValues = new LinkedMap<>();
+        if (parent != null) {
+            groupValues.putAll(parent.groupValues);
+        }
+        groupValues.put(properties[level], value);
+
+        GroupInfo<MetaPropertyPath> groupInfo = new GroupInfo<>(groupValues);
+        Node existing = nodes.get(groupInfo);
+        if (existing != null) {
+            // GroupInfo equality is based on the string representation, so different values can form one group
+            return existing;
+        }
+
+        Node node = new Node(parent, groupValues, groupInfo);
+        GroupInfo parentInfo = parent != null ? parent.groupInfo : null;
+
+        parents.put(node.groupInfo, parentInfo);
+        children.put(node.groupInfo, new ArrayList<>());
+        if (parentInfo == null) {
+            roots.add(node.groupInfo);
+        } else {
+            children.get(parentInfo).add(node.groupInfo);
+        }
+        nodes.put(node.groupInfo, node);
+        return node;
+    }
+
+    protected void removeEmptyNode(@Nullable Node node) {
+        while (node != null && node.childNodes.isEmpty() && !groupItems.containsKey(node.groupInfo)) {
+            Node parent = node.parent;
+            if (parent == null) {
+                rootNodes.keySet().removeAll(node.keys);
+                roots.remove(node.groupInfo);
+            } else {
+                parent.childNodes.keySet().removeAll(node.keys);
+                children.get(parent.groupInfo).remove(node.groupInfo);
+            }
+            parents.remove(node.groupInfo);
+            children.remove(node.groupInfo);
+            nodes.remove(node.groupInfo);
+            node = parent;
+        }
+    }
+
+    protected Object getValue(E item, int level) {
+        String propertyName = propertyNames[level];
+        return propertyName != null ? item.getValue(propertyName) : item.getValueEx(properties[level]);
+    }
+
+    public List<GroupInfo> getRoots() {
+        return roots;
+    }
+
+    public Map<GroupInfo, GroupInfo> getParents() {
+        return parents;
+    }
+
+    public Map<GroupInfo, List<GroupInfo>> getChildren() {
+        return children;
+    }
+
+    public Map<GroupInfo, List<K>> getGroupItems() {
+        return groupItems;
+    }
+
+    public Map<K, GroupInfo> getItemGroups() {
+        return itemGroups;
+    }
+
+    protected static class Node {
+        protected final Node parent;
+        // values referring to this node in the parent level
+        protected final List<Object> keys = new ArrayList<>(1);
+        protected final LinkedMap<MetaPropertyPath, Object> groupValues;
+        protected final GroupInfo<MetaPropertyPath> groupInfo;
+        protected final Map<Object, Node> childNodes = new HashMap<>();
+
+        protected Node(@Nullable Node parent, LinkedMap<MetaPropertyPath, Object> groupValues,
+                       GroupInfo<MetaPropertyPath> groupInfo) {
+            this.parent = parent;
+            this.groupValues = groupValues;
+            this.groupInfo = groupInfo;
+        }
+    }
+}
@@ -16,12 +16,16 @@
 
 package com.haulmont.cuba.gui.model;
 
+import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.LoadContext;
+import com.haulmont.cuba.core.global.ValueLoadContext;
 import com.haulmont.cuba.core.global.View;
 import com.haulmont.cuba.gui.screen.InstallSubject;
 
+import javax.annotation.Nullable;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 /**
@@ -30,6 +34,17 @@ import java.util.function.Function;
 @InstallSubject("loadDelegate")
 public interface CollectionLoader<E extends Entity> extends BaseCollectionLoader {
 
+    /**
+     * Key of the grouping property value in the results of {@link #createGroupLoadContext(MetaPropertyPath, Map, Map)}.
+     */
+    String GROUP_VALUE = "groupValue";
+
+    /**
+     * Key of the number of entities in the group in the results of
+     * {@link #createGroupLoadContext(MetaPropertyPath, Map, Map)}.
+     */
+    String GROUP_ITEMS_COUNT = "groupItemsCount";
+
     /**
      * Returns the container which accepts loaded entities.
      */
@@ -46,6 +61,37 @@ public interface CollectionLoader<E extends Entity> extends BaseCollectionLoader
      */
     LoadContext<E> createLoadContext();
 
+    /**
+     * Returns {@code ValueLoadContext} which loads groups of the entities selected by the query, condition and
+     * parameters of this loader. Grouping and aggregation are performed by the database, the first and max results
+     * of the loader are not taken into account.
+     * <p>
+     * Each loaded {@code KeyValueEntity} represents a group and contains the value of the grouping property under
+     * the {@link #GROUP_VALUE} key, the number of entities in the group under the {@link #GROUP_ITEMS_COUNT} key
+     * and the results of the aggregate expressions under their keys.
+     *
+     * @param groupProperty     datatype or enum property to group by, or null to aggregate all entities
+     * @param parentGroupValues values of the outer grouping properties the entities must have
+     * @param aggregates        JPQL aggregate expressions by result keys, e.g. {@code sum({E}.amount)}
+     * @throws UnsupportedOperationException if the loader cannot group entities in the database
+     */
+    default ValueLoadContext createGroupLoadContext(@Nullable MetaPropertyPath groupProperty,
+                                                    Map<MetaPropertyPath, Object> parentGroupValues,
+                                                    Map<String, String> aggregates) {
+        throw new UnsupportedOperationException("Grouping in the database is not supported by " + getClass().getName());
+    }
+
+    /**
+     * Returns {@code LoadContext} which loads the entities of the group having the given values of the grouping
+     * properties. The first and max results of the loader are not taken into account.
+     *
+     * @param groupValues values of the grouping properties
+     * @throws UnsupportedOperationException if the loader cannot group entities in the database
+     */
+    default LoadContext<E> createGroupItemsLoadContext(Map<MetaPropertyPath, Object> groupValues) {
+        throw new UnsupportedOperationException("Grouping in the database is not supported by " + getClass().getName());
+    }
+
     /**
      * Returns true if the entity's dynamic attributes are loaded.
      */
@@ -17,7 +17,6 @@
 package com.haulmont.cuba.gui.model.impl;
 
 import com.haulmont.chile.core.model.MetaClass;
-import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.Sort;
 import com.haulmont.cuba.gui.model.CollectionContainer;
@@ -53,21 +52,17 @@ public abstract class BaseContainerSorter implements Sorter {
             return;
         }
         List list = new ArrayList(container.getItems());
-        list.sort(createComparator(sort, container.getEntityMetaClass()));
+        createSorter(sort, container.getEntityMetaClass()).sort(list);
         setItemsToContainer(list);
     }
 
     protected abstract void setItemsToContainer(List list);
 
+    protected EntityValuesSorter createSorter(Sort sort, MetaClass metaClass) {
+        return EntityValuesSorter.create(sort, metaClass);
+    }
+
     protected Comparator<? extends Entity> createComparator(Sort sort, MetaClass metaClass) {
-        if (sort.getOrders().size() > 1) {
-            throw new UnsupportedOperationException("Sort by multiple properties is not supported");
-        }
-        MetaPropertyPath propertyPath = metaClass.getPropertyPath(sort.getOrders().get(0).getProperty());
-        if (propertyPath == null) {
-            throw new IllegalArgumentException("Property " + sort.getOrders().get(0).getProperty() + " is invalid");
-        }
-        boolean asc = sort.getOrders().get(0).getDirection() == Sort.Direction.ASC;
-        return Comparator.comparing(e -> e.getValueEx(propertyPath), EntityValuesComparator.asc(asc));
+        return createSorter(sort, metaClass).comparator();
     }
 }
@@ -16,21 +16,31 @@
 
 package com.haulmont.cuba.gui.model.impl;
 
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaPropertyPath;
+import com.haulmont.chile.core.model.Range;
 import com.haulmont.cuba.core.entity.Entity;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.global.queryconditions.Condition;
+import com.haulmont.cuba.core.global.queryconditions.ConditionJpqlGenerator;
+import com.haulmont.cuba.core.global.queryconditions.JpqlCondition;
+import com.haulmont.cuba.core.global.queryconditions.LogicalCondition;
 import com.haulmont.cuba.gui.model.*;
 import org.springframework.context.ApplicationContext;
 
 import javax.annotation.Nullable;
 import java.util.*;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  *
  */
 public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<E> {
 
+    protected static final String GROUP_ENTITY_ALIAS = "groupEntity";
+    protected static final String GROUP_PARAMETER_PREFIX = "groupValue_";
+
     private ApplicationContext applicationContext;
 
     private DataContext dataContext;
@@ -60,6 +70,18 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
         return applicationContext.getBean(DataManager.NAME, DataManager.class);
     }
 
+    protected MetadataTools getMetadataTools() {
+        return applicationContext.getBean(MetadataTools.NAME, MetadataTools.class);
+    }
+
+    protected QueryTransformerFactory getQueryTransformerFactory() {
+        return applicationContext.getBean(QueryTransformerFactory.NAME, QueryTransformerFactory.class);
+    }
+
+    protected ConditionJpqlGenerator getConditionJpqlGenerator() {
+        return applicationContext.getBean(ConditionJpqlGenerator.NAME, ConditionJpqlGenerator.class);
+    }
+
     protected SorterFactory getSorterFactory() {
         return applicationContext.getBean(SorterFactory.NAME, SorterFactory.class);
     }
@@ -126,6 +148,128 @@ public class CollectionLoaderImpl<E extends Entity> implements CollectionLoader<
         return loadContext;
     }
 
+    @Override
+    public ValueLoadContext createGroupLoadContext(@Nullable MetaPropertyPath groupProperty,
+                                                   Map<MetaPropertyPath, Object> parentGroupValues,
+                                                   Map<String, String> aggregates) {
+        if (container == null)
+            throw new IllegalStateException("container is null");
+        if (query == null)
+            throw new IllegalStateException("query is null");
+
+        MetaClass metaClass = container.getEntityMetaClass();
+        String pkName = getMetadataTools().getPrimaryKeyName(metaClass);
+        if (pkName == null)
+            throw new IllegalStateException("Cannot group instances of " + metaClass.getName() + " without primary key");
+
+        // the query of the loader with its condition selects identifiers of the grouped entities
+        String loaderQuery = query;
+        if (condition != null) {
+            Set<String> nonNullParamNames = parameters.entrySet().stream()
+                    .filter(e -> e.getValue() != null)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toSet());
+            loaderQuery = getConditionJpqlGenerator().processQuery(query, condition.actualize(nonNullParamNames));
+        }
+        QueryTransformer transformer = getQueryTransformerFactory().transformer(loaderQuery);
+        transformer.replaceWithSelectId(pkName);
+        transformer.removeOrderBy();
+
+        ValueLoadContext loadContext = ValueLoadContext.create();
+
+        List<String> selection = new ArrayList<>();
+        String groupPath = null;
+        if (groupProperty != null) {
+            checkGroupProperty(groupProperty);
+            groupPath = GROUP_ENTITY_ALIAS + "." + groupProperty.toPathString();
+            selection.add(groupPath);
+            loadContext.addProperty(GROUP_VALUE);
+        }
+        selection.add("count(" + GROUP_ENTITY_ALIAS + ")");
+        loadContext.addProperty(GROUP_ITEMS_COUNT);
+        for (Map.Entry<String, String> entry : aggregates.entrySet()) {
+            selection.add(entry.getValue().replace(QueryTransformer.ALIAS_PLACEHOLDER, GROUP_ENTITY_ALIAS));
+            loadContext.addProperty(entry.getKey());
+        }
+
+        StringBuilder sb = new StringBuilder("select ");
+        sb.append(String.join(", ", selection))
+                .append(" from ").append(metaClass.getName()).append(" ").append(GROUP_ENTITY_ALIAS)
+                .append(" where ").append(GROUP_ENTITY_ALIAS).append(".").append(pkName)
+                .append(" in (").append(transformer.getResult()).append(")");
+
+        Map<String, Object> groupParameters = new HashMap<>();
+        String groupWhere = createGroupWhere(parentGroupValues, groupParameters);
+        if (groupWhere != null) {
+            sb.append(" and ").append(groupWhere.replace(QueryTransformer.ALIAS_PLACEHOLDER, GROUP_ENTITY_ALIAS));
+        }
+        if (groupPath != null) {
+            sb.append(" group by ").append(groupPath).append(" order by ").append(groupPath);
+        }
+
+        ValueLoadContext.Query valueQuery = loadContext.setQueryString(sb.toString());
+        valueQuery.setParameters(parameters);
+        for (Map.Entry<String, Object> entry : groupParameters.entrySet()) {
+            valueQuery.setParameter(entry.getKey(), entry.getValue());
+        }
+
+        loadContext.setSoftDeletion(softDeletion);
+
+        return loadContext;
+    }
+
+    @Override
+    public LoadContext<E> createGroupItemsLoadContext(Map<MetaPropertyPath, Object> groupValues) {
+        LoadContext<E> loadContext = createLoadContext();
+
+        LoadContext.Query query = loadContext.getQuery();
+        query.setFirstResult(0);
+        query.setMaxResults(0);
+
+        Map<String, Object> groupParameters = new HashMap<>();
+        String groupWhere = createGroupWhere(groupValues, groupParameters);
+        if (groupWhere != null) {
+            JpqlCondition groupCondition = new JpqlCondition(groupWhere);
+            query.setCondition(condition == null ? groupCondition
+                    : LogicalCondition.and().add(condition).add(groupCondition));
+            for (Map.Entry<String, Object> entry : groupParameters.entrySet()) {
+                query.setParameter(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return loadContext;
+    }
+
+    protected void checkGroupProperty(MetaPropertyPath groupProperty) {
+        Range range = groupProperty.getRange();
+        if (!range.isDatatype() && !range.isEnum()) {
+            throw new IllegalArgumentException("Only datatype and enum properties can be grouped by the database: "
+                    + groupProperty);
+        }
+    }
+
+    @Nullable
+    protected String createGroupWhere(Map<MetaPropertyPath, Object> groupValues, Map<String, Object> groupParameters) {
+        if (groupValues.isEmpty()) {
+            return null;
+        }
+
+        List<String> clauses = new ArrayList<>(groupValues.size());
+        for (Map.Entry<MetaPropertyPath, Object> entry : groupValues.entrySet()) {
+            checkGroupProperty(entry.getKey());
+
+            String path = QueryTransformer.ALIAS_PLACEHOLDER + "." + entry.getKey().toPathString();
+            if (entry.getValue() == null) {
+                clauses.add(path + " is null");
+            } else {
+                String parameterName = GROUP_PARAMETER_PREFIX + groupParameters.size();
+                clauses.add(path + " = :" + parameterName);
+                groupParameters.put(parameterName, entry.getValue());
+            }
+        }
+        return String.join(" and ", clauses);
+    }
+
     protected View resolveView() {
         View view = this.view;
         if (view == null && viewName != null) {
@@ -27,6 +27,7 @@ import com.haulmont.chile.core.model.impl.AbstractInstance;
 import com.haulmont.cuba.core.entity.*;
 import com.haulmont.cuba.core.global.*;
 import com.haulmont.cuba.core.sys.persistence.FetchGroupUtils;
+import com.haulmont.cuba.gui.model.CollectionChangeType;
 import com.haulmont.cuba.gui.model.DataContext;
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.persistence.queries.FetchGroup;
@@ -71,6 +72,22 @@ public class DataContextImpl implements DataContext {
 
     protected Map<Entity, Map<String, EmbeddedPropertyChangeListener>> embeddedPropertyListeners = new WeakHashMap<>();
 
+    /**
+     * Collection properties of managed entities by the entities contained in the collections. Collections from
+     * which an entity was removed can still be listed here, but all observable collections containing the entity
+     * are always listed.
+     * <p>
+     * Only remove and evict look up the index. Merge maintains it but does not read it, as it walks the graph
+     * of the merged instance and never scans collections of other managed entities.
+     */
+    protected Map<Entity, Set<CollectionRef>> collectionOwners = new HashMap<>();
+
+    /**
+     * Collection properties of managed entities containing collections that are not observed by this context,
+     * e.g. assigned by application code.
+     */
+    protected Set<CollectionRef> untrackedCollections = new HashSet<>();
+
     public DataContextImpl(ApplicationContext applicationContext) {
         this.applicationContext = applicationContext;
     }
@@ -376,23 +393,27 @@ public class DataContextImpl implements DataContext {
                 Entity managedRef = internalMerge(entity, mergedSet);
                 managedRefs.add(managedRef);
             }
-            List<Entity> dstList = createObservableList(managedRefs, managedEntity);
+            List<Entity> dstList = createObservableList(managedRefs, managedEntity, propertyName);
             managedEntity.setValue(propertyName, dstList);
+            collectionReplaced(managedEntity, propertyName, managedRefs);
 
         } else {
             List<Entity> dstList = managedEntity.getValue(propertyName);
             if (dstList == null) {
-                dstList = createObservableList(managedEntity);
+                dstList = createObservableList(managedEntity, propertyName);
                 managedEntity.setValue(propertyName, dstList);
+            } else if (!(dstList instanceof ObservableList)) {
+                untrackedCollections.add(new CollectionRef(managedEntity, propertyName));
             }
             if (dstList.size() == 0) {
                 for (Entity srcRef : list) {
                     dstList.add(internalMerge(srcRef, mergedSet));
                 }
             } else {
+                Set<Entity> existing = new HashSet<>(dstList);
                 for (Entity srcRef : list) {
                     Entity managedRef = internalMerge(srcRef, mergedSet);
-                    if (!dstList.contains(managedRef)) {
+                    if (existing.add(managedRef)) {
                         dstList.add(managedRef);
                     }
                 }
@@ -408,14 +429,17 @@ public class DataContextImpl implements DataContext {
                 Entity managedRef = internalMerge(entity, mergedSet);
                 managedRefs.add(managedRef);
             }
-            Set<Entity> dstList = createObservableSet(managedRefs, managedEntity);
+            Set<Entity> dstList = createObservableSet(managedRefs, managedEntity, propertyName);
             managedEntity.setValue(propertyName, dstList);
+            collectionReplaced(managedEntity, propertyName, managedRefs);
 
         } else {
             Set<Entity> dstSet = managedEntity.getValue(propertyName);
             if (dstSet == null) {
-                dstSet = createObservableSet(managedEntity);
+                dstSet = createObservableSet(managedEntity, propertyName);
                 managedEntity.setValue(propertyName, dstSet);
+            } else if (!(dstSet instanceof ObservableSet)) {
+                untrackedCollections.add(new CollectionRef(managedEntity, propertyName));
             }
             if (dstSet.size() == 0) {
                 for (Entity srcRef : set) {
@@ -430,20 +454,57 @@ public class DataContextImpl implements DataContext {
         }
     }
 
-    protected List<Entity> createObservableList(Entity notifiedEntity) {
-        return createObservableList(new ArrayList<>(), notifiedEntity);
+    protected List<Entity> createObservableList(Entity notifiedEntity, String propertyName) {
+        return createObservableList(new ArrayList<>(), notifiedEntity, propertyName);
     }
 
-    protected List<Entity> createObservableList(List<Entity> list, Entity notifiedEntity) {
-        return new ObservableList<>(list, (changeType, changes) -> modified(notifiedEntity));
+    protected List<Entity> createObservableList(List<Entity> list, Entity notifiedEntity, String propertyName) {
+        return new ObservableList<>(list, (changeType, changes) -> {
+            collectionChanged(notifiedEntity, propertyName, changeType, changes);
+            modified(notifiedEntity);
+        });
     }
 
-    protected Set<Entity> createObservableSet(Entity notifiedEntity) {
-        return createObservableSet(new LinkedHashSet<>(), notifiedEntity);
+    protected Set<Entity> createObservableSet(Entity notifiedEntity, String propertyName) {
+        return createObservableSet(new LinkedHashSet<>(), notifiedEntity, propertyName);
+    }
+
+    protected ObservableSet<Entity> createObservableSet(Set<Entity> set, Entity notifiedEntity, String propertyName) {
+        return new ObservableSet<>(set, (changeType, changes) -> {
+            collectionChanged(notifiedEntity, propertyName, changeType, changes);
+            modified(notifiedEntity);
+        });
+    }
+
+    protected void collectionReplaced(Entity owner, String propertyName, Collection<? extends Entity> elements) {
+        CollectionRef ref = new CollectionRef(owner, propertyName);
+        untrackedCollections.remove(ref);
+        for (Entity element : elements) {
+            collectionOwners.computeIfAbsent(element, e -> new HashSet<>()).add(ref);
+        }
     }
 
-    protected ObservableSet<Entity> createObservableSet(Set<Entity> set, Entity notifiedEntity) {
-        return new ObservableSet<>(set, (changeType, changes) -> modified(notifiedEntity));
+    protected void collectionChanged(Entity owner, String propertyName, CollectionChangeType changeType,
+                                     Collection<? extends Entity> changes) {
+        if (changeType == CollectionChangeType.ADD_ITEMS || changeType == CollectionChangeType.SET_ITEM) {
+            CollectionRef ref = new CollectionRef(owner, propertyName);
+            for (Entity element : changes) {
+                collectionOwners.computeIfAbsent(element, e -> new HashSet<>()).add(ref);
+            }
+        } else if (changeType == CollectionChangeType.REMOVE_ITEMS) {
+            Collection collection = owner.getValue(propertyName);
+            for (Object element : changes) {
+                Set<CollectionRef> refs = collectionOwners.get(element);
+                // the same instance can be contained in a list more than once
+                if (refs != null && (collection == null || !collection.contains(element))) {
+                    refs.remove(new CollectionRef(owner, propertyName));
+                    if (refs.isEmpty()) {
+                        collectionOwners.remove(element);
+                    }
+                }
+            }
+        }
+        // on REFRESH the index is left as is, it can only contain extra collections
     }
 
     @Override
@@ -460,35 +521,33 @@ public class DataContextImpl implements DataContext {
             Entity mergedEntity = entityMap.get(entity.getId());
             if (mergedEntity != null) {
                 entityMap.remove(entity.getId());
+                untrackedCollections.removeIf(ref -> ref.owner == mergedEntity);
                 removeFromCollections(mergedEntity);
             }
         }
     }
 
     protected void removeFromCollections(Entity entityToRemove) {
-        for (Map.Entry<Class<?>, Map<Object, Entity>> entry : content.entrySet()) {
-            Class<?> entityClass = entry.getKey();
-
-            MetaClass metaClass = getMetadata().getClassNN(entityClass);
-            for (MetaProperty metaProperty : metaClass.getProperties()) {
-                if (metaProperty.getRange().isClass()
-                        && metaProperty.getRange().getCardinality().isMany()
-                        && metaProperty.getRange().asClass().getJavaClass().isAssignableFrom(entityToRemove.getClass())) {
-
-                    Map<Object, Entity> entityMap = entry.getValue();
-                    for (Entity entity : entityMap.values()) {
-                        if (getEntityStates().isLoaded(entity, metaProperty.getName())) {
-                            Collection collection = entity.getValue(metaProperty.getName());
-                            if (collection != null) {
-                                collection.remove(entityToRemove);
-                            }
-                        }
-                    }
+        List<CollectionRef> refs = new ArrayList<>(untrackedCollections);
+        Set<CollectionRef> indexedRefs = collectionOwners.remove(entityToRemove);
+        if (indexedRefs != null) {
+            refs.addAll(indexedRefs);
+        }
+        for (CollectionRef ref : refs) {
+            if (isManaged(ref.owner) && getEntityStates().isLoaded(ref.owner, ref.propertyName)) {
+                Object value = ref.owner.getValue(ref.propertyName);
+                if (value instanceof Collection) {
+                    ((Collection) value).remove(entityToRemove);
                 }
             }
         }
     }
 
+    protected boolean isManaged(Entity entity) {
+        Map<Object, Entity> entityMap = content.get(entity.getClass());
+        return entityMap != null && entityMap.get(entity.getId()) == entity;
+    }
+
     @Override
     public void evict(Entity entity) {
         checkNotNullArgument(entity, "entity is null");
@@ -499,6 +558,8 @@ public class DataContextImpl implements DataContext {
             if (mergedEntity != null) {
                 entityMap.remove(entity.getId());
                 removeListeners(entity);
+                untrackedCollections.removeIf(ref -> ref.owner == mergedEntity);
+                collectionOwners.remove(mergedEntity);
             }
             modifiedInstances.remove(entity);
             removedInstances.remove(entity);
@@ -707,6 +768,11 @@ public class DataContextImpl implements DataContext {
                     }
                 }
 
+                // a collection assigned by application code is not observed
+                if (e.getValue() instanceof Collection) {
+                    untrackedCollections.add(new CollectionRef((Entity) e.getItem(), e.getProperty()));
+                }
+
                 modifiedInstances.add((Entity) e.getItem());
                 fireChangeListener((Entity) e.getItem());
             }
@@ -729,4 +795,31 @@ public class DataContextImpl implements DataContext {
             }
         }
     }
+
+    /**
+     * Collection property of a managed entity.
+     */
+    protected static class CollectionRef {
+
+        protected final Entity owner;
+        protected final String propertyName;
+
+        public CollectionRef(Entity owner, String propertyName) {
+            this.owner = owner;
+            this.propertyName = propertyName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CollectionRef that = (CollectionRef) o;
+            return owner == that.owner && propertyName.equals(that.propertyName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + propertyName.hashCode();
+        }
+    }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.gui.model.impl;
+
+import com.haulmont.bali.util.Preconditions;
+import com.haulmont.chile.core.model.Instance;
+import com.haulmont.chile.core.model.MetaClass;
+import com.haulmont.chile.core.model.MetaPropertyPath;
+import com.haulmont.cuba.core.global.Sort;
+import com.haulmont.cuba.gui.data.CollectionDatasource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.Function;
+
+/**
+ * Sorts lists of entities in memory by one or more attributes.
+ * <p>
+ * Values of the sort attributes are extracted once per item before sorting, so property paths are not traversed
+ * on each comparison. Lists larger than {@link #PARALLEL_THRESHOLD} are sorted by
+ * {@link Arrays#parallelSort(Object[], Comparator)}. Sorting is stable in both cases.
+ */
+public class EntityValuesSorter {
+
+    public static final int PARALLEL_THRESHOLD = 10_000;
+
+    protected final MetaPropertyPath[] propertyPaths;
+    protected final Comparator<Object>[] comparators;
+
+    /**
+     * Creates the sorter for the orders of the given {@code Sort}.
+     *
+     * @throws IllegalArgumentException if a sort property does not exist in the meta-class
+     */
+    public static EntityValuesSorter create(Sort sort, MetaClass metaClass) {
+        List<Sort.Order> orders = sort.getOrders();
+        MetaPropertyPath[] propertyPaths = new MetaPropertyPath[orders.size()];
+        boolean[] ascending = new boolean[orders.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            Sort.Order order = orders.get(i);
+            MetaPropertyPath propertyPath = metaClass.getPropertyPath(order.getProperty());
+            if (propertyPath == null) {
+                throw new IllegalArgumentException("Property " + order.getProperty() + " is invalid");
+            }
+            propertyPaths[i] = propertyPath;
+            ascending[i] = order.getDirection() == Sort.Direction.ASC;
+        }
+        return new EntityValuesSorter(propertyPaths, ascending);
+    }
+
+    /**
+     * Creates the sorter for the sort infos of a legacy datasource. Sort infos without property path, e.g. of
+     * generated columns, are ignored.
+     */
+    public static EntityValuesSorter create(CollectionDatasource.Sortable.SortInfo<MetaPropertyPath>[] sortInfos) {
+        List<MetaPropertyPath> propertyPaths = new ArrayList<>(sortInfos.length);
+        List<Boolean> ascending = new ArrayList<>(sortInfos.length);
+        for (CollectionDatasource.Sortable.SortInfo<MetaPropertyPath> sortInfo : sortInfos) {
+            if (sortInfo.getPropertyPath() != null) {
+                propertyPaths.add(sortInfo.getPropertyPath());
+                ascending.add(CollectionDatasource.Sortable.Order.ASC.equals(sortInfo.getOrder()));
+            }
+        }
+        boolean[] directions = new boolean[ascending.size()];
+        for (int i = 0; i < directions.length; i++) {
+            directions[i] = ascending.get(i);
+        }
+        return new EntityValuesSorter(propertyPaths.toArray(new MetaPropertyPath[0]), directions);
+    }
+
+    /**
+     * @param propertyPaths sort attributes in the order of precedence
+     * @param ascending     sort directions of the attributes
+     */
+    @SuppressWarnings("unchecked")
+    public EntityValuesSorter(MetaPropertyPath[] propertyPaths, boolean[] ascending) {
+        Preconditions.checkNotNullArgument(propertyPaths);
+        Preconditions.checkNotNullArgument(ascending);
+        if (propertyPaths.length != ascending.length) {
+            throw new IllegalArgumentException("Number of property paths and directions must be the same");
+        }
+        this.propertyPaths = propertyPaths.clone();
+        this.comparators = new Comparator[ascending.length];
+        for (int i = 0; i < ascending.length; i++) {
+            comparators[i] = EntityValuesComparator.asc(ascending[i]);
+        }
+    }
+
+    /**
+     * Sorts the list of entities in place.
+     */
+    public <T extends Instance> void sort(List<T> list) {
+        sort(list, Function.identity());
+    }
+
+    /**
+     * Sorts the list in place.
+     *
+     * @param list           list to sort
+     * @param entityFunction returns the entity containing sort values for a list item, or null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void sort(List<T> list, Function<? super T, ? extends Instance> entityFunction) {
+        if (list.size() < 2 || propertyPaths.length == 0) {
+            return;
+        }
+
+        SortEntry[] entries = new SortEntry[list.size()];
+        int index = 0;
+        for (T item : list) {
+            entries[index++] = new SortEntry(item, extractKeys(entityFunction.apply(item)));
+        }
+
+        Comparator<SortEntry> comparator = this::compareKeys;
+        if (entries.length > PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(entries, comparator);
+        } else {
+            Arrays.sort(entries, comparator);
+        }
+
+        ListIterator<T> iterator = list.listIterator();
+        for (SortEntry entry : entries) {
+            iterator.next();
+            iterator.set((T) entry.item);
+        }
+    }
+
+    /**
+     * Returns the comparator of entities using the same ordering as {@link #sort(List)}. Unlike the sort methods,
+     * it extracts the values on each comparison.
+     */
+    public <T extends Instance> Comparator<T> comparator() {
+        return (e1, e2) -> compareKeys(extractKeys(e1), extractKeys(e2));
+    }
+
+    protected Object[] extractKeys(Instance entity) {
+        Object[] keys = new Object[propertyPaths.length];
+        if (entity != null) {
+            for (int i = 0; i < propertyPaths.length; i++) {
+                keys[i] = entity.getValueEx(propertyPaths[i]);
+            }
+        }
+        return keys;
+    }
+
+    protected int compareKeys(SortEntry e1, SortEntry e2) {
+        return compareKeys(e1.keys, e2.keys);
+    }
+
+    protected int compareKeys(Object[] keys1, Object[] keys2) {
+        for (int i = 0; i < comparators.length; i++) {
+            int c = comparators[i].compare(keys1[i], keys2[i]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    protected static class SortEntry {
+        protected final Object item;
+        protected final Object[] keys;
+
+        protected SortEntry(Object item, Object[] keys) {
+            this.item = item;
+            this.keys = keys;
+        }
+    }
+}
@@ -53,6 +53,8 @@ public class XmlInheritanceProcessor {
 
     private List<ElementTargetLocator> targetLocators;
 
+    private List<String> ancestorTemplates = new ArrayList<>();
+
     @Inject
     protected Resources resources;
     @Inject
@@ -98,6 +100,9 @@ public class XmlInheritanceProcessor {
             result = processor.getResultRoot();
             process(result, root);
 
+            ancestorTemplates.add(ancestorTemplate);
+            ancestorTemplates.addAll(processor.getAncestorTemplates());
+
             if (log.isTraceEnabled()) {
                 StringWriter writer = new StringWriter();
                 Dom4j.writeDocument(result.getDocument(), true, writer);
@@ -110,6 +115,13 @@ public class XmlInheritanceProcessor {
         return result;
     }
 
+    /**
+     * @return paths of the ancestor templates used by {@link #getResultRoot()}, starting from the nearest one
+     */
+    public List<String> getAncestorTemplates() {
+        return Collections.unmodifiableList(ancestorTemplates);
+    }
+
     protected void process(Element resultElem, Element extElem) {
         // set text
         if (!StringUtils.isBlank(extElem.getText()))
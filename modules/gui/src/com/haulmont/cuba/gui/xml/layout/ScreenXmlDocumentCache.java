@@ -21,27 +21,98 @@ import com.google.common.cache.CacheBuilder;
 import org.dom4j.Document;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Caches screen XML documents processed by {@link com.haulmont.cuba.gui.xml.XmlInheritanceProcessor}.
+ * <p>
+ * Documents are stored by the path of the descriptor together with the last modification time of the descriptor
+ * and its ancestors, so a document is reloaded if any of these resources is changed.
+ */
 @Component("cuba_ScreenXmlDocumentCache")
 public class ScreenXmlDocumentCache {
     protected Cache<String, Document> cache;
 
+    protected Cache<String, CachedDocument> documents;
+
     public ScreenXmlDocumentCache() {
         this(100);
     }
 
     protected ScreenXmlDocumentCache(int cacheDescriptorsCount) {
         cache = CacheBuilder.newBuilder().maximumSize(cacheDescriptorsCount).build();
+        documents = CacheBuilder.newBuilder().maximumSize(cacheDescriptorsCount).build();
     }
 
+    /**
+     * @deprecated Use {@link #put(String, Document, Map)}
+     */
+    @Deprecated
     public void put(String xml, Document document) {
         cache.put(xml, document);
     }
 
+    /**
+     * @deprecated Use {@link #get(String, Function)}
+     */
+    @Deprecated
     public Document get(String xml) {
         return cache.getIfPresent(xml);
     }
 
+    /**
+     * Puts the processed document of a descriptor.
+     *
+     * @param resourcePath       path of the descriptor
+     * @param document           processed document
+     * @param resourceTimestamps last modification times of the descriptor and its ancestors by their paths,
+     *                           null values are allowed for resources without modification time
+     */
+    public void put(String resourcePath, Document document, Map<String, Long> resourceTimestamps) {
+        documents.put(resourcePath, new CachedDocument(document, resourceTimestamps));
+    }
+
+    /**
+     * Returns the processed document of a descriptor if none of the resources it has been built from is modified.
+     *
+     * @param resourcePath         path of the descriptor
+     * @param lastModifiedProvider returns the current last modification time of a resource by its path
+     * @return cached document or null
+     */
+    @Nullable
+    public Document get(String resourcePath, Function<String, Long> lastModifiedProvider) {
+        CachedDocument cachedDocument = documents.getIfPresent(resourcePath);
+        if (cachedDocument == null) {
+            return null;
+        }
+
+        for (Map.Entry<String, Long> entry : cachedDocument.resourceTimestamps.entrySet()) {
+            if (!Objects.equals(entry.getValue(), lastModifiedProvider.apply(entry.getKey()))) {
+                documents.invalidate(resourcePath);
+                return null;
+            }
+        }
+        return cachedDocument.document;
+    }
+
     public void invalidateAll() {
         cache.invalidateAll();
+        documents.invalidateAll();
+    }
+
+    protected static class CachedDocument {
+
+        protected final Document document;
+        protected final Map<String, Long> resourceTimestamps;
+
+        public CachedDocument(Document document, Map<String, Long> resourceTimestamps) {
+            this.document = document;
+            this.resourceTimestamps = Collections.unmodifiableMap(new HashMap<>(resourceTimestamps));
+        }
     }
 }
\ No newline at end of file
@@ -16,9 +16,14 @@
 
 package com.haulmont.cuba.gui.xml.layout;
 
+import com.haulmont.cuba.client.ClientConfig;
 import com.haulmont.cuba.core.global.BeanLocator;
+import com.haulmont.cuba.core.global.Configuration;
 import com.haulmont.cuba.core.global.DevelopmentException;
 import com.haulmont.cuba.core.global.Resources;
+import com.haulmont.cuba.core.sys.events.AppContextStartedEvent;
+import com.haulmont.cuba.gui.config.WindowConfig;
+import com.haulmont.cuba.gui.config.WindowInfo;
 import com.haulmont.cuba.gui.logging.ScreenLifeCycle;
 import com.haulmont.cuba.gui.logging.UIPerformanceLogger;
 import com.haulmont.cuba.gui.xml.XmlInheritanceProcessor;
@@ -26,12 +31,20 @@ import org.apache.commons.io.IOUtils;
 import org.dom4j.Document;
 import org.dom4j.Element;
 import org.perf4j.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -42,6 +55,8 @@ public class ScreenXmlLoader {
 
     public static final String NAME = "cuba_ScreenXmlLoader";
 
+    private static final Logger log = LoggerFactory.getLogger(ScreenXmlLoader.class);
+
     @Inject
     protected Resources resources;
     @Inject
@@ -50,9 +65,15 @@ public class ScreenXmlLoader {
     protected ScreenXmlParser screenXmlParser;
     @Inject
     protected BeanLocator beanLocator;
+    @Inject
+    protected Configuration configuration;
 
     /**
      * Loads a descriptor.
+     * <p>
+     * The processed document is cached by the resource path and reused until the descriptor or one of its
+     * ancestors is modified. The result of {@link XmlInheritanceProcessor} does not depend on the screen
+     * parameters, so they are not a part of the cache key.
      *
      * @param resourcePath path to the resource containing the XML
      * @param id           screen ID
@@ -62,41 +83,78 @@ public class ScreenXmlLoader {
     public Element load(String resourcePath, String id, Map<String, Object> params) {
         StopWatch xmlLoadWatch = UIPerformanceLogger.createStopWatch(ScreenLifeCycle.XML, id);
 
-        String template = loadTemplate(resourcePath);
-        Document document = getDocument(template, params);
+        Document document = getDocument(resourcePath, params);
 
         xmlLoadWatch.stop();
         return document.getRootElement();
     }
 
-    protected String loadTemplate(String resourcePath) {
-        try (InputStream stream = resources.getResourceAsStream(resourcePath)) {
-            if (stream == null) {
-                throw new DevelopmentException("Template is not found " + resourcePath, "Path", resourcePath);
+    @EventListener(AppContextStartedEvent.class)
+    protected void preloadScreens() {
+        List<String> screenIds = configuration.getConfig(ClientConfig.class).getPreloadedScreens();
+        if (screenIds.isEmpty()) {
+            return;
+        }
+
+        // WindowConfig depends on this bean
+        WindowConfig windowConfig = beanLocator.get(WindowConfig.NAME);
+        for (String screenId : screenIds) {
+            WindowInfo windowInfo = windowConfig.findWindowInfo(screenId);
+            if (windowInfo == null || windowInfo.getTemplate() == null) {
+                log.warn("Unable to preload XML descriptor of screen {}: screen is not registered or has no descriptor",
+                        screenId);
+                continue;
             }
 
-            return IOUtils.toString(stream, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to read screen template");
+            try {
+                getDocument(windowInfo.getTemplate(), Collections.emptyMap());
+            } catch (RuntimeException e) {
+                // e.g. the descriptor uses theme constants that are not available without UI
+                log.warn("Unable to preload XML descriptor of screen {}", screenId, e);
+            }
         }
     }
 
-    protected Document getDocument(String template, Map<String, Object> params) {
-        Document document = screenXmlCache.get(template);
+    protected Document getDocument(String resourcePath, Map<String, Object> params) {
+        Document document = screenXmlCache.get(resourcePath, this::getLastModified);
         if (document == null) {
-            document = createDocument(template, params);
-            screenXmlCache.put(template, document);
+            Map<String, Long> resourceTimestamps = new HashMap<>();
+            resourceTimestamps.put(resourcePath, getLastModified(resourcePath));
+
+            String template = loadTemplate(resourcePath);
+            Document originalDocument = screenXmlParser.parseDescriptor(template);
+
+            XmlInheritanceProcessor processor = beanLocator.getPrototype(XmlInheritanceProcessor.NAME,
+                    originalDocument, params);
+            document = processor.getResultRoot().getDocument();
+
+            for (String ancestorTemplate : processor.getAncestorTemplates()) {
+                resourceTimestamps.put(ancestorTemplate, getLastModified(ancestorTemplate));
+            }
+            screenXmlCache.put(resourcePath, document, resourceTimestamps);
         }
         return document;
     }
 
-    protected Document createDocument(String template, Map<String, Object> params) {
-        Document originalDocument = screenXmlParser.parseDescriptor(template);
+    @Nullable
+    protected Long getLastModified(String resourcePath) {
+        Resource resource = resources.getResource(resourcePath);
+        try {
+            return resource.exists() ? resource.lastModified() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
 
-        XmlInheritanceProcessor processor = beanLocator.getPrototype(XmlInheritanceProcessor.NAME,
-                originalDocument, params);
-        Element resultRoot = processor.getResultRoot();
+    protected String loadTemplate(String resourcePath) {
+        try (InputStream stream = resources.getResourceAsStream(resourcePath)) {
+            if (stream == null) {
+                throw new DevelopmentException("Template is not found " + resourcePath, "Path", resourcePath);
+            }
 
-        return resultRoot.getDocument();
+            return IOUtils.toString(stream, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read screen template");
+        }
     }
 }
@@ -29,6 +29,7 @@ import org.dom4j.Element;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -119,6 +120,23 @@ public class XmlInheritanceTest extends CubaClientTestCase {
         assertEquals(7, index);
     }
 
+    @Test
+    public void testAncestorTemplates() {
+        Document document = Dom4j.readDocument(resources.getResourceAsStream("com/haulmont/cuba/gui/xml/test-extends-screen-new.xml"));
+
+        XmlInheritanceProcessor processor = new XmlInheritanceProcessor(document, emptyMap()) {
+            {
+                resources = XmlInheritanceTest.this.resources;
+                screenXmlParser = XmlInheritanceTest.this.screenXmlParser;
+                beanLocator = XmlInheritanceTest.this.beanLocator;
+            }
+        };
+        processor.getResultRoot();
+
+        assertEquals(Collections.singletonList("com/haulmont/cuba/gui/xml/test-base-screen.xml"),
+                processor.getAncestorTemplates());
+    }
+
     private int getIndexOfMovedField(String extendedXml, String fieldName) {
         Document document = Dom4j.readDocument(resources.getResourceAsStream(extendedXml));
 
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.haulmont.cuba.gui.xml.layout;
+
+import com.haulmont.bali.util.Dom4j;
+import org.dom4j.Document;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ScreenXmlDocumentCacheTest {
+
+    @Test
+    public void testModifiedResourcesInvalidateDocument() {
+        ScreenXmlDocumentCache cache = new ScreenXmlDocumentCache();
+        Document document = Dom4j.readDocument("<window/>");
+
+        Map<String, Long> timestamps = new HashMap<>();
+        timestamps.put("screen.xml", 1L);
+        timestamps.put("base-screen.xml", null);
+        cache.put("screen.xml", document, timestamps);
+
+        Map<String, Long> current = new HashMap<>(timestamps);
+        assertSame(document, cache.get("screen.xml", current::get));
+
+        current.put("base-screen.xml", 2L);
+        assertNull(cache.get("screen.xml", current::get));
+
+        current.put("base-screen.xml", null);
+        assertNull(cache.get("screen.xml", current::get));
+    }
+}
@@ -2601,9 +2601,9 @@ public abstract class WebAbstractTable<T extends com.vaadin.v7.ui.Table & CubaEn
             }
         }
 
-        Map<AggregationInfo, String> results = ((AggregatableTableItems<E>) getItems()).aggregate(
+        Map<AggregationInfo, String> results = aggregateItems(
                 aggregationInfos.toArray(new AggregationInfo[0]),
-                context.getItemIds()
+                context
         );
         Map<Object, Object> resultsByColumns = new LinkedHashMap<>();
         for (Object propertyId : container.getAggregationPropertyIds()) {
@@ -2618,6 +2618,12 @@ public abstract class WebAbstractTable<T extends com.vaadin.v7.ui.Table & CubaEn
         return resultsByColumns;
     }
 
+    @SuppressWarnings("unchecked")
+    protected Map<AggregationInfo, String> aggregateItems(AggregationInfo[] aggregationInfos,
+                                                          AggregationContainer.Context context) {
+        return ((AggregatableTableItems<E>) getItems()).aggregate(aggregationInfos, context.getItemIds());
+    }
+
     protected Map<Object, Object> __handleAggregationResults(AggregationContainer.Context context,
                                                              Map<Object, Object> results) {
         for (Map.Entry<Object, Object> entry : results.entrySet()) {
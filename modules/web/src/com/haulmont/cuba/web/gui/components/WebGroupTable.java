@@ -23,6 +23,7 @@ import com.haulmont.chile.core.model.MetaClass;
 import com.haulmont.chile.core.model.MetaPropertyPath;
 import com.haulmont.cuba.core.app.dynamicattributes.DynamicAttributesUtils;
 import com.haulmont.cuba.core.entity.Entity;
+import com.haulmont.cuba.gui.components.AggregationInfo;
 import com.haulmont.cuba.gui.components.GroupTable;
 import com.haulmont.cuba.gui.components.Table;
 import com.haulmont.cuba.gui.components.columnmanager.GroupColumnManager;
@@ -290,6 +291,18 @@ public class WebGroupTable<E extends Entity> extends WebAbstractTable<CubaGroupT
         }
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Map<AggregationInfo, String> aggregateItems(AggregationInfo[] aggregationInfos,
+                                                          AggregationContainer.Context context) {
+        if (context instanceof GroupAggregationContext && getItems() instanceof GroupTableItems.Lazy) {
+            // item ids of the context contain only the loaded items of the group
+            Object groupId = ((GroupAggregationContext) context).getGroupId();
+            return ((GroupTableItems.Lazy<E>) getItems()).aggregate(aggregationInfos, (GroupInfo) groupId);
+        }
+        return super.aggregateItems(aggregationInfos, context);
+    }
+
     @Override
     protected Map<Object, Object> __handleAggregationResults(AggregationContainer.Context context,
                                                              Map<Object, Object> results) {
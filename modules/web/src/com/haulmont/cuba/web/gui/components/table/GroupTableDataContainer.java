@@ -239,6 +239,7 @@ public class GroupTableDataContainer<I> extends SortableDataContainer<I> impleme
         return cachedItemIds;
     }
 
+    @SuppressWarnings("unchecked")
     protected void collectItemIds(GroupInfo groupId, List<Object> itemIds) {
         if (expandedGroups.contains(groupId)) {
             GroupTableItems<I> groupTableSource = getGroupTableSource();
@@ -250,6 +251,9 @@ public class GroupTableDataContainer<I> extends SortableDataContainer<I> impleme
                     collectItemIds(child, itemIds);
                 }
             } else {
+                if (groupTableSource instanceof GroupTableItems.Lazy) {
+                    ((GroupTableItems.Lazy<I>) groupTableSource).loadGroupItems(groupId);
+                }
                 itemIds.addAll(groupTableSource.getGroupItemIds(groupId));
             }
         }
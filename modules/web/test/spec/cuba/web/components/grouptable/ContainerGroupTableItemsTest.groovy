@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.web.components.grouptable
+
+import com.haulmont.cuba.gui.components.data.table.ContainerGroupTableItems
+import com.haulmont.cuba.gui.data.GroupInfo
+import com.haulmont.cuba.gui.model.CollectionContainer
+import com.haulmont.cuba.web.testmodel.sales.Product
+import org.apache.commons.collections4.map.LinkedMap
+import spec.cuba.web.WebSpec
+
+class ContainerGroupTableItemsTest extends WebSpec {
+
+    private CollectionContainer<Product> container
+    private ContainerGroupTableItems<Product, UUID> tableItems
+
+    @Override
+    void setup() {
+        container = dataComponents.createCollectionContainer(Product)
+        container.setItems([
+                new Product(name: 'p1', price: 10),
+                new Product(name: 'p2', price: 20),
+                new Product(name: 'p1', price: 30)
+        ])
+        tableItems = new ContainerGroupTableItems<>(container)
+    }
+
+    def "items are grouped by property"() {
+        when:
+
+        tableItems.groupBy([metadata.getClassNN(Product).getPropertyPath('name')] as Object[])
+
+        then:
+
+        tableItems.rootGroups().collect { it.value } == ['p1', 'p2']
+        tableItems.getGroupItemsCount(tableItems.rootGroups()[0]) == 2
+        tableItems.getGroupItemsCount(tableItems.rootGroups()[1]) == 1
+    }
+
+    def "groups are updated on container changes"() {
+        def nameProperty = metadata.getClassNN(Product).getPropertyPath('name')
+        tableItems.groupBy([nameProperty] as Object[])
+        def p1Group = tableItems.rootGroups()[0]
+        def p1Ids = tableItems.getGroupItemIds(p1Group)
+
+        when: 'items are appended and removed, the groups are updated without regrouping'
+
+        def p3 = new Product(name: 'p3', price: 40)
+        def p4 = new Product(name: 'p1', price: 50)
+        container.getMutableItems().addAll([p3, p4])
+
+        then:
+
+        tableItems.rootGroups().collect { it.value } == ['p1', 'p2', 'p3']
+        tableItems.getParentGroup(p3).value == 'p3'
+        tableItems.getGroupItemIds(p1Group) == p1Ids + [p4.id]
+        tableItems.rootGroups()[0].is(p1Group)
+
+        when:
+
+        container.getMutableItems().remove(container.items[1])
+
+        then:
+
+        tableItems.rootGroups().collect { it.value } == ['p1', 'p3']
+        !tableItems.containsGroup(new GroupInfo(new LinkedMap([(nameProperty): 'p2'])))
+        tableItems.rootGroups()[0].is(p1Group)
+    }
+
+    def "items inserted in the middle of the container keep the container order"() {
+        def nameProperty = metadata.getClassNN(Product).getPropertyPath('name')
+        tableItems.groupBy([nameProperty] as Object[])
+
+        when:
+
+        def p0 = new Product(name: 'p1', price: 5)
+        container.getMutableItems().add(0, p0)
+        tableItems.groupBy([nameProperty] as Object[])
+
+        then:
+
+        tableItems.getGroupItemIds(tableItems.rootGroups()[0]) == container.items.findAll { it.name == 'p1' }*.id
+    }
+
+    def "groups are reordered when the first item of a group is removed"() {
+        def nameProperty = metadata.getClassNN(Product).getPropertyPath('name')
+        tableItems.groupBy([nameProperty] as Object[])
+
+        when:
+
+        container.getMutableItems().remove(0)
+        tableItems.groupBy([nameProperty] as Object[])
+
+        then:
+
+        tableItems.rootGroups().collect { it.value } == ['p2', 'p1']
+        tableItems.getGroupItemIds(tableItems.rootGroups()[1]) == [container.items[1].id]
+    }
+
+    def "parent groups are reordered when the first nested group is removed"() {
+        def metaClass = metadata.getClassNN(Product)
+        Object[] properties = [metaClass.getPropertyPath('name'), metaClass.getPropertyPath('price')]
+        tableItems.groupBy(properties)
+
+        when:
+
+        container.getMutableItems().remove(0)
+        tableItems.groupBy(properties)
+
+        then:
+
+        tableItems.rootGroups().collect { it.value } == ['p2', 'p1']
+        tableItems.getChildren(tableItems.rootGroups()[1]).collect { it.value } == [30]
+    }
+
+    def "items are moved to another group when the grouping property changes"() {
+        def nameProperty = metadata.getClassNN(Product).getPropertyPath('name')
+        tableItems.groupBy([nameProperty] as Object[])
+        def p1Group = tableItems.rootGroups()[0]
+        def p1Ids = tableItems.getGroupItemIds(p1Group)
+
+        when: 'the replaced item stays in its group'
+
+        container.getMutableItems().set(2, new Product(id: container.items[2].id, name: 'p1', price: 35))
+
+        then:
+
+        tableItems.rootGroups()[0].is(p1Group)
+        tableItems.getGroupItemIds(p1Group) == p1Ids
+
+        when: 'the replaced item belongs to another group'
+
+        container.getMutableItems().set(0, new Product(id: container.items[0].id, name: 'p2', price: 15))
+        tableItems.groupBy([nameProperty] as Object[])
+
+        then:
+
+        tableItems.rootGroups().collect { it.value } == ['p2', 'p1']
+        tableItems.getGroupItemIds(tableItems.rootGroups()[0]) == container.items.findAll { it.name == 'p2' }*.id
+    }
+}
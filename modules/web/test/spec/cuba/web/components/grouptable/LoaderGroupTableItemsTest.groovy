@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2008-2019 Haulmont.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package spec.cuba.web.components.grouptable
+
+import com.haulmont.cuba.core.app.DataService
+import com.haulmont.cuba.core.entity.KeyValueEntity
+import com.haulmont.cuba.core.global.LoadContext
+import com.haulmont.cuba.core.global.ValueLoadContext
+import com.haulmont.cuba.core.global.queryconditions.JpqlCondition
+import com.haulmont.cuba.gui.components.data.table.LoaderGroupTableItems
+import com.haulmont.cuba.gui.model.CollectionContainer
+import com.haulmont.cuba.gui.model.CollectionLoader
+import com.haulmont.cuba.web.testmodel.sales.Product
+import com.haulmont.cuba.web.testsupport.TestServiceProxy
+import spec.cuba.web.WebSpec
+
+class LoaderGroupTableItemsTest extends WebSpec {
+
+    private CollectionContainer<Product> container
+    private CollectionLoader<Product> loader
+    private LoaderGroupTableItems<Product, UUID> tableItems
+
+    @Override
+    void setup() {
+        container = dataComponents.createCollectionContainer(Product)
+        loader = dataComponents.createCollectionLoader()
+        loader.setContainer(container)
+        loader.setQuery('select p from test$Product p')
+        tableItems = new LoaderGroupTableItems<>(container, loader)
+    }
+
+    @Override
+    void cleanup() {
+        TestServiceProxy.clear()
+    }
+
+    def "groups are loaded from the database and items are loaded on demand"() {
+        def dataService = Mock(DataService)
+        TestServiceProxy.mock(DataService, dataService)
+
+        def nameProperty = metadata.getClassNN(Product).getPropertyPath('name')
+
+        when:
+
+        tableItems.groupBy([nameProperty] as Object[])
+
+        then:
+
+        1 * dataService.loadValues({ ValueLoadContext context ->
+            context.query.queryString.contains('group by groupEntity.name') &&
+                    context.properties == [CollectionLoader.GROUP_VALUE, CollectionLoader.GROUP_ITEMS_COUNT]
+        }) >> [groupRow('p1', 2), groupRow('p2', 1)]
+        0 * dataService.loadList(_)
+
+        tableItems.rootGroups().collect { it.value } == ['p1', 'p2']
+        tableItems.getGroupItemsCount(tableItems.rootGroups()[0]) == 2
+        tableItems.getGroupItemIds(tableItems.rootGroups()[0]).isEmpty()
+
+        when:
+
+        tableItems.loadGroupItems(tableItems.rootGroups()[0])
+
+        then:
+
+        1 * dataService.loadList({ LoadContext context -> context.query.parameters['groupValue_0'] == 'p1' }) >> [
+                new Product(name: 'p1', price: 10),
+                new Product(name: 'p1', price: 30)
+        ]
+
+        tableItems.getGroupItemIds(tableItems.rootGroups()[0]).size() == 2
+        container.items.size() == 2
+        tableItems.getParentGroup(container.items[0]).value == 'p1'
+    }
+
+    def "condition of the loader is applied to the query selecting the grouped entities"() {
+        def dataService = Mock(DataService)
+        TestServiceProxy.mock(DataService, dataService)
+
+        def nameProperty = metadata.getClassNN(Product).getPropertyPath('name')
+
+        loader.setCondition(new JpqlCondition('p.price > :minPrice'))
+        loader.setParameter('minPrice', 5)
+
+        when:
+
+        tableItems.groupBy([nameProperty] as Object[])
+
+        then:
+
+        1 * dataService.loadValues({ ValueLoadContext context ->
+            context.query.condition == null &&
+                    context.query.queryString.contains('p.price > :minPrice)') &&
+                    context.query.parameters['minPrice'] == 5
+        }) >> [groupRow('p1', 2)]
+
+        tableItems.rootGroups().collect { it.value } == ['p1']
+    }
+
+    def "condition without parameter value is not applied"() {
+        def dataService = Mock(DataService)
+        TestServiceProxy.mock(DataService, dataService)
+
+        def nameProperty = metadata.getClassNN(Product).getPropertyPath('name')
+
+        loader.setCondition(new JpqlCondition('p.price > :minPrice'))
+
+        when:
+
+        tableItems.groupBy([nameProperty] as Object[])
+
+        then:
+
+        1 * dataService.loadValues({ ValueLoadContext context ->
+            !context.query.queryString.contains('minPrice')
+        }) >> [groupRow('p1', 2)]
+    }
+
+    private static KeyValueEntity groupRow(String name, long count) {
+        def row = new KeyValueEntity()
+        row.setValue(CollectionLoader.GROUP_VALUE, name)
+        row.setValue(CollectionLoader.GROUP_ITEMS_COUNT, count)
+        return row
+    }
+}
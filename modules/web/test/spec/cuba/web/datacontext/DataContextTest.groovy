@@ -468,6 +468,37 @@ class DataContextTest extends Specification {
         !order1_1.orderLines.contains(orderLine12_1)
     }
 
+    def "removed object is removed from collections changed after merge"() {
+
+        def dataContext = factory.createDataContext()
+
+        Order order1 = makeSaved(new Order(number: "111", orderLines: []))
+        Order order2 = makeSaved(new Order(number: "112", orderLines: []))
+        OrderLine orderLine11 = makeSaved(new OrderLine(quantity: 10))
+        orderLine11.order = order1
+        order1.orderLines.add(orderLine11)
+
+        Order order1_1 = dataContext.merge(order1)
+        Order order2_1 = dataContext.merge(order2)
+        OrderLine orderLine11_1 = order1_1.orderLines[0]
+
+        OrderLine orderLine21_1 = dataContext.create(OrderLine)
+        orderLine21_1.order = order2_1
+        order2_1.orderLines.add(orderLine21_1)
+
+        order2_1.orderLines = [orderLine11_1]
+
+        when:
+
+        dataContext.remove(orderLine21_1)
+        dataContext.remove(orderLine11_1)
+
+        then:
+
+        order1_1.orderLines.isEmpty()
+        order2_1.orderLines.isEmpty()
+    }
+
     def "system fields are preserved on merge"() {
 
         def dataContext = factory.createDataContext()
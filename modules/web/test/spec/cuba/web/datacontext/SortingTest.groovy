@@ -101,4 +101,39 @@ class SortingTest extends WebSpec {
         1 * dataService.loadList(_) >> products.sort { it.name }.reverse()
         container.items[0].name == 'p3'
     }
+
+    def "sort in memory by multiple properties"() {
+        def products = [
+                new Product(name: 'p1', price: 20),
+                new Product(name: 'p2', price: 10),
+                new Product(name: 'p3', price: 20)
+        ]
+        container.setItems(products)
+
+        when:
+
+        container.getSorter().sort(Sort.by(Sort.Order.desc('price'), Sort.Order.asc('name')))
+
+        then:
+
+        container.items.collect { it.name } == ['p1', 'p3', 'p2']
+    }
+
+    def "sort large collection in memory"() {
+        def products = (0..<20000).collect { new Product(name: 'p' + (it % 100), price: it) }
+        container.setItems(products)
+
+        when:
+
+        container.getSorter().sort(Sort.by(Sort.Order.asc('name'), Sort.Order.desc('price')))
+
+        then:
+
+        container.items.size() == 20000
+        container.items[0].name == 'p0'
+        container.items[0].price == 19900
+        container.items[1].price == 19800
+        container.items[19999].name == 'p99'
+        container.items[19999].price == 99
+    }
 }